@@ -3,10 +3,11 @@ package com.citylibrary;
 import com.citylibrary.businessexception.LibraryItemNotFoundException;
 import com.citylibrary.businessexception.LibraryItemNotLoanableException;
 import com.citylibrary.businessexception.LibraryItemNotLoanedReturnedException;
-import com.citylibrary.enums.Status;
 import com.citylibrary.manager.LibraryManager;
 import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.Availability;
 import com.citylibrary.model.item.LibraryItem;
+import com.citylibrary.model.item.Loan;
 import com.citylibrary.service.DataService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -199,11 +200,12 @@ public class CityLibraryApplication implements CommandLineRunner {
         Map<Integer, List<LibraryItem>> mp = libraryManager.getCurrentInventory().stream().collect(Collectors.groupingBy((LibraryItem::getItemId)));
 
         mp.forEach((key, value) -> {
+            Availability availability = libraryManager.getAvailability(key);
             System.out.println("Item Id:" + key);
             System.out.println("Item Type:" + value.get(0).getType());
             System.out.println("Item Title:" + value.get(0).getTitle());
-            System.out.println("Copies Available:" + value.stream().filter(t -> t.getItemStatus().equals(Status.AVAILABLE)).count());
-            System.out.println("Currently Loaned:" + value.stream().filter(t -> t.getItemStatus().equals(Status.LOANED)).count());
+            System.out.println("Copies Available:" + (availability == null ? 0 : availability.getAvailable()));
+            System.out.println("Currently Loaned:" + (availability == null ? 0 : availability.getLoaned()));
             System.out.println("List of Library Items:");
             value.forEach(System.out::println);
             System.out.println("------------------------------------------------------------------------------------------------------\n\n");
@@ -217,8 +219,9 @@ public class CityLibraryApplication implements CommandLineRunner {
         System.out.println("---------------------------------- PRINT OVERDUE ITEMS ----------------------------------------------");
         System.out.println();
 
-        if (libraryManager.getOverDueItems().size() > 0)
-            libraryManager.getOverDueItems().forEach(System.out::println);
+        List<Loan> overDueItems = libraryManager.getOverDueItems();
+        if (overDueItems.size() > 0)
+            overDueItems.forEach(System.out::println);
         else
             System.out.println("Currently there are no overdue items");
     }
@@ -3,12 +3,21 @@ package com.citylibrary.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 @Component
 @ConfigurationProperties(prefix = "library")
 public class LibraryConfig {
 
     private String customerFileName;
     private String libraryItemFileName;
+    private boolean parallelLoad;
+    private String snapshotFileName;        // optional, warm start is disabled when not set
+    private String storage = "heap";        // heap or offheap, picks the DataStore implementation
+    private int shards;                     // loan shards, 0 for one per available processor
+    private String executor = "platform";   // platform or virtual, runs the async lending calls
+    private int executorThreads;            // platform pool size, 0 for one per available processor
+    private Duration holdTtl = Duration.ofDays(3);  // how long a returned copy is kept for the next patron in its queue
 
     public String getCustomerFileName() {
         return customerFileName;
@@ -25,4 +34,60 @@ public class LibraryConfig {
     public void setLibraryItemFileName(final String libraryItemFileName) {
         this.libraryItemFileName = libraryItemFileName;
     }
+
+    public boolean isParallelLoad() {
+        return parallelLoad;
+    }
+
+    public void setParallelLoad(final boolean parallelLoad) {
+        this.parallelLoad = parallelLoad;
+    }
+
+    public String getSnapshotFileName() {
+        return snapshotFileName;
+    }
+
+    public void setSnapshotFileName(final String snapshotFileName) {
+        this.snapshotFileName = snapshotFileName;
+    }
+
+    public String getStorage() {
+        return storage;
+    }
+
+    public void setStorage(final String storage) {
+        this.storage = storage;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    public void setShards(final int shards) {
+        this.shards = shards;
+    }
+
+    public String getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(final String executor) {
+        this.executor = executor;
+    }
+
+    public int getExecutorThreads() {
+        return executorThreads;
+    }
+
+    public void setExecutorThreads(final int executorThreads) {
+        this.executorThreads = executorThreads;
+    }
+
+    public Duration getHoldTtl() {
+        return holdTtl;
+    }
+
+    public void setHoldTtl(final Duration holdTtl) {
+        this.holdTtl = holdTtl;
+    }
 }
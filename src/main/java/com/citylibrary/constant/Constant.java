@@ -9,4 +9,5 @@ public final class Constant {
     public static final int ITEM_TITLE = 3;
     public static final int LIBRARY_ID = 0;
     public static final int ITEM_ID = 1;
+    public static final int ITEM_TYPE = 2;
 }
@@ -6,8 +6,11 @@ import com.citylibrary.enums.ItemType;
 import com.citylibrary.model.actor.Customer;
 import com.citylibrary.model.actor.Person;
 import com.citylibrary.model.item.LibraryItem;
+import com.citylibrary.model.item.Work;
+import com.opencsv.CSVParserBuilder;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
+import com.opencsv.ICSVParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,8 +19,18 @@ import org.springframework.stereotype.Component;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import static com.citylibrary.constant.Constant.*;
 
@@ -35,83 +48,242 @@ public class CSVDataLoader {
     private static final Logger logger
             = LoggerFactory.getLogger(CityLibraryApplication.class);
 
+    private static final int CHUNKS_PER_CORE = 4;
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final ItemType[] LOADABLE_TYPES = {ItemType.BOOK, ItemType.DVD, ItemType.VHS};
+
     public List<LibraryItem> getLibraryItemsFromCsv() {
+        List<LibraryItem> libraryItems = new ArrayList<>();
+        loadLibraryItems(libraryItems::add);
+        return libraryItems;
+    }
+
+    public List<Person> getCustomersFromCsv() {
+        List<Person> customers = new ArrayList<>();
+        loadCustomers(customers::add);
+        return customers;
+    }
+
+    // Streams library items one record at a time, nothing but the current row is held by the loader.
+    // Every load returns whether the whole file was read. Errors are logged and end the load, the
+    // records consumed up to then are not taken back, so a false load is a partial one
+    public boolean loadLibraryItems(final Consumer<LibraryItem> consumer) {
+
+        Path catalog = getResourceFile(libraryConfig.getLibraryItemFileName());
+        if (catalog != null)
+            return loadLibraryItems(catalog, 1, consumer);
 
         InputStream datafile = getClass().getClassLoader().getResourceAsStream(libraryConfig.getLibraryItemFileName());
+        if (datafile == null) {
+            logger.error("Library item file " + libraryConfig.getLibraryItemFileName() + " not found");
+            return false;
+        }
+        return streamLibraryItems(datafile, consumer);
+    }
 
-        CSVReader csvReader;
-        List<LibraryItem> libraryItems = new ArrayList<>();
+    // Streams customers one record at a time, nothing but the current row is held by the loader
+    public boolean loadCustomers(final Consumer<Person> consumer) {
 
-        try {
-            csvReader = new CSVReaderBuilder(new InputStreamReader(datafile))
-                    .withSkipLines(SKIP_HEADER)
-                    .build();
-
-            List<String[]> records = csvReader.readAll();
-            for (String[] record : records) {
-
-                switch (record[2].toUpperCase()) {
-                    case "BOOK":
-                        LibraryItem book = new LibraryItem.LibraryItemBuilder(
-                                Integer.parseInt(record[LIBRARY_ID]), Integer.parseInt(record[ITEM_ID]), ItemType.BOOK, record[ITEM_TITLE])
-                                .withDescription("Description for " + record[ITEM_TITLE])
-                                .build();
-
-                        libraryItems.add(book);
-                        break;
-
-                    case "DVD":
-                        LibraryItem dvd = new LibraryItem.LibraryItemBuilder(
-                                Integer.parseInt(record[LIBRARY_ID]), Integer.parseInt(record[ITEM_ID]), ItemType.DVD, record[ITEM_TITLE])
-                                .withDescription("Description for " + record[ITEM_TITLE])
-                                .build();
-
-                        libraryItems.add(dvd);
-                        break;
-
-                    case "VHS":
-                        LibraryItem vhs = new LibraryItem.LibraryItemBuilder(
-                                Integer.parseInt(record[LIBRARY_ID]), Integer.parseInt(record[ITEM_ID]), ItemType.VHS, record[ITEM_TITLE])
-                                .withDescription("Description for " + record[ITEM_TITLE])
-                                .build();
-
-                        libraryItems.add(vhs);
-                        break;
+        Path customerFile = getResourceFile(libraryConfig.getCustomerFileName());
+        if (customerFile != null)
+            return loadCustomers(customerFile, consumer);
+
+        InputStream datafile = getClass().getClassLoader().getResourceAsStream(libraryConfig.getCustomerFileName());
+        if (datafile == null) {
+            logger.error("Customer file " + libraryConfig.getCustomerFileName() + " not found");
+            return false;
+        }
+        return streamCustomers(datafile, consumer);
+    }
+
+    public boolean isParallelLoadEnabled() {
+        return libraryConfig.isParallelLoad();
+    }
+
+    // Memory maps the catalog file and parses newline aligned chunks on all cores.
+    // The consumer is called concurrently and must be thread safe. Falls back to streaming
+    // when the catalog is not a plain file, e.g. when it is packaged inside a jar
+    public boolean loadLibraryItemsInParallel(final Consumer<LibraryItem> consumer) {
+
+        Path catalog = getResourceFile(libraryConfig.getLibraryItemFileName());
+        if (catalog == null) {
+            logger.info("Library item file is not memory mappable, loading sequentially");
+            return loadLibraryItems(consumer);
+        }
+
+        int chunkCount = CHUNKS_PER_CORE * Runtime.getRuntime().availableProcessors();
+        return loadLibraryItems(catalog, chunkCount, consumer);
+    }
+
+    // Hot path for plain files, the mapped chunks are read with CSVTokenizer instead of opencsv.
+    // A chunk that fails fails the load, chunks already running in parallel may still finish
+    boolean loadLibraryItems(final Path catalog, final int maxChunks, final Consumer<LibraryItem> consumer) {
+
+        try (MappedCSVFile csvFile = new MappedCSVFile(catalog)) {
+            int chunkCount = (int) Math.max(1, Math.min(maxChunks, csvFile.size() / MIN_CHUNK_SIZE));
+            List<MappedCSVFile.Chunk> chunks = csvFile.split(SKIP_HEADER, chunkCount);
+
+            Map<Integer, Work> works = new ConcurrentHashMap<>();
+            (chunkCount > 1 ? chunks.parallelStream() : chunks.stream())
+                    .forEach(chunk -> loadLibraryItems(csvFile, chunk, works, consumer));
+            return true;
+        } catch (IOException | UncheckedIOException ex) {
+            logger.error("Error loading library items from CSV " + ex.getMessage());
+        } catch (Exception ex) {
+            logger.error("Unknown error occurred while loading library items from CSV " + ex.getMessage());
+        }
+        return false;
+    }
+
+    boolean loadCustomers(final Path customerFile, final Consumer<Person> consumer) {
+
+        try (MappedCSVFile csvFile = new MappedCSVFile(customerFile)) {
+            for (MappedCSVFile.Chunk chunk : csvFile.split(SKIP_HEADER, 1)) {
+                CSVTokenizer tokenizer = new CSVTokenizer(csvFile.map(chunk));
+                while (tokenizer.nextRecord()) {
+                    consumer.accept(new Customer(tokenizer.nextInt(), tokenizer.nextString(), tokenizer.nextString()));
                 }
             }
+            return true;
         } catch (IOException ex) {
-            logger.error("Error loading library items from CSV " + ex.getMessage());
+            logger.error("Error loading customer data from CSV " + ex.getMessage());
         } catch (Exception ex) {
-            logger.error("Unknown error occurred while loading library items from CSV " + ex.getMessage());
+            logger.error("Unknown error occurred while customer data from CSV " + ex.getMessage());
         }
+        return false;
+    }
 
-        return libraryItems;
+    // Backslash is not an escape character, as in the CSVTokenizer, so both paths read the same fields
+    private static CSVReader newCsvReader(final InputStream datafile) {
+        return new CSVReaderBuilder(new InputStreamReader(datafile))
+                .withSkipLines(SKIP_HEADER)
+                .withCSVParser(new CSVParserBuilder().withEscapeChar(ICSVParser.NULL_CHARACTER).build())
+                .build();
     }
 
-    public List<Person> getCustomersFromCsv() {
+    // opencsv path, used when the CSV resource cannot be memory mapped
+    boolean streamLibraryItems(final InputStream datafile, final Consumer<LibraryItem> consumer) {
 
-        InputStream datafile = getClass().getClassLoader().getResourceAsStream(libraryConfig.getCustomerFileName());
+        try (CSVReader csvReader = newCsvReader(datafile)) {
 
-        CSVReader csvReader;
-        List<Person> customers = new ArrayList<>();
+            Map<Integer, Work> works = new HashMap<>();
+            String[] record;
+            while ((record = csvReader.readNext()) != null) {
+                LibraryItem item = toLibraryItem(record, works);
+                if (item != null)
+                    consumer.accept(item);
+            }
+            return true;
+        } catch (IOException ex) {
+            logger.error("Error loading library items from CSV " + ex.getMessage());
+        } catch (Exception ex) {
+            logger.error("Unknown error occurred while loading library items from CSV " + ex.getMessage());
+        }
+        return false;
+    }
 
-        try {
-            csvReader = new CSVReaderBuilder(new InputStreamReader(datafile))
-                    .withSkipLines(SKIP_HEADER)
-                    .build();
+    // opencsv path, used when the CSV resource cannot be memory mapped
+    boolean streamCustomers(final InputStream datafile, final Consumer<Person> consumer) {
 
-            List<String[]> records = csvReader.readAll();
-            for (String[] record : records) {
-                Person customer = new Customer(
-                        Integer.parseInt(record[CUSTOMER_ID]), record[CUSTOMER_FIRST_NAME], record[CUSTOMER_LAST_NAME]);
+        try (CSVReader csvReader = newCsvReader(datafile)) {
 
-                customers.add(customer);
+            String[] record;
+            while ((record = csvReader.readNext()) != null) {
+                consumer.accept(toCustomer(record));
             }
+            return true;
         } catch (IOException ex) {
             logger.error("Error loading customer data from CSV " + ex.getMessage());
         } catch (Exception ex) {
             logger.error("Unknown error occurred while customer data from CSV " + ex.getMessage());
         }
-        return customers;
+        return false;
+    }
+
+    // Columns are read in file order: LIBRARY_ID, ITEM_ID, ITEM_TYPE, ITEM_TITLE.
+    // The title String is only created for the first copy of a work, later copies are compared in place
+    private void loadLibraryItems(final MappedCSVFile csvFile, final MappedCSVFile.Chunk chunk,
+                                  final Map<Integer, Work> works, final Consumer<LibraryItem> consumer) {
+        CSVTokenizer tokenizer;
+        try {
+            tokenizer = new CSVTokenizer(csvFile.map(chunk));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        while (tokenizer.nextRecord()) {
+            int libraryId = tokenizer.nextInt();
+            int itemId = tokenizer.nextInt();
+            ItemType type = tokenizer.nextEnum(LOADABLE_TYPES);
+            if (type == null)
+                continue;
+
+            Work known = works.get(itemId);
+            String title = tokenizer.nextString(known == null ? null : known.getTitle());
+            consumer.accept(new LibraryItem.LibraryItemBuilder(libraryId, getWork(works, itemId, type, title)).build());
+        }
+    }
+
+    // Fingerprint of the CSV sources, changes whenever either file is replaced or modified
+    public long getSourceVersion() throws IOException {
+        long version = 1;
+        for (String resourceName : List.of(libraryConfig.getLibraryItemFileName(), libraryConfig.getCustomerFileName())) {
+            URL resource = getClass().getClassLoader().getResource(resourceName);
+            if (resource == null)
+                throw new IOException("CSV resource " + resourceName + " not found");
+
+            URLConnection connection = resource.openConnection();
+            connection.setUseCaches(false);
+            version = 31 * version + connection.getContentLengthLong();
+            version = 31 * version + connection.getLastModified();
+            connection.getInputStream().close();
+        }
+        return version;
+    }
+
+    private Path getResourceFile(final String resourceName) {
+        URL resource = getClass().getClassLoader().getResource(resourceName);
+        if (resource == null || !"file".equals(resource.getProtocol()))
+            return null;
+
+        try {
+            return Paths.get(resource.toURI());
+        } catch (URISyntaxException ex) {
+            return null;
+        }
+    }
+
+    private LibraryItem toLibraryItem(final String[] record, final Map<Integer, Work> works) {
+        ItemType type;
+        switch (record[ITEM_TYPE].toUpperCase()) {
+            case "BOOK":
+                type = ItemType.BOOK;
+                break;
+            case "DVD":
+                type = ItemType.DVD;
+                break;
+            case "VHS":
+                type = ItemType.VHS;
+                break;
+            default:
+                return null;
+        }
+
+        Work work = getWork(works, Integer.parseInt(record[ITEM_ID]), type, record[ITEM_TITLE]);
+        return new LibraryItem.LibraryItemBuilder(Integer.parseInt(record[LIBRARY_ID]), work)
+                .build();
+    }
+
+    // Copies of a work share one Work instance, title and description are kept once per itemId
+    private static Work getWork(final Map<Integer, Work> works, final int itemId, final ItemType type, final String title) {
+        Work work = works.computeIfAbsent(itemId, id -> new Work(id, type, title, "Description for " + title));
+        if (!work.matches(itemId, type, title))
+            work = new Work(itemId, type, title, "Description for " + title);
+        return work;
+    }
+
+    private Person toCustomer(final String[] record) {
+        return new Customer(
+                Integer.parseInt(record[CUSTOMER_ID]), record[CUSTOMER_FIRST_NAME], record[CUSTOMER_LAST_NAME]);
     }
 }
@@ -0,0 +1,254 @@
+package com.citylibrary.csvhelper;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Allocation light tokenizer for the library and customer CSV layouts, reads fields straight from a byte buffer.
+// Ints and enums are parsed in place, Strings are only created for the fields asked for with nextString().
+// Quoting follows RFC 4180, a quoted field may contain delimiters, newlines and doubled quotes. Backslash is
+// not an escape character. Not thread safe, use one tokenizer per chunk.
+final class CSVTokenizer {
+
+    private static final byte QUOTE = '"';
+    private static final byte DELIMITER = ',';
+    private static final byte NEW_LINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte SPACE = ' ';
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int position;
+    private boolean endOfRecord = true;
+    private byte[] scratch = new byte[256];
+
+    CSVTokenizer(final ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.position = buffer.position();
+        this.limit = buffer.limit();
+    }
+
+    // Moves to the next non empty record, returns false when the buffer is exhausted
+    boolean nextRecord() {
+        if (!endOfRecord)
+            skipRecord();
+
+        while (position < limit && isLineBreak(buffer.get(position)))
+            position++;
+
+        endOfRecord = position >= limit;
+        return !endOfRecord;
+    }
+
+    int nextInt() {
+        int start = startField();
+        if (position < limit && buffer.get(position) == QUOTE)
+            return Integer.parseInt(readString(start).trim());
+
+        while (position < limit && buffer.get(position) == SPACE)
+            position++;
+
+        boolean negative = position < limit && buffer.get(position) == '-';
+        if (negative)
+            position++;
+
+        long value = 0;
+        int digits = 0;
+        byte b;
+        while (position < limit && (b = buffer.get(position)) >= '0' && b <= '9') {
+            value = value * 10 + (b - '0');
+            if (value > Integer.MAX_VALUE + 1L)
+                throw numberFormatException(start);
+            position++;
+            digits++;
+        }
+
+        while (position < limit && buffer.get(position) == SPACE)
+            position++;
+
+        if (digits == 0 || !isFieldEnd() || (!negative && value > Integer.MAX_VALUE))
+            throw numberFormatException(start);
+
+        endField();
+        return (int) (negative ? -value : value);
+    }
+
+    // Matches an unquoted field against the enum constant names ignoring ASCII case, no upper cased copy is made.
+    // Returns null when the field matches none of the candidates
+    <E extends Enum<E>> E nextEnum(final E[] candidates) {
+        int start = startField();
+        if (position < limit && buffer.get(position) == QUOTE) {
+            String value = readString(start);
+            for (E candidate : candidates) {
+                if (candidate.name().equalsIgnoreCase(value))
+                    return candidate;
+            }
+            return null;
+        }
+
+        while (!isFieldEnd())
+            position++;
+        int length = position - start;
+        endField();
+
+        for (E candidate : candidates) {
+            if (equalsIgnoreCase(start, length, candidate.name()))
+                return candidate;
+        }
+        return null;
+    }
+
+    String nextString() {
+        return readString(startField());
+    }
+
+    // Returns the given candidate instead of a new String when the field holds exactly the same text,
+    // repeated values such as the title of another copy of a work are then read without allocating
+    String nextString(final String candidate) {
+        int start = startField();
+        if (candidate == null || (position < limit && buffer.get(position) == QUOTE))
+            return readString(start);
+
+        while (!isFieldEnd())
+            position++;
+        if (!equalsAscii(start, position - start, candidate)) {
+            String value = decode(start, position - start);
+            endField();
+            return value;
+        }
+        endField();
+        return candidate;
+    }
+
+    void skipField() {
+        int start = startField();
+        if (position < limit && buffer.get(position) == QUOTE)
+            readQuoted(start, false);
+        else
+            while (!isFieldEnd())
+                position++;
+        endField();
+    }
+
+    private String readString(final int start) {
+        String value;
+        if (position < limit && buffer.get(position) == QUOTE) {
+            value = readQuoted(start, true);
+        } else {
+            while (!isFieldEnd())
+                position++;
+            value = decode(start, position - start);
+        }
+        endField();
+        return value;
+    }
+
+    // Reads a quoted field, doubled quotes are unescaped into the scratch array
+    private String readQuoted(final int start, final boolean decode) {
+        position++;
+        int length = 0;
+        while (true) {
+            if (position >= limit)
+                throw new IllegalStateException("Unterminated quoted field at offset " + start);
+
+            byte b = buffer.get(position++);
+            if (b == QUOTE) {
+                if (position < limit && buffer.get(position) == QUOTE) {
+                    position++;
+                } else {
+                    break;
+                }
+            }
+            if (decode) {
+                ensureScratch(length + 1);
+                scratch[length++] = b;
+            }
+        }
+
+        // anything between the closing quote and the delimiter is kept, as opencsv does
+        while (!isFieldEnd()) {
+            byte b = buffer.get(position++);
+            if (decode) {
+                ensureScratch(length + 1);
+                scratch[length++] = b;
+            }
+        }
+        return decode ? new String(scratch, 0, length, StandardCharsets.UTF_8) : null;
+    }
+
+    private String decode(final int start, final int length) {
+        if (buffer.hasArray())
+            return new String(buffer.array(), buffer.arrayOffset() + start, length, StandardCharsets.UTF_8);
+
+        ensureScratch(length);
+        buffer.get(start, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // Only plain ASCII candidates are compared in place, anything else is reported as different
+    private boolean equalsAscii(final int start, final int length, final String candidate) {
+        if (length != candidate.length())
+            return false;
+
+        for (int i = 0; i < length; i++) {
+            char c = candidate.charAt(i);
+            if (c > 0x7F || buffer.get(start + i) != c)
+                return false;
+        }
+        return true;
+    }
+
+    private boolean equalsIgnoreCase(final int start, final int length, final String name) {
+        if (length != name.length())
+            return false;
+
+        for (int i = 0; i < length; i++) {
+            int b = buffer.get(start + i);
+            if (b >= 'a' && b <= 'z')
+                b -= 'a' - 'A';
+            if (b != name.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private int startField() {
+        if (endOfRecord)
+            throw new IllegalStateException("Record at offset " + position + " has fewer fields than expected");
+        return position;
+    }
+
+    private boolean isFieldEnd() {
+        if (position >= limit)
+            return true;
+        byte b = buffer.get(position);
+        return b == DELIMITER || isLineBreak(b);
+    }
+
+    private void endField() {
+        if (position < limit && buffer.get(position) == DELIMITER)
+            position++;
+        else
+            endOfRecord = true;
+    }
+
+    private void skipRecord() {
+        while (!endOfRecord)
+            skipField();
+    }
+
+    private void ensureScratch(final int length) {
+        if (scratch.length < length)
+            scratch = Arrays.copyOf(scratch, Math.max(length, scratch.length * 2));
+    }
+
+    private NumberFormatException numberFormatException(final int start) {
+        while (!isFieldEnd())
+            position++;
+        return new NumberFormatException("For input string: \"" + decode(start, position - start) + "\"");
+    }
+
+    private static boolean isLineBreak(final byte b) {
+        return b == NEW_LINE || b == CARRIAGE_RETURN;
+    }
+}
@@ -0,0 +1,141 @@
+package com.citylibrary.csvhelper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// Memory mapped view of a CSV file that can be split into independently parseable chunks.
+// Chunks always end on a record boundary, a newline inside a quoted field never splits a record.
+final class MappedCSVFile implements AutoCloseable {
+
+    private static final byte QUOTE = '"';
+    private static final byte NEW_LINE = '\n';
+    private static final int MAX_MAPPING = Integer.MAX_VALUE;
+    private static final long MAX_CHUNK_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final long size;
+
+    MappedCSVFile(final Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    long size() {
+        return size;
+    }
+
+    // Splits the file after skipLines records into at most chunkCount chunks
+    List<Chunk> split(final int skipLines, final int chunkCount) throws IOException {
+        long start = 0;
+        for (int i = 0; i < skipLines && start < size; i++)
+            start = nextRecordStart(start, false);
+
+        if (start >= size)
+            return List.of();
+
+        // chunks are kept well below the 2GB limit of a single mapping, nominal segments may grow by one record
+        long minimumCount = (size - start + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE;
+        int count = (int) Math.max(minimumCount, Math.min(chunkCount, size - start));
+        long segment = (size - start + count - 1) / count;
+
+        // quote parity at every nominal segment start, counted in parallel and then prefixed
+        final long dataStart = start;
+        boolean[] oddQuotes = new boolean[count];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            long from = dataStart + i * segment;
+            long to = Math.min(size, from + segment);
+            oddQuotes[i] = from < to && (countQuotes(from, to) & 1) == 1;
+        });
+
+        List<Chunk> chunks = new ArrayList<>(count);
+        boolean inQuotes = false;
+        long chunkStart = dataStart;
+        for (int i = 1; i < count && chunkStart < size; i++) {
+            inQuotes ^= oddQuotes[i - 1];
+            long nominal = dataStart + i * segment;
+            if (nominal <= chunkStart)
+                continue;
+
+            long boundary = nextRecordStart(nominal, inQuotes);
+            if (boundary > chunkStart && boundary < size) {
+                chunks.add(new Chunk(chunkStart, boundary));
+                chunkStart = boundary;
+            }
+        }
+        if (chunkStart < size)
+            chunks.add(new Chunk(chunkStart, size));
+
+        return chunks;
+    }
+
+    // Maps the bytes of a chunk, the buffer is positioned at the first record of the chunk
+    ByteBuffer map(final Chunk chunk) throws IOException {
+        return map(chunk.start, chunk.end - chunk.start);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long countQuotes(final long from, final long to) {
+        try {
+            long quotes = 0;
+            for (long position = from; position < to; position += MAX_MAPPING) {
+                MappedByteBuffer buffer = map(position, Math.min(to - position, MAX_MAPPING));
+                while (buffer.hasRemaining()) {
+                    if (buffer.get() == QUOTE)
+                        quotes++;
+                }
+            }
+            return quotes;
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to map CSV file " + ex.getMessage(), ex);
+        }
+    }
+
+    // Returns the offset just after the first newline at or after position that is outside of quotes
+    private long nextRecordStart(final long position, final boolean startsInQuotes) throws IOException {
+        boolean inQuotes = startsInQuotes;
+        for (long from = position; from < size; from += MAX_MAPPING) {
+            MappedByteBuffer buffer = map(from, Math.min(size - from, MAX_MAPPING));
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == QUOTE)
+                    inQuotes = !inQuotes;
+                else if (b == NEW_LINE && !inQuotes)
+                    return from + buffer.position();
+            }
+        }
+        return size;
+    }
+
+    private MappedByteBuffer map(final long position, final long length) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+    }
+
+    static final class Chunk {
+        private final long start;
+        private final long end;
+
+        Chunk(final long start, final long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        long getStart() {
+            return start;
+        }
+
+        long getEnd() {
+            return end;
+        }
+    }
+}
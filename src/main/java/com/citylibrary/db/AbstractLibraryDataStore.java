@@ -0,0 +1,215 @@
+package com.citylibrary.db;
+
+import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.LibraryItem;
+import com.citylibrary.model.item.Loan;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Customers, active loans and their indexes are kept on the heap whatever the item storage,
+// subclasses only decide how library items are held. Items, customers and loans together form
+// one catalog behind a single volatile reference, a rebuild swaps in a complete new catalog.
+// Loans are split over shards by library id, items and customers are already written slot by slot
+public abstract class AbstractLibraryDataStore<I> implements DataStore {
+
+    private final int shardCount;
+    private volatile Catalog<I> catalog;
+
+    // a shard count of 0 or less means one shard per available processor
+    protected AbstractLibraryDataStore(final Supplier<I> newItems, final int shardCount) {
+        this.shardCount = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+        this.catalog = new Catalog<>(0, newItems.get(), this.shardCount);
+    }
+
+    // an empty store of the same kind, filled by rebuild before its catalog is taken over
+    protected abstract AbstractLibraryDataStore<I> newStore();
+
+    protected final int getShardCount() {
+        return shardCount;
+    }
+
+    // item storage of the current catalog
+    protected final I items() {
+        return catalog.items;
+    }
+
+    // Writes go to the catalog that is current when they start. One that raced a rebuild is applied
+    // again to the catalog published meanwhile, so it is not lost with the retired one
+    protected final <R> R write(final Function<I, R> write) {
+        return writeCatalog(current -> write.apply(current.items));
+    }
+
+    private <R> R writeCatalog(final Function<Catalog<I>, R> write) {
+        Catalog<I> current = catalog;
+        while (true) {
+            R result = write.apply(current);
+            Catalog<I> published = catalog;
+            if (published == current)
+                return result;
+            current = published;
+        }
+    }
+
+    // Builds the new catalog in a store nobody else can see, then publishes it in one step. Readers
+    // see the old catalog or the new one, never a partly built one. Rebuilds are serialised, one whose
+    // builder throws is dropped with the store it built
+    @Override
+    public synchronized void rebuild(final Consumer<? super DataStore> builder) {
+        AbstractLibraryDataStore<I> built = newStore();
+        builder.accept(built);
+
+        Catalog<I> next = built.catalog;
+        catalog = new Catalog<>(catalog.version + 1, next.items, next.customers, next.loans);
+    }
+
+    @Override
+    public long getVersion() {
+        return catalog.version;
+    }
+
+    @Override
+    public Person getCustomer(final int customerId) {
+        return catalog.customers.get(customerId);
+    }
+
+    @Override
+    public Collection<Person> getCustomers() {
+        return catalog.customers.values();
+    }
+
+    @Override
+    public Person putCustomer(final Person customer) {
+        return writeCatalog(current -> current.customers.put(customer.getId(), customer));
+    }
+
+    @Override
+    public Person putCustomerIfAbsent(final Person customer) {
+        return writeCatalog(current -> current.customers.putIfAbsent(customer.getId(), customer));
+    }
+
+    @Override
+    public boolean replaceCustomer(final Person existing, final Person replacement) {
+        return writeCatalog(current -> current.customers.replace(existing.getId(), existing, replacement));
+    }
+
+    @Override
+    public Person removeCustomer(final int customerId) {
+        return writeCatalog(current -> current.customers.remove(customerId));
+    }
+
+    @Override
+    public void clearCustomers() {
+        catalog.customers.clear();
+    }
+
+    @Override
+    public Collection<Loan> getLoans() {
+        return Collections.unmodifiableList(catalog.loans.values());
+    }
+
+    @Override
+    public int getLoanCount() {
+        return catalog.loans.size();
+    }
+
+    @Override
+    public List<Loan> getLoansFrom(final int fromLibraryId, final int limit) {
+        return catalog.loans.valuesFrom(Math.max(fromLibraryId, 0), limit);
+    }
+
+    @Override
+    public Loan getLoan(final int libraryId) {
+        return catalog.loans.get(libraryId);
+    }
+
+    @Override
+    public boolean isOnLoan(final int libraryId) {
+        return catalog.loans.contains(libraryId);
+    }
+
+    @Override
+    public Collection<Loan> getLoansByCustomer(final int customerId) {
+        return catalog.loans.byCustomer(customerId);
+    }
+
+    // only the due dates that are actually overdue are visited, not every active loan
+    @Override
+    public Collection<Loan> getLoansDueBefore(final LocalDate date) {
+        return catalog.loans.dueBetween(Long.MIN_VALUE, date.toEpochDay() - 1);
+    }
+
+    @Override
+    public Collection<Loan> getLoansDueBetween(final LocalDate from, final LocalDate to) {
+        return catalog.loans.dueBetween(from.toEpochDay(), to.toEpochDay());
+    }
+
+    @Override
+    public boolean addLoan(final Loan loan) {
+        return addLoan(loan.getCustomer(), loan.getItem(), loan.getIssueDate(), loan.getDueDate());
+    }
+
+    // Unlike other writes a loan is not carried over to a catalog published meanwhile, its item
+    // instance belongs to the retired catalog. The loan is refused and the borrower backs out
+    @Override
+    public boolean addLoan(final Person customer, final LibraryItem item, final LocalDate issueDate, final LocalDate dueDate) {
+        Catalog<I> current = catalog;
+        return current.loans.add(customer, item, issueDate, dueDate) && catalog == current;
+    }
+
+    @Override
+    public boolean removeLoan(final Loan loan) {
+        return catalog.loans.remove(loan);
+    }
+
+    @Override
+    public LibraryItem removeLoan(final int libraryId) {
+        return catalog.loans.remove(libraryId);
+    }
+
+    @Override
+    public boolean replaceLoan(final Loan existing, final Loan replacement) {
+        return catalog.loans.replace(existing, replacement);
+    }
+
+    @Override
+    public void clearLoans() {
+        catalog.loans.clear();
+    }
+
+    @Override
+    public void writeSnapshot(final Path file, final long sourceVersion) throws IOException {
+        DataStoreSnapshot.write(this, file, sourceVersion);
+    }
+
+    @Override
+    public boolean restoreSnapshot(final Path file, final long sourceVersion) throws IOException {
+        return DataStoreSnapshot.read(this, file, sourceVersion);
+    }
+
+    // One version of the whole store. The parts stay writable, a catalog is replaced as a whole only by rebuild
+    private static final class Catalog<I> {
+        private final long version;
+        private final I items;
+        private final IntObjectMap<Person> customers;
+        private final LoanShards loans;
+
+        Catalog(final long version, final I items, final int shardCount) {
+            this(version, items, new IntObjectMap<>(), new LoanShards(shardCount));
+        }
+
+        Catalog(final long version, final I items, final IntObjectMap<Person> customers, final LoanShards loans) {
+            this.version = version;
+            this.items = items;
+            this.customers = customers;
+            this.loans = loans;
+        }
+    }
+}
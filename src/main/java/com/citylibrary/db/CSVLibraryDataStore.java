@@ -1,30 +1,108 @@
 package com.citylibrary.db;
 
-import com.citylibrary.model.actor.Person;
+import com.citylibrary.config.LibraryConfig;
+import com.citylibrary.enums.ItemType;
+import com.citylibrary.enums.Status;
+import com.citylibrary.model.item.Availability;
 import com.citylibrary.model.item.LibraryItem;
-import com.citylibrary.model.item.Loan;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.Collection;
+import java.util.Iterator;
 
+// Default store, items are plain heap objects
 @Service
-public class CSVLibraryDataStore implements DataStore {
+@ConditionalOnProperty(prefix = "library", name = "storage", havingValue = "heap", matchIfMissing = true)
+public class CSVLibraryDataStore extends AbstractLibraryDataStore<LibraryItemMap> {
 
-    private final ConcurrentMap<Integer, LibraryItem> libraryItems = new ConcurrentHashMap<>();
-    private final ConcurrentMap<Integer, Person> customers = new ConcurrentHashMap<>();
-    private final ConcurrentMap<Loan, Object> loans = new ConcurrentHashMap<>();
+    public CSVLibraryDataStore() {
+        this(0);
+    }
+
+    // constructor injection gives an opportunity to mock and run unit tests outside spring framework
+    @Autowired
+    public CSVLibraryDataStore(final LibraryConfig libraryConfig) {
+        this(libraryConfig.getShards());
+    }
+
+    public CSVLibraryDataStore(final int shardCount) {
+        super(LibraryItemMap::new, shardCount);                                        // keeps the title index
+    }
+
+    @Override
+    protected CSVLibraryDataStore newStore() {
+        return new CSVLibraryDataStore(getShardCount());
+    }
+
+    @Override
+    public LibraryItem getLibraryItem(final int libraryId) {
+        return items().get(libraryId);
+    }
+
+    @Override
+    public Collection<LibraryItem> getLibraryItems() {
+        return items().values();
+    }
+
+    @Override
+    public Iterator<LibraryItem> getLibraryItemsFrom(final int fromLibraryId) {
+        return items().iterator(fromLibraryId);
+    }
+
+    @Override
+    public LibraryItem putLibraryItem(final LibraryItem item) {
+        return write(items -> items.put(item));
+    }
+
+    @Override
+    public LibraryItem putLibraryItemIfAbsent(final LibraryItem item) {
+        return write(items -> items.putIfAbsent(item));
+    }
+
+    @Override
+    public boolean replaceLibraryItem(final LibraryItem existing, final LibraryItem replacement) {
+        return write(items -> items.replace(existing, replacement));
+    }
+
+    @Override
+    public LibraryItem removeLibraryItem(final int libraryId) {
+        return write(items -> items.remove(libraryId));
+    }
 
-    public ConcurrentMap<Integer, LibraryItem> getLibraryItems() {
-        return libraryItems;
+    @Override
+    public void clearLibraryItems() {
+        items().clear();
     }
 
-    public ConcurrentMap<Integer, Person> getCustomers() {
-        return customers;
+    @Override
+    public Collection<LibraryItem> getItemsByTitle(final String title, final boolean ignoreCase) {
+        return items().getItemsByTitle(title, ignoreCase);
     }
 
-    public ConcurrentMap<Loan, Object> getLoans() {
-        return loans;
+    @Override
+    public int estimateItemsByTitle(final String title) {
+        return items().estimateItemsByTitle(title);
     }
 
+    @Override
+    public IdBitmap selectItemIds(final ItemType type, final Status status, final int shelfId) {
+        return items().select(type, status, shelfId);
+    }
+
+    @Override
+    public void syncItemStatus(final int libraryId) {
+        items().syncStatus(libraryId);
+    }
+
+    @Override
+    public Availability getAvailability(final int itemId) {
+        return items().availability(itemId);
+    }
+
+    @Override
+    public int takeAvailableCopy(final int itemId) {
+        return items().takeAvailableCopy(itemId);
+    }
 }
@@ -1,16 +1,139 @@
 package com.citylibrary.db;
 
+import com.citylibrary.enums.ItemType;
+import com.citylibrary.enums.Status;
 import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.Availability;
 import com.citylibrary.model.item.LibraryItem;
 import com.citylibrary.model.item.Loan;
 
-import java.util.concurrent.ConcurrentMap;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
 
 
+// Items and customers are addressed by their int id. Replace and remove-by-instance operations
+// compare instances, so a stale read can never overwrite or retire a newer entry
 public interface DataStore {
-    ConcurrentMap<Integer, LibraryItem> getLibraryItems();
+    // item with the given library id, null when there is none
+    LibraryItem getLibraryItem(int libraryId);
 
-    ConcurrentMap<Integer, Person> getCustomers();
+    // read only, weakly consistent view of all items
+    Collection<LibraryItem> getLibraryItems();
 
-    ConcurrentMap<Loan, Object> getLoans();
+    // read only, weakly consistent iteration over the items from the given library id on, ordered by
+    // library id. Items are read as the iterator advances, nothing is collected up front
+    Iterator<LibraryItem> getLibraryItemsFrom(int fromLibraryId);
+
+    // stores the item under its library id, returns the item it displaced or null
+    LibraryItem putLibraryItem(LibraryItem item);
+
+    // stores the item unless its library id is taken, returns the item already stored or null
+    LibraryItem putLibraryItemIfAbsent(LibraryItem item);
+
+    // swaps in the replacement only while the existing instance is still the one stored
+    boolean replaceLibraryItem(LibraryItem existing, LibraryItem replacement);
+
+    // removes the item with the given library id, returns it or null when there was none
+    LibraryItem removeLibraryItem(int libraryId);
+
+    void clearLibraryItems();
+
+    // customer with the given id, null when there is none
+    Person getCustomer(int customerId);
+
+    // read only, weakly consistent view of all customers
+    Collection<Person> getCustomers();
+
+    Person putCustomer(Person customer);
+
+    Person putCustomerIfAbsent(Person customer);
+
+    boolean replaceCustomer(Person existing, Person replacement);
+
+    Person removeCustomer(int customerId);
+
+    void clearCustomers();
+
+    // items whose title contains the given text ordered by library id, narrowed by a trigram index
+    Collection<LibraryItem> getItemsByTitle(String title, boolean ignoreCase);
+
+    // upper bound on the items getItemsByTitle looks at for the title, lets a caller weigh it against other lookups
+    int estimateItemsByTitle(String title);
+
+    // Library ids of the items of the type, status and shelf, a null type or status or a negative shelf
+    // id means any. A copy taken now, null when no condition is given
+    IdBitmap selectItemIds(ItemType type, Status status, int shelfId);
+
+    // Item statuses change in place by compare-and-set, the store's status index and copy counts learn
+    // of it here. To be called after every status transition of a stored item
+    void syncItemStatus(int libraryId);
+
+    // copies of the title with the given item id, kept as items are written and synced, null when it has none
+    Availability getAvailability(int itemId);
+
+    // Library id of a copy of the title from the pool of its available copies, -1 when the pool is empty.
+    // The copy is only taken off the pool, the caller claims it and drops it when the claim fails
+    int takeAvailableCopy(int itemId);
+
+    // Loans are recorded as values, every read builds new Loan objects. A loan handed back to
+    // removeLoan or replaceLoan matches the recorded one when its item is the same instance and
+    // its customer and dates are equal
+
+    // read only copy of the active loans ordered by library id
+    Collection<Loan> getLoans();
+
+    // number of active loans, cheap to read
+    int getLoanCount();
+
+    // at most limit active loans from the given library id on, ordered by library id
+    List<Loan> getLoansFrom(int fromLibraryId, int limit);
+
+    // active loan of the item with the given library id, null when the item is not on loan
+    Loan getLoan(int libraryId);
+
+    // whether the item with the given library id is on loan, builds no Loan
+    boolean isOnLoan(int libraryId);
+
+    // active loans of the customer with the given id, empty when the customer has nothing on loan
+    Collection<Loan> getLoansByCustomer(int customerId);
+
+    // active loans due strictly before the given date, ordered by due date
+    Collection<Loan> getLoansDueBefore(LocalDate date);
+
+    // active loans due between both dates inclusive, ordered by due date
+    Collection<Loan> getLoansDueBetween(LocalDate from, LocalDate to);
+
+    // records the loan unless its item already has an active loan
+    boolean addLoan(Loan loan);
+
+    // same as addLoan(Loan) without building the Loan
+    boolean addLoan(Person customer, LibraryItem item, LocalDate issueDate, LocalDate dueDate);
+
+    // removes the loan only while it matches the recorded one
+    boolean removeLoan(Loan loan);
+
+    // removes whatever loan the item has, returns the item instance that loan referred to or null
+    LibraryItem removeLoan(int libraryId);
+
+    // swaps in the replacement only while the existing loan matches the recorded one
+    boolean replaceLoan(Loan existing, Loan replacement);
+
+    void clearLoans();
+
+    // Builds a complete new catalog of items, customers and loans with the builder, off to the side,
+    // and publishes it in one atomic swap. Readers never see a partly built catalog. A builder that
+    // throws aborts the rebuild, the current catalog stays published
+    void rebuild(Consumer<? super DataStore> builder);
+
+    // version of the current catalog, incremented by every rebuild
+    long getVersion();
+
+    void writeSnapshot(Path file, long sourceVersion) throws IOException;
+
+    boolean restoreSnapshot(Path file, long sourceVersion) throws IOException;
 }
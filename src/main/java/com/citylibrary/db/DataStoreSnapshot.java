@@ -0,0 +1,329 @@
+package com.citylibrary.db;
+
+import com.citylibrary.enums.ItemType;
+import com.citylibrary.enums.Status;
+import com.citylibrary.model.actor.Customer;
+import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.LibraryItem;
+import com.citylibrary.model.item.Loan;
+import com.citylibrary.model.item.Work;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compact binary image of a data store. Layout:
+//   header  : int magic, short format version, long source version
+//   records : byte tag followed by the record fields, terminated by the END tag
+// A work is written once, before its first copy, and copies refer to it by its position in the snapshot.
+// Enums are stored by ordinal, bump FORMAT_VERSION whenever ItemType, Status or a record layout changes.
+// Every value read is checked before it reaches the store, a corrupt or truncated snapshot fails as an IOException
+final class DataStoreSnapshot {
+
+    private static final int MAGIC = 0x434C5342;
+    private static final short FORMAT_VERSION = 3;      // 3: Status.HELD
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final byte END = 0;
+    private static final byte ITEM = 1;
+    private static final byte CUSTOMER = 2;
+    private static final byte LOAN = 3;
+    private static final byte WORK = 4;
+
+    private static final ItemType[] ITEM_TYPES = ItemType.values();
+    private static final Status[] STATUSES = Status.values();
+
+    private DataStoreSnapshot() {
+    }
+
+    // Writes to a temporary file first and moves it into place, a crash never leaves a torn snapshot behind
+    static void write(final DataStore dataStore, final Path file, final long sourceVersion) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer writer = new Writer(channel);
+            writer.putInt(MAGIC);
+            writer.putShort(FORMAT_VERSION);
+            writer.putLong(sourceVersion);
+
+            // by value, so copies of one work share a record whether they share an instance or not
+            Map<Work, Integer> works = new HashMap<>();
+            for (LibraryItem item : dataStore.getLibraryItems()) {
+                Work work = item.getWork();
+                Integer workIndex = works.get(work);
+                if (workIndex == null) {
+                    workIndex = works.size();
+                    works.put(work, workIndex);
+                    writer.putByte(WORK);
+                    writer.putInt(work.getItemId());
+                    writer.putByte((byte) work.getType().ordinal());
+                    writer.putString(work.getTitle());
+                    writer.putString(work.getDescription());
+                }
+
+                writer.putByte(ITEM);
+                writer.putInt(item.getLibraryId());
+                writer.putInt(workIndex);
+                // holds live in memory only, a copy held for a patron is saved as available
+                Status status = item.getItemStatus() == Status.HELD ? Status.AVAILABLE : item.getItemStatus();
+                writer.putByte((byte) status.ordinal());
+                writer.putInt(item.getShelfId());
+            }
+
+            for (Person customer : dataStore.getCustomers()) {
+                writer.putByte(CUSTOMER);
+                writer.putInt(customer.getId());
+                writer.putString(customer.getFirstName());
+                writer.putString(customer.getLastName());
+            }
+
+            for (Loan loan : dataStore.getLoans()) {
+                writer.putByte(LOAN);
+                writer.putInt(loan.getCustomer().getId());
+                writer.putInt(loan.getItem().getLibraryId());
+                writer.putLong(loan.getIssueDate().toEpochDay());
+                writer.putLong(loan.getDueDate().toEpochDay());
+            }
+
+            writer.putByte(END);
+            writer.flush();
+            channel.force(false);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Restores the store from a snapshot. Returns false, leaving the store untouched, when the snapshot
+    // is missing, was written by another format version or was taken from different source data.
+    // The restored catalog is published in one step once complete, a corrupt snapshot leaves the store as it was
+    static boolean read(final DataStore dataStore, final Path file, final long sourceVersion) throws IOException {
+        if (!Files.isRegularFile(file))
+            return false;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Reader reader = new Reader(channel);
+            if (reader.getInt() != MAGIC || reader.getShort() != FORMAT_VERSION || reader.getLong() != sourceVersion)
+                return false;
+
+            dataStore.rebuild(restored -> {
+                try {
+                    readRecords(reader, restored);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                } catch (RuntimeException ex) {
+                    // a value the checks below let through and the store refused
+                    throw new UncheckedIOException(new IOException("Corrupt snapshot, " + ex.getMessage(), ex));
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        return true;
+    }
+
+    private static void readRecords(final Reader reader, final DataStore dataStore) throws IOException {
+        List<Work> works = new ArrayList<>();
+        byte tag;
+        while ((tag = reader.getByte()) != END) {
+            switch (tag) {
+                case WORK:
+                    works.add(readWork(reader));
+                    break;
+                case ITEM:
+                    readItem(reader, works, dataStore);
+                    break;
+                case CUSTOMER:
+                    Person customer = new Customer(id(reader.getInt(), 0, "customer"), reader.getString(), reader.getString());
+                    dataStore.putCustomer(customer);
+                    break;
+                case LOAN:
+                    readLoan(reader, dataStore);
+                    break;
+                default:
+                    throw new IOException("Corrupt snapshot, unknown record tag " + tag);
+            }
+        }
+    }
+
+    private static Work readWork(final Reader reader) throws IOException {
+        int itemId = id(reader.getInt(), 1, "work");
+        ItemType type = ordinal(ITEM_TYPES, reader.getByte());
+        String title = reader.getString();
+        String description = reader.getString();
+        if (title.isEmpty())
+            throw new IOException("Corrupt snapshot, work " + itemId + " has no title");
+        return new Work(itemId, type, title, description);
+    }
+
+    private static void readItem(final Reader reader, final List<Work> works, final DataStore dataStore) throws IOException {
+        int libraryId = id(reader.getInt(), 1, "item");
+        int workIndex = reader.getInt();
+        Status status = ordinal(STATUSES, reader.getByte());
+        int shelfId = reader.getInt();
+
+        if (workIndex < 0 || workIndex >= works.size())
+            throw new IOException("Corrupt snapshot, item refers to an unknown work");
+
+        LibraryItem item = new LibraryItem.LibraryItemBuilder(libraryId, works.get(workIndex))
+                .withShelftId(shelfId)
+                .build();
+        item.setItemStatus(status);
+        dataStore.putLibraryItem(item);
+    }
+
+    // Loans are written after items and customers, so both ends of the loan have already been restored
+    private static void readLoan(final Reader reader, final DataStore dataStore) throws IOException {
+        Person customer = dataStore.getCustomer(id(reader.getInt(), 0, "customer"));
+        LibraryItem item = dataStore.getLibraryItem(id(reader.getInt(), 1, "item"));
+        LocalDate issueDate = epochDay(reader.getLong());
+        LocalDate dueDate = epochDay(reader.getLong());
+
+        if (customer == null || item == null)
+            throw new IOException("Corrupt snapshot, loan refers to an unknown customer or item");
+
+        dataStore.addLoan(new Loan(customer, item, issueDate, dueDate));
+    }
+
+    // a corrupt byte is reported like any other corrupt record, not as an unchecked index error
+    private static <E extends Enum<E>> E ordinal(final E[] values, final byte ordinal) throws IOException {
+        if (ordinal < 0 || ordinal >= values.length)
+            throw new IOException("Corrupt snapshot, unknown " + values.getClass().getComponentType().getSimpleName() + " ordinal " + ordinal);
+        return values[ordinal];
+    }
+
+    private static int id(final int id, final int min, final String kind) throws IOException {
+        if (id < min)
+            throw new IOException("Corrupt snapshot, invalid " + kind + " id " + id);
+        return id;
+    }
+
+    // loans keep their days as ints, every int day is a valid date
+    private static LocalDate epochDay(final long epochDay) throws IOException {
+        if (epochDay < Integer.MIN_VALUE || epochDay > Integer.MAX_VALUE)
+            throw new IOException("Corrupt snapshot, loan date out of range " + epochDay);
+        return LocalDate.ofEpochDay(epochDay);
+    }
+
+    private static final class Writer {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        private Writer(final FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putByte(final byte value) throws IOException {
+            ensure(Byte.BYTES).put(value);
+        }
+
+        void putShort(final short value) throws IOException {
+            ensure(Short.BYTES).putShort(value);
+        }
+
+        void putInt(final int value) throws IOException {
+            ensure(Integer.BYTES).putInt(value);
+        }
+
+        void putLong(final long value) throws IOException {
+            ensure(Long.BYTES).putLong(value);
+        }
+
+        void putString(final String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            for (int offset = 0; offset < bytes.length; ) {
+                int length = Math.min(bytes.length - offset, ensure(1).remaining());
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+
+        private ByteBuffer ensure(final int bytes) throws IOException {
+            if (buffer.remaining() < bytes)
+                flush();
+            return buffer;
+        }
+    }
+
+    private static final class Reader {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        private Reader(final FileChannel channel) {
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        byte getByte() throws IOException {
+            return require(Byte.BYTES).get();
+        }
+
+        short getShort() throws IOException {
+            return require(Short.BYTES).getShort();
+        }
+
+        int getInt() throws IOException {
+            return require(Integer.BYTES).getInt();
+        }
+
+        long getLong() throws IOException {
+            return require(Long.BYTES).getLong();
+        }
+
+        // a length is checked against the bytes left in the file before anything is allocated for it
+        String getString() throws IOException {
+            int length = getInt();
+            if (length < 0 || length > remaining())
+                throw new IOException("Corrupt snapshot, string length " + length + " out of range");
+
+            byte[] bytes = new byte[length];
+            for (int offset = 0; offset < length; ) {
+                int chunk = Math.min(length - offset, require(1).remaining());
+                buffer.get(bytes, offset, chunk);
+                offset += chunk;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private long remaining() throws IOException {
+            return channel.size() - channel.position() + buffer.remaining();
+        }
+
+        private ByteBuffer require(final int bytes) throws IOException {
+            if (buffer.remaining() >= bytes)
+                return buffer;
+
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0)
+                    throw new EOFException("Snapshot ended unexpectedly");
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
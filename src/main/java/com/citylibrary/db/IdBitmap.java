@@ -0,0 +1,395 @@
+package com.citylibrary.db;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of non-negative ids in the manner of a roaring bitmap. Ids are split into chunks
+ * of 2^16 by their high bits, a chunk holds its low bits either as a sorted array while it has at
+ * most 4096 ids or as a 1024 word bitset once it has more. Sparse sets such as a shelf cost two
+ * bytes an id, dense ones such as a status one bit.
+ * <p>
+ * Writes to a bitset chunk are single word atomic operations and take no lock, so concurrent status
+ * transitions on different items never wait for each other. Array chunks are copied on write under
+ * their own chunk's lock, so writes to different chunks never wait for each other either, and only
+ * ever grow into bitset chunks, never back. A dense bitmap starts every chunk as a bitset, for status sets
+ * that are written on every transition and for bulk loads that would otherwise copy a growing array
+ * per id. Reads take no lock and are weakly consistent. Bitmaps made by and, or and andNot are new
+ * and not shared with their operands.
+ * <p>
+ * The directory holds one slot per chunk that is never replaced, a grown directory shares the
+ * slots of the old one, so growing it never loses a write made to a chunk meanwhile.
+ */
+public final class IdBitmap {
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int LOW_MASK = (1 << CHUNK_SHIFT) - 1;
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int WORDS = (1 << CHUNK_SHIFT) / Long.SIZE;
+    private static final int MAX_CHUNKS = (Integer.MAX_VALUE >>> CHUNK_SHIFT) + 1;
+
+    private static final VarHandle WORD = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Slot[].class);
+
+    private final boolean dense;
+    private volatile Slot[] slots;                 // null or one slot per chunk
+
+    public IdBitmap() {
+        this(false);
+    }
+
+    IdBitmap(final boolean dense) {
+        this.dense = dense;
+        this.slots = new Slot[0];
+    }
+
+    private IdBitmap(final Object[] chunks) {
+        this.dense = false;
+        Slot[] filled = new Slot[chunks.length];
+        for (int index = 0; index < chunks.length; index++)
+            if (chunks[index] != null)
+                filled[index] = new Slot(chunks[index]);
+        this.slots = filled;
+    }
+
+    // a chunk's place in the directory, its lock guards array chunk writes
+    private static final class Slot {
+        private volatile Object chunk;             // null, char[] or long[]
+
+        private Slot(final Object chunk) {
+            this.chunk = chunk;
+        }
+    }
+
+    public boolean contains(final int id) {
+        Object chunk = chunk(id);
+        if (chunk instanceof long[])
+            return ((long) WORD.getAcquire((long[]) chunk, (id & LOW_MASK) >>> 6) & 1L << id) != 0;
+        return chunk != null && Arrays.binarySearch((char[]) chunk, (char) id) >= 0;
+    }
+
+    // whether the id was added by this call, of racing adds of one id exactly one wins
+    boolean add(final int id) {
+        if (id < 0)
+            throw new IllegalArgumentException("Id must not be negative: " + id);
+
+        Object chunk = chunk(id);
+        if (chunk instanceof long[])
+            return setBit((long[]) chunk, id);
+
+        Slot slot = slot(id >>> CHUNK_SHIFT);
+        synchronized (slot) {
+            chunk = slot.chunk;
+            if (chunk instanceof long[])
+                return setBit((long[]) chunk, id);
+            if (chunk == null && dense) {
+                long[] words = new long[WORDS];
+                words[(id & LOW_MASK) >>> 6] = 1L << id;
+                slot.chunk = words;
+                return true;
+            }
+
+            char[] array = chunk == null ? new char[0] : (char[]) chunk;
+            int index = Arrays.binarySearch(array, (char) id);
+            if (index >= 0)
+                return false;
+
+            index = -index - 1;
+            char[] grown = new char[array.length + 1];
+            System.arraycopy(array, 0, grown, 0, index);
+            grown[index] = (char) id;
+            System.arraycopy(array, index, grown, index + 1, array.length - index);
+            slot.chunk = grown.length > ARRAY_LIMIT ? words(grown) : grown;
+            return true;
+        }
+    }
+
+    // whether the id was removed by this call, of racing removes of one id exactly one wins
+    boolean remove(final int id) {
+        Object chunk = chunk(id);
+        if (chunk instanceof long[])
+            return clearBit((long[]) chunk, id);
+        if (chunk == null)
+            return false;
+
+        Slot slot = slotAt(slots, id >>> CHUNK_SHIFT);
+        synchronized (slot) {
+            chunk = slot.chunk;
+            if (chunk instanceof long[])
+                return clearBit((long[]) chunk, id);
+
+            char[] array = (char[]) chunk;
+            int index = array == null ? -1 : Arrays.binarySearch(array, (char) id);
+            if (index < 0)
+                return false;
+
+            char[] shrunk = new char[array.length - 1];
+            System.arraycopy(array, 0, shrunk, 0, index);
+            System.arraycopy(array, index + 1, shrunk, index, array.length - index - 1);
+            slot.chunk = shrunk.length == 0 ? null : shrunk;
+            return true;
+        }
+    }
+
+    boolean set(final int id, final boolean present) {
+        return present ? add(id) : remove(id);
+    }
+
+    // chunk by chunk under each chunk's lock, the slots stay for the ids written next
+    void clear() {
+        for (Slot slot : slots) {
+            if (slot != null) {
+                synchronized (slot) {
+                    slot.chunk = null;
+                }
+            }
+        }
+    }
+
+    public int cardinality() {
+        Slot[] current = slots;
+        int cardinality = 0;
+        for (int index = 0; index < current.length; index++)
+            cardinality += cardinality(chunkAt(current, index));
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        Slot[] current = slots;
+        for (int index = 0; index < current.length; index++)
+            if (cardinality(chunkAt(current, index)) > 0)
+                return false;
+        return true;
+    }
+
+    // ascending
+    public void forEach(final IntConsumer action) {
+        Slot[] current = slots;
+        for (int index = 0; index < current.length; index++) {
+            Object chunk = chunkAt(current, index);
+            int high = index << CHUNK_SHIFT;
+            if (chunk instanceof long[]) {
+                long[] words = (long[]) chunk;
+                for (int word = 0; word < WORDS; word++) {
+                    long bits = (long) WORD.getAcquire(words, word);
+                    while (bits != 0) {
+                        action.accept(high | word << 6 | Long.numberOfTrailingZeros(bits));
+                        bits &= bits - 1;
+                    }
+                }
+            } else if (chunk != null) {
+                for (char low : (char[]) chunk)
+                    action.accept(high | low);
+            }
+        }
+    }
+
+    // ascending
+    public int[] toArray() {
+        int[] ids = new int[cardinality()];
+        int[] count = new int[1];
+        forEach(id -> {
+            if (count[0] < ids.length)
+                ids[count[0]++] = id;
+        });
+        return count[0] == ids.length ? ids : Arrays.copyOf(ids, count[0]);
+    }
+
+    public IdBitmap and(final IdBitmap other) {
+        Slot[] left = slots;
+        Slot[] right = other.slots;
+        Object[] result = new Object[Math.min(left.length, right.length)];
+        for (int index = 0; index < result.length; index++) {
+            Object a = chunkAt(left, index);
+            Object b = chunkAt(right, index);
+            if (a == null || b == null)
+                continue;
+            if (a instanceof char[])
+                result[index] = filter((char[]) a, b, true);
+            else if (b instanceof char[])
+                result[index] = filter((char[]) b, a, true);
+            else
+                result[index] = combine((long[]) a, (long[]) b, Operation.AND);
+        }
+        return new IdBitmap(result);
+    }
+
+    public IdBitmap or(final IdBitmap other) {
+        Slot[] left = slots;
+        Slot[] right = other.slots;
+        Object[] result = new Object[Math.max(left.length, right.length)];
+        for (int index = 0; index < result.length; index++) {
+            Object a = index < left.length ? chunkAt(left, index) : null;
+            Object b = index < right.length ? chunkAt(right, index) : null;
+            if (a == null || b == null)
+                result[index] = copy(a != null ? a : b);
+            else
+                result[index] = combine(words(a), words(b), Operation.OR);
+        }
+        return new IdBitmap(result);
+    }
+
+    public IdBitmap andNot(final IdBitmap other) {
+        Slot[] left = slots;
+        Slot[] right = other.slots;
+        Object[] result = new Object[left.length];
+        for (int index = 0; index < result.length; index++) {
+            Object a = chunkAt(left, index);
+            Object b = index < right.length ? chunkAt(right, index) : null;
+            if (a == null || b == null)
+                result[index] = copy(a);
+            else if (a instanceof char[])
+                result[index] = filter((char[]) a, b, false);
+            else
+                result[index] = combine((long[]) a, words(b), Operation.AND_NOT);
+        }
+        return new IdBitmap(result);
+    }
+
+    private enum Operation {
+        AND,
+        OR,
+        AND_NOT,
+    }
+
+    private Object chunk(final int id) {
+        return id < 0 ? null : chunkAt(slots, id >>> CHUNK_SHIFT);
+    }
+
+    private static Object chunkAt(final Slot[] current, final int index) {
+        Slot slot = slotAt(current, index);
+        return slot == null ? null : slot.chunk;
+    }
+
+    private static Slot slotAt(final Slot[] current, final int index) {
+        return index >= current.length ? null : (Slot) SLOT.getAcquire(current, index);
+    }
+
+    private Slot slot(final int index) {
+        Slot slot = slotAt(slots, index);
+        return slot != null ? slot : newSlot(index);
+    }
+
+    // Under the bitmap's lock, taken once per chunk the first time it is written. Slots are only
+    // ever added here, so a grown directory copied from the old one misses none
+    private synchronized Slot newSlot(final int index) {
+        Slot[] current = slots;
+        if (index >= current.length) {
+            int length = Math.max(current.length, 1);
+            while (length <= index)
+                length = Math.min(length << 1, MAX_CHUNKS);
+            slots = current = Arrays.copyOf(current, length);
+        }
+        Slot slot = (Slot) SLOT.getAcquire(current, index);
+        if (slot == null) {
+            slot = new Slot(null);
+            SLOT.setRelease(current, index, slot);
+        }
+        return slot;
+    }
+
+    private static boolean setBit(final long[] words, final int id) {
+        int word = (id & LOW_MASK) >>> 6;
+        long bit = 1L << id;
+        long bits;
+        do {
+            bits = (long) WORD.getAcquire(words, word);
+            if ((bits & bit) != 0)
+                return false;
+        } while (!WORD.compareAndSet(words, word, bits, bits | bit));
+        return true;
+    }
+
+    private static boolean clearBit(final long[] words, final int id) {
+        int word = (id & LOW_MASK) >>> 6;
+        long bit = 1L << id;
+        long bits;
+        do {
+            bits = (long) WORD.getAcquire(words, word);
+            if ((bits & bit) == 0)
+                return false;
+        } while (!WORD.compareAndSet(words, word, bits, bits & ~bit));
+        return true;
+    }
+
+    private static int cardinality(final Object chunk) {
+        if (chunk instanceof char[])
+            return ((char[]) chunk).length;
+        if (chunk == null)
+            return 0;
+
+        long[] words = (long[]) chunk;
+        int cardinality = 0;
+        for (int word = 0; word < WORDS; word++)
+            cardinality += Long.bitCount((long) WORD.getAcquire(words, word));
+        return cardinality;
+    }
+
+    // the array's ids that are, or with keep false are not, in the other chunk
+    private static Object filter(final char[] array, final Object other, final boolean keep) {
+        char[] kept = new char[array.length];
+        int count = 0;
+        for (char low : array) {
+            boolean present = other instanceof long[]
+                    ? ((long) WORD.getAcquire((long[]) other, low >>> 6) & 1L << low) != 0
+                    : Arrays.binarySearch((char[]) other, low) >= 0;
+            if (present == keep)
+                kept[count++] = low;
+        }
+        return count == 0 ? null : Arrays.copyOf(kept, count);
+    }
+
+    private static Object combine(final long[] a, final long[] b, final Operation operation) {
+        long[] words = new long[WORDS];
+        for (int word = 0; word < WORDS; word++) {
+            long left = (long) WORD.getAcquire(a, word);
+            long right = (long) WORD.getAcquire(b, word);
+            words[word] = operation == Operation.AND ? left & right
+                    : operation == Operation.OR ? left | right
+                    : left & ~right;
+        }
+        return compact(words);
+    }
+
+    // a result chunk is stored the way its cardinality calls for
+    private static Object compact(final long[] words) {
+        int cardinality = cardinality(words);
+        if (cardinality == 0)
+            return null;
+        if (cardinality > ARRAY_LIMIT)
+            return words;
+
+        char[] array = new char[cardinality];
+        int count = 0;
+        for (int word = 0; word < WORDS; word++) {
+            long bits = words[word];
+            while (bits != 0) {
+                array[count++] = (char) (word << 6 | Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        return array;
+    }
+
+    private static Object copy(final Object chunk) {
+        if (chunk instanceof char[])
+            return ((char[]) chunk).clone();
+        return chunk == null ? null : compact(words(chunk));
+    }
+
+    // a private bitset copy of either kind of chunk
+    private static long[] words(final Object chunk) {
+        long[] words = new long[WORDS];
+        if (chunk instanceof char[]) {
+            for (char low : (char[]) chunk)
+                words[low >>> 6] |= 1L << low;
+        } else {
+            long[] source = (long[]) chunk;
+            for (int word = 0; word < WORDS; word++)
+                words[word] = (long) WORD.getAcquire(source, word);
+        }
+        return words;
+    }
+}
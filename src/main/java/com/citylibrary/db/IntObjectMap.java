@@ -0,0 +1,260 @@
+package com.citylibrary.db;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Concurrent map from non-negative int keys to values, laid out as a direct-address table.
+ * Library and customer ids are dense, so the key is the slot: a lookup is two array reads with
+ * no boxing, no hashing and no per-entry node. Slots live in fixed size pages that are only
+ * allocated once a key in their range is written, sparse ids cost a page and not the full range.
+ * <p>
+ * Reads are lock-free, writes are single slot atomic operations. Values are compared by identity,
+ * iteration is weakly consistent like the concurrent collections.
+ */
+final class IntObjectMap<V> {
+
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int MAX_PAGES = (Integer.MAX_VALUE >>> PAGE_SHIFT) + 1;
+    private static final int INITIAL_PAGES = 16;
+
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Object[].class);
+    private static final VarHandle PAGES = MethodHandles.arrayElementVarHandle(Object[][].class);
+
+    private volatile Object[][] pages = new Object[INITIAL_PAGES][];
+    private final LongAdder size = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    V get(final int key) {
+        Object[] page = page(key);
+        return page == null ? null : (V) SLOTS.getAcquire(page, key & PAGE_MASK);
+    }
+
+    // returns the value the key was mapped to before, null when there was none
+    @SuppressWarnings("unchecked")
+    V put(final int key, final V value) {
+        V previous = (V) SLOTS.getAndSet(pageForWrite(key), key & PAGE_MASK, value);
+        if (previous == null)
+            size.increment();
+        return previous;
+    }
+
+    // returns the value already mapped to the key, null when the given value was stored
+    @SuppressWarnings("unchecked")
+    V putIfAbsent(final int key, final V value) {
+        V current = get(key);
+        if (current != null)
+            return current;
+
+        current = (V) SLOTS.compareAndExchange(pageForWrite(key), key & PAGE_MASK, null, value);
+        if (current == null)
+            size.increment();
+        return current;
+    }
+
+    boolean replace(final int key, final V expected, final V value) {
+        Object[] page = page(key);
+        return page != null && SLOTS.compareAndSet(page, key & PAGE_MASK, expected, value);
+    }
+
+    // returns the removed value, null when the key was not mapped
+    @SuppressWarnings("unchecked")
+    V remove(final int key) {
+        Object[] page = page(key);
+        if (page == null)
+            return null;
+
+        V previous = (V) SLOTS.getAndSet(page, key & PAGE_MASK, null);
+        if (previous != null)
+            size.decrement();
+        return previous;
+    }
+
+    boolean remove(final int key, final V expected) {
+        Object[] page = page(key);
+        if (page == null || !SLOTS.compareAndSet(page, key & PAGE_MASK, expected, null))
+            return false;
+        size.decrement();
+        return true;
+    }
+
+    // slot by slot so a value written while clearing is either removed or kept and counted
+    void clear() {
+        for (Object[] page : pages) {
+            if (page == null)
+                continue;
+            for (int slot = 0; slot < PAGE_SIZE; slot++) {
+                if (SLOTS.getAcquire(page, slot) != null && SLOTS.getAndSet(page, slot, null) != null)
+                    size.decrement();
+            }
+        }
+    }
+
+    int size() {
+        return size.intValue();
+    }
+
+    // read only view, its spliterator splits by slot range so parallel streams fan out over pages
+    Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValueIterator();
+            }
+
+            @Override
+            public Spliterator<V> spliterator() {
+                Object[][] snapshot = pages;
+                return new ValueSpliterator(snapshot, 0, snapshot.length);
+            }
+
+            @Override
+            public int size() {
+                return IntObjectMap.this.size();
+            }
+        };
+    }
+
+    // values of the keys from the given one on in key order, weakly consistent like values()
+    Iterator<V> iterator(final int fromKey) {
+        return new ValueIterator(Math.max(fromKey, 0));
+    }
+
+    private Object[] page(final int key) {
+        Object[][] current = pages;
+        int index = key >>> PAGE_SHIFT;
+        return key < 0 || index >= current.length ? null : (Object[]) PAGES.getAcquire(current, index);
+    }
+
+    private Object[] pageForWrite(final int key) {
+        if (key < 0)
+            throw new IllegalArgumentException("Key must not be negative: " + key);
+
+        Object[] page = page(key);
+        return page != null ? page : allocatePage(key >>> PAGE_SHIFT);
+    }
+
+    // Pages are only allocated and the directory only grown under this lock, a grown directory
+    // shares the page arrays of the old one so no slot write can be lost to a copy
+    private synchronized Object[] allocatePage(final int index) {
+        Object[][] current = pages;
+        if (index >= current.length) {
+            int length = current.length;
+            while (length <= index)
+                length = Math.min(length << 1, MAX_PAGES);
+            Object[][] grown = new Object[length][];
+            System.arraycopy(current, 0, grown, 0, current.length);
+            pages = current = grown;
+        }
+
+        Object[] page = current[index];
+        if (page == null) {
+            page = new Object[PAGE_SIZE];
+            PAGES.setRelease(current, index, page);
+        }
+        return page;
+    }
+
+    private final class ValueIterator implements Iterator<V> {
+        private final Object[][] snapshot = pages;
+        private int page;
+        private int slot;
+        private V next;
+
+        ValueIterator() {
+            this(0);
+        }
+
+        ValueIterator(final int fromKey) {
+            page = fromKey >>> PAGE_SHIFT;
+            slot = fromKey & PAGE_MASK;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean hasNext() {
+            while (next == null && page < snapshot.length) {
+                Object[] slots = (Object[]) PAGES.getAcquire(snapshot, page);
+                while (next == null && slots != null && slot < PAGE_SIZE)
+                    next = (V) SLOTS.getAcquire(slots, slot++);
+                if (next == null) {
+                    page++;
+                    slot = 0;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public V next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            V value = next;
+            next = null;
+            return value;
+        }
+    }
+
+    // walks the pages [fromPage, toPage) of the directory seen when the view was split
+    private final class ValueSpliterator implements Spliterator<V> {
+        private final Object[][] snapshot;
+        private int page;
+        private int slot;
+        private final int toPage;
+
+        ValueSpliterator(final Object[][] snapshot, final int fromPage, final int toPage) {
+            this.snapshot = snapshot;
+            this.page = fromPage;
+            this.toPage = toPage;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(final Consumer<? super V> action) {
+            while (page < toPage) {
+                Object[] slots = (Object[]) PAGES.getAcquire(snapshot, page);
+                while (slots != null && slot < PAGE_SIZE) {
+                    V value = (V) SLOTS.getAcquire(slots, slot++);
+                    if (value != null) {
+                        action.accept(value);
+                        return true;
+                    }
+                }
+                page++;
+                slot = 0;
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<V> trySplit() {
+            int remaining = toPage - page;
+            if (slot != 0 || remaining < 2)
+                return null;
+
+            int middle = page + remaining / 2;
+            ValueSpliterator prefix = new ValueSpliterator(snapshot, page, middle);
+            page = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return (long) (toPage - page) * PAGE_SIZE;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.NONNULL | Spliterator.CONCURRENT;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.citylibrary.db;
+
+import com.citylibrary.enums.ItemType;
+import com.citylibrary.enums.Status;
+import com.citylibrary.model.item.Availability;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Bitmaps of library ids by type, shelf and status and copy counts by title, kept by the item
+ * storage next to its items. Every write is made under the library id's lock. Type, shelf and
+ * title change only when an item is written. Status changes on every borrow and return without
+ * any lock, so the loaned bitmap and counts are brought in step by syncStatus after each
+ * transition. Available items are all items without the loaned and held ones.
+ * <p>
+ * A title's total, held and loaned counts share one atomic word, so they are always read
+ * together as they were at one moment.
+ * <p>
+ * Each title also has a pool of its available copies for borrowers who want any copy. A copy is
+ * offered to the pool whenever it is synced as available, at most once until it is taken again.
+ * A held copy is never offered, it is kept for the patron it is held for.
+ * A copy leaves the pool and its pooled bit is cleared in one step under the copy's lock, the lock
+ * its syncs run under, so a sync never sees a copy as pooled that is no longer queued.
+ * Taking a copy does not claim it, the taker claims it with the status CAS and simply drops a copy
+ * that is gone or was lent meanwhile. That copy is offered again when it is next synced available.
+ * <p>
+ * Counts and pools are boxed heap structures, an entry per title and a queue node per available
+ * copy, so unlike the bitmaps they cost heap in proportion to the catalog in either storage mode.
+ */
+final class ItemIndexes {
+
+    // a title's copies in one word, 21 bits each for the total, held and loaned ones from high to low
+    private static final int FIELD = 21;
+    private static final long FIELD_MASK = (1L << FIELD) - 1;
+    private static final long TOTAL = 1L << 2 * FIELD;
+    private static final long HELD = 1L << FIELD;
+    private static final long LOANED = 1L;
+
+    // status and type bitmaps cover most of the ids and are dense from the start, shelves are sparse
+    private final IdBitmap all = new IdBitmap(true);
+    private final IdBitmap loaned = new IdBitmap(true);
+    private final IdBitmap held = new IdBitmap(true);
+    private final Map<ItemType, IdBitmap> byType = new EnumMap<>(ItemType.class);
+    private final ConcurrentMap<Integer, IdBitmap> byShelf = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, AtomicLong> copiesByItemId = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, ConcurrentLinkedQueue<Integer>> poolByItemId = new ConcurrentHashMap<>();
+    private final IdBitmap pooled = new IdBitmap(true);
+
+    ItemIndexes() {
+        for (ItemType type : ItemType.values())
+            byType.put(type, new IdBitmap(true));
+    }
+
+    // the item is counted as available until its status is synced
+    void add(final int libraryId, final int itemId, final ItemType type, final int shelfId) {
+        byType.get(type).add(libraryId);
+        byShelf.computeIfAbsent(shelfId, shelf -> new IdBitmap()).add(libraryId);
+        all.add(libraryId);
+        copiesByItemId.computeIfAbsent(itemId, title -> new AtomicLong()).addAndGet(TOTAL);
+    }
+
+    void remove(final int libraryId, final int itemId, final ItemType type, final int shelfId) {
+        long copies = TOTAL;
+        if (loaned.remove(libraryId))
+            copies += LOANED;
+        if (held.remove(libraryId))
+            copies += HELD;
+        all.remove(libraryId);
+        byType.get(type).remove(libraryId);
+        IdBitmap shelf = byShelf.get(shelfId);
+        if (shelf != null)
+            shelf.remove(libraryId);
+
+        AtomicLong counts = copiesByItemId.get(itemId);
+        if (counts != null)
+            counts.addAndGet(-copies);
+
+        // a linear walk of the title's pool, items are removed far less often than they are lent
+        ConcurrentLinkedQueue<Integer> pool = poolByItemId.get(itemId);
+        if (pooled.remove(libraryId) && pool != null)
+            pool.remove(libraryId);
+    }
+
+    // Every transition is followed by a sync, under the lock the last one reads the final status
+    void syncStatus(final int libraryId, final int itemId, final Status status) {
+        if (status == Status.AVAILABLE && pooled.add(libraryId))
+            poolByItemId.computeIfAbsent(itemId, title -> new ConcurrentLinkedQueue<>()).offer(libraryId);
+
+        long change = flip(loaned, libraryId, status == Status.LOANED, LOANED)
+                + flip(held, libraryId, status == Status.HELD, HELD);
+        AtomicLong counts = change == 0 ? null : copiesByItemId.get(itemId);
+        if (counts != null)
+            counts.addAndGet(change);
+    }
+
+    // the count change of putting the id in or out of the bitmap
+    private static long flip(final IdBitmap bitmap, final int libraryId, final boolean present, final long unit) {
+        if (!bitmap.set(libraryId, present))
+            return 0;
+        return present ? unit : -unit;
+    }
+
+    // Library id of a copy of the title that was available when offered, -1 when the pool is empty.
+    // The head is taken under its lock, a head another taker removed first is passed over
+    int takeAvailableCopy(final int itemId, final IntFunction<Object> lock) {
+        ConcurrentLinkedQueue<Integer> pool = poolByItemId.get(itemId);
+        if (pool == null)
+            return -1;
+
+        for (Integer libraryId = pool.peek(); libraryId != null; libraryId = pool.peek()) {
+            synchronized (lock.apply(libraryId)) {
+                if (pool.remove(libraryId)) {
+                    pooled.remove(libraryId);
+                    return libraryId;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // null when the title has no copies
+    Availability availability(final int itemId) {
+        AtomicLong counts = copiesByItemId.get(itemId);
+        long copies = counts == null ? 0 : counts.get();
+        int total = (int) (copies >>> 2 * FIELD);
+        return total == 0 ? null
+                : new Availability(itemId, total, (int) (copies & FIELD_MASK), (int) (copies >>> FIELD & FIELD_MASK));
+    }
+
+    // Library ids meeting every given condition, a null argument or a negative shelf id means any.
+    // Null when there is no condition at all, the caller is better off iterating the items
+    IdBitmap select(final ItemType type, final Status status, final int shelfId) {
+        IdBitmap selected = null;
+        if (type != null)
+            selected = byType.get(type);
+        if (shelfId >= 0) {
+            IdBitmap shelf = byShelf.getOrDefault(shelfId, new IdBitmap());
+            selected = selected == null ? shelf : selected.and(shelf);
+        }
+        if (status == Status.LOANED)
+            return selected == null ? loaned.and(all) : selected.and(loaned);
+        if (status == Status.HELD)
+            return selected == null ? held.and(all) : selected.and(held);
+        if (status == Status.AVAILABLE)
+            return (selected == null ? all : selected).andNot(loaned).andNot(held);
+        return selected == null ? null : selected.and(all);
+    }
+
+    void clear() {
+        all.clear();
+        loaned.clear();
+        held.clear();
+        byType.values().forEach(IdBitmap::clear);
+        byShelf.clear();
+        copiesByItemId.clear();
+        poolByItemId.clear();
+        pooled.clear();
+    }
+}
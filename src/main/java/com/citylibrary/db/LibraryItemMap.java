@@ -0,0 +1,153 @@
+package com.citylibrary.db;
+
+import com.citylibrary.enums.ItemType;
+import com.citylibrary.enums.Status;
+import com.citylibrary.model.item.Availability;
+import com.citylibrary.model.item.LibraryItem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Library items keyed by library id that keep the title index, the type, shelf and status
+ * bitmaps and the copy counts in step with every write. Reads go straight to the primitive map, writes to one library
+ * id are serialised on a lock stripe so they reach the indexes in the same order as the map.
+ */
+final class LibraryItemMap {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final IntObjectMap<LibraryItem> items = new IntObjectMap<>();
+    private final TitleIndex titleIndex = new TitleIndex();
+    private final ItemIndexes indexes = new ItemIndexes();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    LibraryItemMap() {
+        for (int i = 0; i < LOCK_STRIPES; i++)
+            locks[i] = new Object();
+    }
+
+    LibraryItem get(final int libraryId) {
+        return items.get(libraryId);
+    }
+
+    Collection<LibraryItem> values() {
+        return items.values();
+    }
+
+    Iterator<LibraryItem> iterator(final int fromLibraryId) {
+        return items.iterator(fromLibraryId);
+    }
+
+    // size of the posting list getItemsByTitle would walk, all items when the title is too short for the index
+    int estimateItemsByTitle(final String title) {
+        Collection<LibraryItem> candidates = titleIndex.candidates(title);
+        return candidates == null ? items.size() : candidates.size();
+    }
+
+    // Items matching the title as a substring ordered by library id. A write in progress may leave a
+    // replaced item in a posting list for a moment, so candidates are checked against the map
+    List<LibraryItem> getItemsByTitle(final String title, final boolean ignoreCase) {
+        Collection<LibraryItem> candidates = titleIndex.candidates(title);
+        if (candidates == null)
+            candidates = items.values();
+
+        List<LibraryItem> found = new ArrayList<>();
+        for (LibraryItem item : candidates) {
+            if (TitleIndex.matches(item.getTitle(), title, ignoreCase) && items.get(item.getLibraryId()) == item)
+                found.add(item);
+        }
+        found.sort(Comparator.comparingInt(LibraryItem::getLibraryId));
+        return found;
+    }
+
+    // library ids meeting the conditions, see ItemIndexes.select
+    IdBitmap select(final ItemType type, final Status status, final int shelfId) {
+        return indexes.select(type, status, shelfId);
+    }
+
+    Availability availability(final int itemId) {
+        return indexes.availability(itemId);
+    }
+
+    int takeAvailableCopy(final int itemId) {
+        return indexes.takeAvailableCopy(itemId, this::lock);
+    }
+
+    // brings the status bitmap and counts in step after the item's status changed in place
+    void syncStatus(final int libraryId) {
+        synchronized (lock(libraryId)) {
+            LibraryItem item = items.get(libraryId);
+            if (item != null)
+                indexes.syncStatus(libraryId, item.getItemId(), item.getItemStatus());
+        }
+    }
+
+    LibraryItem put(final LibraryItem item) {
+        synchronized (lock(item.getLibraryId())) {
+            LibraryItem previous = items.put(item.getLibraryId(), item);
+            if (previous != item) {
+                if (previous != null)
+                    unindex(previous);
+                index(item);
+            }
+            return previous;
+        }
+    }
+
+    LibraryItem putIfAbsent(final LibraryItem item) {
+        LibraryItem current = items.get(item.getLibraryId());
+        if (current != null)
+            return current;
+
+        synchronized (lock(item.getLibraryId())) {
+            current = items.putIfAbsent(item.getLibraryId(), item);
+            if (current == null)
+                index(item);
+            return current;
+        }
+    }
+
+    boolean replace(final LibraryItem existing, final LibraryItem replacement) {
+        synchronized (lock(existing.getLibraryId())) {
+            if (!items.replace(existing.getLibraryId(), existing, replacement))
+                return false;
+            unindex(existing);
+            index(replacement);
+            return true;
+        }
+    }
+
+    LibraryItem remove(final int libraryId) {
+        synchronized (lock(libraryId)) {
+            LibraryItem previous = items.remove(libraryId);
+            if (previous != null)
+                unindex(previous);
+            return previous;
+        }
+    }
+
+    // item by item so an item written while clearing never loses its index entries
+    void clear() {
+        for (LibraryItem item : items.values())
+            remove(item.getLibraryId());
+    }
+
+    private void index(final LibraryItem item) {
+        titleIndex.add(item);
+        indexes.add(item.getLibraryId(), item.getItemId(), item.getType(), item.getShelfId());
+        indexes.syncStatus(item.getLibraryId(), item.getItemId(), item.getItemStatus());
+    }
+
+    private void unindex(final LibraryItem item) {
+        titleIndex.remove(item);
+        indexes.remove(item.getLibraryId(), item.getItemId(), item.getType(), item.getShelfId());
+    }
+
+    private Object lock(final int libraryId) {
+        return locks[libraryId & (LOCK_STRIPES - 1)];
+    }
+}
@@ -0,0 +1,124 @@
+package com.citylibrary.db;
+
+import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.LibraryItem;
+import com.citylibrary.model.item.Loan;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Active loans split over independent loan tables by library id, each with its own lock, slots
+ * and customer and due date indexes. Borrowing and returning one item only touches its own
+ * shard, so writers on different shards never meet. Scans across all loans fan out to every shard
+ * in parallel and merge the results, point lookups such as a customer's loans walk the shards on
+ * the calling thread. A scan holds one shard's read lock at a time.
+ */
+final class LoanShards {
+
+    private static final Comparator<Loan> BY_LIBRARY_ID = Comparator.comparingInt(loan -> loan.getItem().getLibraryId());
+    private static final Comparator<Loan> BY_DUE_DATE = Comparator.comparing(Loan::getDueDate);
+
+    private final LoanTable[] shards;
+
+    LoanShards(final int shardCount) {
+        if (shardCount <= 0)
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+
+        shards = new LoanTable[shardCount];
+        for (int i = 0; i < shardCount; i++)
+            shards[i] = new LoanTable(shardCount);
+    }
+
+    int getShardCount() {
+        return shards.length;
+    }
+
+    boolean add(final Person customer, final LibraryItem item, final LocalDate issueDate, final LocalDate dueDate) {
+        return shard(item.getLibraryId()).add(customer, item, issueDate, dueDate);
+    }
+
+    LibraryItem remove(final int libraryId) {
+        return libraryId < 0 ? null : shard(libraryId).remove(libraryId);
+    }
+
+    boolean remove(final Loan loan) {
+        return loan.getItem().getLibraryId() >= 0 && shard(loan.getItem().getLibraryId()).remove(loan);
+    }
+
+    boolean replace(final Loan existing, final Loan replacement) {
+        return existing.getItem().getLibraryId() >= 0 && shard(existing.getItem().getLibraryId()).replace(existing, replacement);
+    }
+
+    // shards are cleared one after the other, a rebuild is the way to drop all loans at once
+    void clear() {
+        for (LoanTable shard : shards)
+            shard.clear();
+    }
+
+    // sum of the shard counts, not a snapshot across shards
+    int size() {
+        int size = 0;
+        for (LoanTable shard : shards)
+            size += shard.size();
+        return size;
+    }
+
+    boolean contains(final int libraryId) {
+        return libraryId >= 0 && shard(libraryId).contains(libraryId);
+    }
+
+    Loan get(final int libraryId) {
+        return libraryId < 0 ? null : shard(libraryId).get(libraryId);
+    }
+
+    // ordered by library id
+    List<Loan> values() {
+        return fanOut(LoanTable::values, BY_LIBRARY_ID);
+    }
+
+    // Each shard contributes at most limit loans from the library id on, the merged first limit are the answer
+    List<Loan> valuesFrom(final int fromLibraryId, final int limit) {
+        List<Loan> merged = fanOut(shard -> shard.valuesFrom(fromLibraryId, limit), BY_LIBRARY_ID);
+        return merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    // A customer's loans are spread over the shards of their items, ordered by library id. A customer
+    // has few loans, the shards are walked on the calling thread rather than the common pool
+    List<Loan> byCustomer(final int customerId) {
+        if (shards.length == 1)
+            return shards[0].byCustomer(customerId);
+
+        List<Loan> loans = new ArrayList<>();
+        for (LoanTable shard : shards)
+            loans.addAll(shard.byCustomer(customerId));
+        loans.sort(BY_LIBRARY_ID);
+        return loans;
+    }
+
+    // loans due on the given days, both inclusive, ordered by due date
+    List<Loan> dueBetween(final long fromDay, final long toDay) {
+        return fanOut(shard -> shard.dueBetween(fromDay, toDay), BY_DUE_DATE);
+    }
+
+    // every shard answers in the given order, so one shard's answer needs no sort
+    private List<Loan> fanOut(final Function<LoanTable, List<Loan>> query, final Comparator<Loan> order) {
+        if (shards.length == 1)
+            return query.apply(shards[0]);
+
+        List<Loan> merged = Arrays.stream(shards).parallel()
+                .flatMap(shard -> query.apply(shard).stream())
+                .collect(Collectors.toList());
+        merged.sort(order);
+        return merged;
+    }
+
+    private LoanTable shard(final int libraryId) {
+        return shards[libraryId % shards.length];
+    }
+}
@@ -0,0 +1,455 @@
+package com.citylibrary.db;
+
+import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.LibraryItem;
+import com.citylibrary.model.item.Loan;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Active loans held column by column instead of as Loan objects. Each loan takes one slot across
+ * parallel arrays: library id, customer id, issue and due epoch days, and the item and customer
+ * references. Released slots go on a free list and are reused. The loans of one customer and
+ * the loans due on one day are doubly linked lists threaded through the slots, headed from int
+ * columns keyed by customer id and by epoch day. Once a customer and a due date have been seen,
+ * recording or removing a loan allocates nothing and boxes nothing.
+ * <p>
+ * Loan objects are only built for callers that read loans. A recorded loan is matched by value,
+ * with its item compared by instance. Writers hold the write lock. The on-loan check is an
+ * optimistic read, and reads that build loans copy them under the read lock.
+ */
+final class LoanTable {
+
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final StampedLock lock = new StampedLock();
+    private final int stride;                       // library ids handled by one table are this far apart
+
+    private final IntColumn slotsByLibraryId = new IntColumn();          // slot + 1 by library id / stride, 0 when not on loan
+    private final IntColumn firstByCustomer = new IntColumn();           // head slot + 1, 0 when none
+    private final IntColumn firstByDueDay = new IntColumn();             // head slot + 1 by epoch day, from the epoch on
+    private final IntColumn firstByDueDayBeforeEpoch = new IntColumn();  // head slot + 1 by -1 - epoch day
+
+    private int[] libraryIds;
+    private int[] customerIds;
+    private int[] issueDays;
+    private int[] dueDays;
+    private LibraryItem[] items;
+    private Person[] customers;
+    private int[] nextByCustomer;                   // also chains the free list
+    private int[] previousByCustomer;
+    private int[] nextByDueDay;
+    private int[] previousByDueDay;
+
+    private int freeSlot;
+    private int usedSlots;
+    private volatile int size;                      // written under the write lock, read without it
+
+    LoanTable() {
+        this(1);
+    }
+
+    // A table that only ever sees every stride-th library id keys them by library id / stride, so
+    // its directory stays as dense as the ids it holds
+    LoanTable(final int stride) {
+        this.stride = stride;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    boolean add(final Person customer, final LibraryItem item, final LocalDate issueDate, final LocalDate dueDate) {
+        int libraryId = item.getLibraryId();
+        if (libraryId < 0 || customer.getId() < 0)
+            throw new IllegalArgumentException("Library and customer ids must not be negative: " + libraryId + ", " + customer.getId());
+        int issueDay = Math.toIntExact(issueDate.toEpochDay());
+        int dueDay = Math.toIntExact(dueDate.toEpochDay());
+
+        long stamp = lock.writeLock();
+        try {
+            if (slotsByLibraryId.get(libraryId / stride) != 0)
+                return false;
+
+            int slot = allocateSlot();
+            write(slot, customer, item, issueDay, dueDay);
+            slotsByLibraryId.set(libraryId / stride, slot + 1);
+            size++;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // releases the loan of the given item whatever it is, returns the item instance it referred to or null
+    LibraryItem remove(final int libraryId) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotsByLibraryId.get(libraryId / stride) - 1;
+            if (slot == NONE)
+                return null;
+
+            LibraryItem item = items[slot];
+            release(slot);
+            return item;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    boolean remove(final Loan loan) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotsByLibraryId.get(loan.getItem().getLibraryId() / stride) - 1;
+            if (slot == NONE || !matches(slot, loan))
+                return false;
+
+            release(slot);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    boolean replace(final Loan existing, final Loan replacement) {
+        if (existing.getItem().getLibraryId() != replacement.getItem().getLibraryId())
+            return false;
+        int issueDay = Math.toIntExact(replacement.getIssueDate().toEpochDay());
+        int dueDay = Math.toIntExact(replacement.getDueDate().toEpochDay());
+
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotsByLibraryId.get(existing.getItem().getLibraryId() / stride) - 1;
+            if (slot == NONE || !matches(slot, existing))
+                return false;
+
+            unlink(slot);
+            write(slot, replacement.getCustomer(), replacement.getItem(), issueDay, dueDay);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void clear() {
+        long stamp = lock.writeLock();
+        try {
+            slotsByLibraryId.clear();
+            firstByCustomer.clear();
+            firstByDueDay.clear();
+            firstByDueDayBeforeEpoch.clear();
+            allocate(INITIAL_CAPACITY);
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // active loans, a reader racing a writer sees the count before or after that write
+    int size() {
+        return size;
+    }
+
+    boolean contains(final int libraryId) {
+        long stamp = lock.tryOptimisticRead();
+        boolean onLoan = slotsByLibraryId.get(libraryId / stride) != 0;
+        if (lock.validate(stamp))
+            return onLoan;
+
+        stamp = lock.readLock();
+        try {
+            return slotsByLibraryId.get(libraryId / stride) != 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    Loan get(final int libraryId) {
+        long stamp = lock.readLock();
+        try {
+            int slot = slotsByLibraryId.get(libraryId / stride) - 1;
+            return slot == NONE ? null : toLoan(slot);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // ordered by library id
+    List<Loan> values() {
+        long stamp = lock.readLock();
+        try {
+            List<Loan> loans = new ArrayList<>();
+            slotsByLibraryId.forEachSet(slot -> loans.add(toLoan(slot - 1)));
+            return loans;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // at most limit loans from the library id on, the walk starts at that id's key and stops at the limit
+    List<Loan> valuesFrom(final int fromLibraryId, final int limit) {
+        long stamp = lock.readLock();
+        try {
+            List<Loan> loans = new ArrayList<>();
+            slotsByLibraryId.forEachSetFrom(fromLibraryId / stride, slot -> {
+                if (libraryIds[slot - 1] >= fromLibraryId)
+                    loans.add(toLoan(slot - 1));
+                return loans.size() < limit;
+            });
+            return loans;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // ordered by library id like every other scan, the customer's chain is in no order
+    List<Loan> byCustomer(final int customerId) {
+        List<Loan> loans = new ArrayList<>();
+        long stamp = lock.readLock();
+        try {
+            for (int slot = firstByCustomer.get(customerId) - 1; slot != NONE; slot = nextByCustomer[slot])
+                loans.add(toLoan(slot));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        loans.sort(Comparator.comparingInt(loan -> loan.getItem().getLibraryId()));
+        return loans;
+    }
+
+    // Loans due on the given days, both inclusive, ordered by due date. Days before the epoch are
+    // walked first, their column runs backwards in time
+    List<Loan> dueBetween(final long fromDay, final long toDay) {
+        if (fromDay > toDay || fromDay > Integer.MAX_VALUE || toDay < Integer.MIN_VALUE)
+            return List.of();
+        int from = (int) Math.max(fromDay, Integer.MIN_VALUE);
+        int to = (int) Math.min(toDay, Integer.MAX_VALUE);
+
+        long stamp = lock.readLock();
+        try {
+            List<Loan> loans = new ArrayList<>();
+            IntConsumer collect = first -> {
+                for (int slot = first - 1; slot != NONE; slot = nextByDueDay[slot])
+                    loans.add(toLoan(slot));
+            };
+            if (from < 0)
+                firstByDueDayBeforeEpoch.forEachSetDown(dueKey(from), dueKey(Math.min(to, -1)), collect);
+            if (to >= 0)
+                firstByDueDay.forEachSetBetween(Math.max(from, 0), to, collect);
+            return loans;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // callers hold the lock for everything below, the write lock for anything that writes
+
+    private void write(final int slot, final Person customer, final LibraryItem item, final int issueDay, final int dueDay) {
+        libraryIds[slot] = item.getLibraryId();
+        customerIds[slot] = customer.getId();
+        issueDays[slot] = issueDay;
+        dueDays[slot] = dueDay;
+        items[slot] = item;
+        customers[slot] = customer;
+        link(slot);
+    }
+
+    private boolean matches(final int slot, final Loan loan) {
+        return items[slot] == loan.getItem()
+                && customerIds[slot] == loan.getCustomer().getId()
+                && issueDays[slot] == loan.getIssueDate().toEpochDay()
+                && dueDays[slot] == loan.getDueDate().toEpochDay();
+    }
+
+    private Loan toLoan(final int slot) {
+        return new Loan(customers[slot], items[slot], LocalDate.ofEpochDay(issueDays[slot]), LocalDate.ofEpochDay(dueDays[slot]));
+    }
+
+    private void link(final int slot) {
+        int first = firstByCustomer.get(customerIds[slot]) - 1;
+        previousByCustomer[slot] = NONE;
+        nextByCustomer[slot] = first;
+        if (first != NONE)
+            previousByCustomer[first] = slot;
+        firstByCustomer.set(customerIds[slot], slot + 1);
+
+        IntColumn firstByDue = dueColumn(dueDays[slot]);
+        int firstDue = firstByDue.get(dueKey(dueDays[slot])) - 1;
+        previousByDueDay[slot] = NONE;
+        nextByDueDay[slot] = firstDue;
+        if (firstDue != NONE)
+            previousByDueDay[firstDue] = slot;
+        firstByDue.set(dueKey(dueDays[slot]), slot + 1);
+    }
+
+    private void unlink(final int slot) {
+        int previous = previousByCustomer[slot];
+        int next = nextByCustomer[slot];
+        if (previous != NONE)
+            nextByCustomer[previous] = next;
+        else
+            firstByCustomer.set(customerIds[slot], next + 1);
+        if (next != NONE)
+            previousByCustomer[next] = previous;
+
+        previous = previousByDueDay[slot];
+        next = nextByDueDay[slot];
+        if (previous != NONE)
+            nextByDueDay[previous] = next;
+        else
+            dueColumn(dueDays[slot]).set(dueKey(dueDays[slot]), next + 1);
+        if (next != NONE)
+            previousByDueDay[next] = previous;
+    }
+
+    private IntColumn dueColumn(final int day) {
+        return day >= 0 ? firstByDueDay : firstByDueDayBeforeEpoch;
+    }
+
+    // a day's key in its column, days before the epoch count back from -1
+    private static int dueKey(final int day) {
+        return day >= 0 ? day : -1 - day;
+    }
+
+    private void release(final int slot) {
+        unlink(slot);
+        slotsByLibraryId.set(libraryIds[slot] / stride, 0);
+        items[slot] = null;
+        customers[slot] = null;
+        nextByCustomer[slot] = freeSlot;
+        freeSlot = slot;
+        size--;
+    }
+
+    private int allocateSlot() {
+        if (freeSlot != NONE) {
+            int slot = freeSlot;
+            freeSlot = nextByCustomer[slot];
+            return slot;
+        }
+        if (usedSlots == items.length)
+            grow(items.length << 1);
+        return usedSlots++;
+    }
+
+    private void allocate(final int capacity) {
+        libraryIds = new int[capacity];
+        customerIds = new int[capacity];
+        issueDays = new int[capacity];
+        dueDays = new int[capacity];
+        items = new LibraryItem[capacity];
+        customers = new Person[capacity];
+        nextByCustomer = new int[capacity];
+        previousByCustomer = new int[capacity];
+        nextByDueDay = new int[capacity];
+        previousByDueDay = new int[capacity];
+        freeSlot = NONE;
+        usedSlots = 0;
+    }
+
+    private void grow(final int capacity) {
+        libraryIds = Arrays.copyOf(libraryIds, capacity);
+        customerIds = Arrays.copyOf(customerIds, capacity);
+        issueDays = Arrays.copyOf(issueDays, capacity);
+        dueDays = Arrays.copyOf(dueDays, capacity);
+        items = Arrays.copyOf(items, capacity);
+        customers = Arrays.copyOf(customers, capacity);
+        nextByCustomer = Arrays.copyOf(nextByCustomer, capacity);
+        previousByCustomer = Arrays.copyOf(previousByCustomer, capacity);
+        nextByDueDay = Arrays.copyOf(nextByDueDay, capacity);
+        previousByDueDay = Arrays.copyOf(previousByDueDay, capacity);
+    }
+
+    // One int per non-negative key in pages allocated on first write, 0 for keys never set. Page
+    // arrays never change size, so an optimistic reader racing a writer reads a stale value at worst
+    private static final class IntColumn {
+        private static final int PAGE_SHIFT = 12;
+        private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+        private static final int PAGE_MASK = PAGE_SIZE - 1;
+        private static final int INITIAL_PAGES = 16;
+
+        private int[][] pages = new int[INITIAL_PAGES][];
+
+        int get(final int key) {
+            int[][] current = pages;
+            int index = key >>> PAGE_SHIFT;
+            if (key < 0 || index >= current.length)
+                return 0;
+            int[] page = current[index];
+            return page == null ? 0 : page[key & PAGE_MASK];
+        }
+
+        void set(final int key, final int value) {
+            int index = key >>> PAGE_SHIFT;
+            if (index >= pages.length) {
+                if (value == 0)
+                    return;
+                int length = pages.length;
+                while (length <= index)
+                    length = (int) Math.min((long) length << 1, (Integer.MAX_VALUE >>> PAGE_SHIFT) + 1);
+                pages = Arrays.copyOf(pages, length);
+            }
+            if (pages[index] == null) {
+                if (value == 0)
+                    return;
+                pages[index] = new int[PAGE_SIZE];
+            }
+            pages[index][key & PAGE_MASK] = value;
+        }
+
+        void forEachSet(final IntConsumer action) {
+            for (int[] page : pages)
+                if (page != null)
+                    for (int value : page)
+                        if (value != 0)
+                            action.accept(value);
+        }
+
+        // values from the key on in key order, until the action returns false
+        void forEachSetFrom(final int fromKey, final IntPredicate action) {
+            for (int index = fromKey >>> PAGE_SHIFT; index < pages.length; index++) {
+                int[] page = pages[index];
+                if (page == null)
+                    continue;
+                for (int key = index == fromKey >>> PAGE_SHIFT ? fromKey & PAGE_MASK : 0; key < PAGE_SIZE; key++)
+                    if (page[key] != 0 && !action.test(page[key]))
+                        return;
+            }
+        }
+
+        // values of the keys in the range, both inclusive, in key order
+        void forEachSetBetween(final int fromKey, final int toKey, final IntConsumer action) {
+            int last = Math.min(toKey >>> PAGE_SHIFT, pages.length - 1);
+            for (int index = fromKey >>> PAGE_SHIFT; index <= last; index++) {
+                int[] page = pages[index];
+                if (page == null)
+                    continue;
+                int to = index == toKey >>> PAGE_SHIFT ? toKey & PAGE_MASK : PAGE_MASK;
+                for (int key = index == fromKey >>> PAGE_SHIFT ? fromKey & PAGE_MASK : 0; key <= to; key++)
+                    if (page[key] != 0)
+                        action.accept(page[key]);
+            }
+        }
+
+        // values of the keys from the higher key down to the lower one, both inclusive
+        void forEachSetDown(final int fromKey, final int toKey, final IntConsumer action) {
+            for (int index = Math.min(fromKey >>> PAGE_SHIFT, pages.length - 1); index >= toKey >>> PAGE_SHIFT; index--) {
+                int[] page = pages[index];
+                if (page == null)
+                    continue;
+                int to = index == toKey >>> PAGE_SHIFT ? toKey & PAGE_MASK : 0;
+                for (int key = index == fromKey >>> PAGE_SHIFT ? fromKey & PAGE_MASK : PAGE_MASK; key >= to; key--)
+                    if (page[key] != 0)
+                        action.accept(page[key]);
+            }
+        }
+
+        void clear() {
+            pages = new int[INITIAL_PAGES][];
+        }
+    }
+}
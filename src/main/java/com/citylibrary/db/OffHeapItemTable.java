@@ -0,0 +1,292 @@
+package com.citylibrary.db;
+
+import com.citylibrary.enums.ItemType;
+import com.citylibrary.enums.Status;
+import com.citylibrary.model.item.Work;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Item fields held in off-heap columns, one row per library id. Rows live in direct pages that
+ * are only allocated once a library id in their range is written. Each page holds its columns
+ * back to back: int item id, int shelf id, int status word, long title and description
+ * references into the string arena and a byte item type.
+ * <p>
+ * The status word carries the row's presence bit next to the status ordinal and is the only
+ * column accessed atomically. Writers fill the other columns first and publish the row with a
+ * release store of the status word, readers start with an acquire load of it.
+ * <p>
+ * Works are deduplicated by value in the arena. The strings of the first Work written with given
+ * item id, type, title and description are added once and every later copy of it refers to them.
+ * No Work is kept on the heap, a Work is built from the columns when it is read, so copies read
+ * back equal but not identical Works.
+ */
+final class OffHeapItemTable {
+
+    private static final int ROW_SHIFT = 14;
+    private static final int ROWS_PER_PAGE = 1 << ROW_SHIFT;
+    private static final int ROW_MASK = ROWS_PER_PAGE - 1;
+    private static final int MAX_PAGES = (Integer.MAX_VALUE >>> ROW_SHIFT) + 1;
+    private static final int INITIAL_PAGES = 16;
+
+    private static final int ITEM_ID_COLUMN = 0;
+    private static final int SHELF_ID_COLUMN = ITEM_ID_COLUMN + Integer.BYTES * ROWS_PER_PAGE;
+    private static final int STATUS_COLUMN = SHELF_ID_COLUMN + Integer.BYTES * ROWS_PER_PAGE;
+    private static final int TITLE_COLUMN = STATUS_COLUMN + Integer.BYTES * ROWS_PER_PAGE;
+    private static final int DESCRIPTION_COLUMN = TITLE_COLUMN + Long.BYTES * ROWS_PER_PAGE;
+    private static final int TYPE_COLUMN = DESCRIPTION_COLUMN + Long.BYTES * ROWS_PER_PAGE;
+    private static final int PAGE_BYTES = TYPE_COLUMN + ROWS_PER_PAGE;
+
+    private static final int PRESENT = 1 << 8;
+    private static final int STATUS_MASK = PRESENT - 1;
+
+    private static final ItemType[] ITEM_TYPES = ItemType.values();
+    private static final Status[] STATUSES = Status.values();
+
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final VarHandle PAGES = MethodHandles.arrayElementVarHandle(ByteBuffer[].class);
+
+    private volatile ByteBuffer[] pages = new ByteBuffer[INITIAL_PAGES];
+    private final StringArena strings = new StringArena();
+    private final LongAdder size = new LongAdder();
+
+    private final WorkStrings works = new WorkStrings();
+
+    StringArena getStrings() {
+        return strings;
+    }
+
+    int size() {
+        return size.intValue();
+    }
+
+    // first present library id in [from, to), -1 when there is none. Unallocated pages are skipped whole
+    int nextPresent(final int from, final long to) {
+        ByteBuffer[] current = pages;
+        long libraryId = from;
+        while (libraryId < to && (libraryId >>> ROW_SHIFT) < current.length) {
+            ByteBuffer page = (ByteBuffer) PAGES.getAcquire(current, (int) (libraryId >>> ROW_SHIFT));
+            if (page == null) {
+                libraryId = ((libraryId >>> ROW_SHIFT) + 1) << ROW_SHIFT;
+            } else {
+                int word = (int) INTS.getAcquire(page, STATUS_COLUMN + Integer.BYTES * ((int) libraryId & ROW_MASK));
+                if ((word & PRESENT) != 0)
+                    return (int) libraryId;
+                libraryId++;
+            }
+        }
+        return -1;
+    }
+
+    // exclusive upper bound of the library ids the directory covers
+    long limit() {
+        return (long) pages.length << ROW_SHIFT;
+    }
+
+    boolean isPresent(final int libraryId) {
+        return (statusWord(libraryId) & PRESENT) != 0;
+    }
+
+    private int statusWord(final int libraryId) {
+        ByteBuffer page = page(libraryId);
+        return page == null ? 0 : (int) INTS.getAcquire(page, STATUS_COLUMN + Integer.BYTES * (libraryId & ROW_MASK));
+    }
+
+    Status getStatus(final int libraryId) {
+        return STATUSES[statusWord(libraryId) & STATUS_MASK];
+    }
+
+    // keeps the presence bit, a removed row stays removed
+    void setStatus(final int libraryId, final Status status) {
+        ByteBuffer page = page(libraryId);
+        int offset = STATUS_COLUMN + Integer.BYTES * (libraryId & ROW_MASK);
+        int word;
+        do {
+            word = (int) INTS.getAcquire(page, offset);
+        } while (!INTS.compareAndSet(page, offset, word, (word & PRESENT) | status.ordinal()));
+    }
+
+    // only succeeds on a present row, a removed item can no longer change hands
+    boolean compareAndSetStatus(final int libraryId, final Status expected, final Status status) {
+        ByteBuffer page = page(libraryId);
+        if (page == null)
+            return false;
+        int offset = STATUS_COLUMN + Integer.BYTES * (libraryId & ROW_MASK);
+        return INTS.compareAndSet(page, offset, PRESENT | expected.ordinal(), PRESENT | status.ordinal());
+    }
+
+    int getItemId(final int libraryId) {
+        return page(libraryId).getInt(ITEM_ID_COLUMN + Integer.BYTES * (libraryId & ROW_MASK));
+    }
+
+    int getShelfId(final int libraryId) {
+        return page(libraryId).getInt(SHELF_ID_COLUMN + Integer.BYTES * (libraryId & ROW_MASK));
+    }
+
+    ItemType getType(final int libraryId) {
+        return ITEM_TYPES[page(libraryId).get(TYPE_COLUMN + (libraryId & ROW_MASK))];
+    }
+
+    long getTitle(final int libraryId) {
+        return page(libraryId).getLong(TITLE_COLUMN + Long.BYTES * (libraryId & ROW_MASK));
+    }
+
+    long getDescription(final int libraryId) {
+        return page(libraryId).getLong(DESCRIPTION_COLUMN + Long.BYTES * (libraryId & ROW_MASK));
+    }
+
+    // a new instance on every read, equal in its fields for every copy of the work
+    Work getWork(final int libraryId) {
+        return new Work(getItemId(libraryId), getType(libraryId),
+                strings.get(getTitle(libraryId)), strings.get(getDescription(libraryId)));
+    }
+
+    // Writers of one library id must be serialised by the caller. Overwriting a present row is
+    // not atomic across columns, a reader racing it may see old and new fields side by side
+    void write(final int libraryId, final Work work, final int shelfId, final Status status) {
+        if (libraryId < 0)
+            throw new IllegalArgumentException("Library id must not be negative: " + libraryId);
+
+        long[] references = works.add(work);
+
+        ByteBuffer page = pageForWrite(libraryId);
+        int row = libraryId & ROW_MASK;
+        boolean wasPresent = ((int) INTS.getAcquire(page, STATUS_COLUMN + Integer.BYTES * row) & PRESENT) != 0;
+
+        page.putInt(ITEM_ID_COLUMN + Integer.BYTES * row, work.getItemId());
+        page.putInt(SHELF_ID_COLUMN + Integer.BYTES * row, shelfId);
+        page.putLong(TITLE_COLUMN + Long.BYTES * row, references[0]);
+        page.putLong(DESCRIPTION_COLUMN + Long.BYTES * row, references[1]);
+        page.put(TYPE_COLUMN + row, (byte) work.getType().ordinal());
+        INTS.setRelease(page, STATUS_COLUMN + Integer.BYTES * row, PRESENT | status.ordinal());
+
+        if (!wasPresent)
+            size.increment();
+    }
+
+    // clears the presence bit, the columns are left as they were. Returns false when the row was not present
+    boolean remove(final int libraryId) {
+        ByteBuffer page = page(libraryId);
+        if (page == null)
+            return false;
+
+        int offset = STATUS_COLUMN + Integer.BYTES * (libraryId & ROW_MASK);
+        int word;
+        do {
+            word = (int) INTS.getAcquire(page, offset);
+            if ((word & PRESENT) == 0)
+                return false;
+        } while (!INTS.compareAndSet(page, offset, word, word & STATUS_MASK));
+        size.decrement();
+        return true;
+    }
+
+    // Arena references of the works written so far, in primitive columns indexed by an open
+    // addressed table of entry numbers. Works are keyed by a hash of their fields and matched
+    // against the bytes in the arena, a distinct work costs some forty heap bytes
+    private final class WorkStrings {
+        private static final int INITIAL_ENTRIES = 1 << 10;
+
+        private int[] slots = new int[INITIAL_ENTRIES << 1];   // entry numbers, 0 for an empty slot
+        private int[] hashes = new int[INITIAL_ENTRIES];
+        private int[] itemIds = new int[INITIAL_ENTRIES];
+        private byte[] types = new byte[INITIAL_ENTRIES];
+        private long[] titles = new long[INITIAL_ENTRIES];
+        private long[] descriptions = new long[INITIAL_ENTRIES];
+        private int last;                                      // entries in use, entry 0 is never used
+
+        // the work's title and description references, its strings are added when the work is new
+        synchronized long[] add(final Work work) {
+            byte[] title = work.getTitle().getBytes(StandardCharsets.UTF_8);
+            byte[] description = work.getDescription().getBytes(StandardCharsets.UTF_8);
+            int itemId = work.getItemId();
+            byte type = (byte) work.getType().ordinal();
+            int hash = 31 * (31 * (31 * itemId + type) + Arrays.hashCode(title)) + Arrays.hashCode(description);
+
+            int mask = slots.length - 1;
+            int slot = mix(hash) & mask;
+            for (int entry = slots[slot]; entry != 0; entry = slots[slot = slot + 1 & mask]) {
+                if (hashes[entry] == hash && itemIds[entry] == itemId && types[entry] == type
+                        && strings.matches(titles[entry], title) && strings.matches(descriptions[entry], description))
+                    return new long[]{titles[entry], descriptions[entry]};
+            }
+
+            if (last + 1 == hashes.length) {
+                grow();
+                mask = slots.length - 1;
+                slot = mix(hash) & mask;
+                while (slots[slot] != 0)
+                    slot = slot + 1 & mask;
+            }
+            int entry = ++last;
+            hashes[entry] = hash;
+            itemIds[entry] = itemId;
+            types[entry] = type;
+            titles[entry] = strings.add(title);
+            descriptions[entry] = strings.add(description);
+            slots[slot] = entry;
+            return new long[]{titles[entry], descriptions[entry]};
+        }
+
+        // doubles the columns and rehashes the slots, entries keep their numbers
+        private void grow() {
+            int entries = hashes.length << 1;
+            hashes = Arrays.copyOf(hashes, entries);
+            itemIds = Arrays.copyOf(itemIds, entries);
+            types = Arrays.copyOf(types, entries);
+            titles = Arrays.copyOf(titles, entries);
+            descriptions = Arrays.copyOf(descriptions, entries);
+
+            slots = new int[entries << 1];
+            int mask = slots.length - 1;
+            for (int entry = 1; entry <= last; entry++) {
+                int slot = mix(hashes[entry]) & mask;
+                while (slots[slot] != 0)
+                    slot = slot + 1 & mask;
+                slots[slot] = entry;
+            }
+        }
+
+        // spreads the high bits into the low ones that pick the slot
+        private int mix(final int hash) {
+            return hash ^ hash >>> 16;
+        }
+    }
+
+    private ByteBuffer page(final int libraryId) {
+        ByteBuffer[] current = pages;
+        int index = libraryId >>> ROW_SHIFT;
+        return libraryId < 0 || index >= current.length ? null : (ByteBuffer) PAGES.getAcquire(current, index);
+    }
+
+    private ByteBuffer pageForWrite(final int libraryId) {
+        ByteBuffer page = page(libraryId);
+        return page != null ? page : allocatePage(libraryId >>> ROW_SHIFT);
+    }
+
+    // same scheme as IntObjectMap, the grown directory shares the pages of the old one
+    private synchronized ByteBuffer allocatePage(final int index) {
+        ByteBuffer[] current = pages;
+        if (index >= current.length) {
+            int length = current.length;
+            while (length <= index)
+                length = Math.min(length << 1, MAX_PAGES);
+            ByteBuffer[] grown = new ByteBuffer[length];
+            System.arraycopy(current, 0, grown, 0, current.length);
+            pages = current = grown;
+        }
+
+        ByteBuffer page = current[index];
+        if (page == null) {
+            page = ByteBuffer.allocateDirect(PAGE_BYTES).order(ByteOrder.nativeOrder());
+            PAGES.setRelease(current, index, page);
+        }
+        return page;
+    }
+}
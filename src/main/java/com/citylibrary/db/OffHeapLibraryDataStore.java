@@ -0,0 +1,405 @@
+package com.citylibrary.db;
+
+import com.citylibrary.config.LibraryConfig;
+import com.citylibrary.enums.ItemType;
+import com.citylibrary.enums.Status;
+import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.Availability;
+import com.citylibrary.model.item.LibraryItem;
+import com.citylibrary.model.item.Loan;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Store that keeps item fields in off-heap columns, selected with {@code library.storage: offheap}.
+ * Items are handed out as flyweight views that read and write the columns directly. One view
+ * per library id is kept while anything references it, so views can still be compared by
+ * instance like heap items, and heap use follows the items in use rather than the catalog size.
+ * Status transitions are compare-and-set operations on the row's status word.
+ * <p>
+ * A view is a live window on its row: once the row is overwritten, views handed out earlier
+ * show the new fields. Titles are matched by scanning the string arena, the trigram index is
+ * a heap structure and is not kept in this mode. Works are not kept on the heap either, a view
+ * builds its Work from the arena when asked.
+ * <p>
+ * The item indexes stay on the heap. The type, shelf and status bitmaps cost a few bits per item,
+ * but the copy counts take a boxed map entry per title and the pools a boxed queue node per
+ * available copy, tens of bytes each. Those grow with the catalog, a catalog of millions of
+ * available copies still needs a heap in the hundreds of megabytes for them.
+ */
+@Service
+@ConditionalOnProperty(prefix = "library", name = "storage", havingValue = "offheap")
+public class OffHeapLibraryDataStore extends AbstractLibraryDataStore<OffHeapLibraryDataStore.Items> {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public OffHeapLibraryDataStore() {
+        this(0);
+    }
+
+    // constructor injection gives an opportunity to mock and run unit tests outside spring framework
+    @Autowired
+    public OffHeapLibraryDataStore(final LibraryConfig libraryConfig) {
+        this(libraryConfig.getShards());
+    }
+
+    public OffHeapLibraryDataStore(final int shardCount) {
+        super(Items::new, shardCount);
+        for (int i = 0; i < LOCK_STRIPES; i++)
+            locks[i] = new Object();
+    }
+
+    @Override
+    protected OffHeapLibraryDataStore newStore() {
+        return new OffHeapLibraryDataStore(getShardCount());
+    }
+
+    @Override
+    public LibraryItem getLibraryItem(final int libraryId) {
+        return items().get(libraryId);
+    }
+
+    @Override
+    public Collection<LibraryItem> getLibraryItems() {
+        Items items = items();
+        OffHeapItemTable current = items.table;
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<LibraryItem> iterator() {
+                return new ViewIterator(items, current, 0);
+            }
+
+            @Override
+            public Spliterator<LibraryItem> spliterator() {
+                return new ViewSpliterator(items, current, 0, current.limit());
+            }
+
+            @Override
+            public int size() {
+                return current.size();
+            }
+        };
+    }
+
+    @Override
+    public Iterator<LibraryItem> getLibraryItemsFrom(final int fromLibraryId) {
+        Items items = items();
+        return new ViewIterator(items, items.table, Math.max(fromLibraryId, 0));
+    }
+
+    // the returned view shows the new fields, see the class comment
+    @Override
+    public LibraryItem putLibraryItem(final LibraryItem item) {
+        return write(items -> {
+            synchronized (lock(item.getLibraryId())) {
+                LibraryItem previous = items.get(item.getLibraryId());
+                items.write(item.getLibraryId(), item);
+                return previous;
+            }
+        });
+    }
+
+    @Override
+    public LibraryItem putLibraryItemIfAbsent(final LibraryItem item) {
+        return write(items -> {
+            LibraryItem existing = items.get(item.getLibraryId());
+            if (existing != null)
+                return existing;
+
+            synchronized (lock(item.getLibraryId())) {
+                existing = items.get(item.getLibraryId());
+                if (existing == null)
+                    items.write(item.getLibraryId(), item);
+                return existing;
+            }
+        });
+    }
+
+    // the existing view keeps its identity and shows the replacement's fields afterwards
+    @Override
+    public boolean replaceLibraryItem(final LibraryItem existing, final LibraryItem replacement) {
+        return write(items -> {
+            synchronized (lock(existing.getLibraryId())) {
+                if (items.get(existing.getLibraryId()) != existing)
+                    return false;
+                items.write(existing.getLibraryId(), replacement);
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public LibraryItem removeLibraryItem(final int libraryId) {
+        return write(items -> {
+            synchronized (lock(libraryId)) {
+                LibraryItem removed = items.get(libraryId);
+                return removed != null && items.remove(libraryId) ? removed : null;
+            }
+        });
+    }
+
+    // A new table replaces the old one, whose pages are freed once the last view of them is collected.
+    // Views of the old table keep showing their last fields
+    @Override
+    public void clearLibraryItems() {
+        Items items = items();
+        items.table = new OffHeapItemTable();
+        items.views.clear();
+        items.indexes.clear();
+    }
+
+    @Override
+    public IdBitmap selectItemIds(final ItemType type, final Status status, final int shelfId) {
+        return items().indexes.select(type, status, shelfId);
+    }
+
+    @Override
+    public void syncItemStatus(final int libraryId) {
+        Items items = items();
+        synchronized (lock(libraryId)) {
+            OffHeapItemTable current = items.table;
+            if (current.isPresent(libraryId))
+                items.indexes.syncStatus(libraryId, current.getItemId(libraryId), current.getStatus(libraryId));
+        }
+    }
+
+    @Override
+    public Availability getAvailability(final int itemId) {
+        return items().indexes.availability(itemId);
+    }
+
+    @Override
+    public int takeAvailableCopy(final int itemId) {
+        return items().indexes.takeAvailableCopy(itemId, this::lock);
+    }
+
+    @Override
+    public int estimateItemsByTitle(final String title) {
+        return items().table.size();
+    }
+
+    // scans the table, there is no title index off the heap
+    @Override
+    public Collection<LibraryItem> getItemsByTitle(final String title, final boolean ignoreCase) {
+        Items items = items();
+        OffHeapItemTable current = items.table;
+        StringArena strings = current.getStrings();
+        byte[] needle = title.getBytes(StandardCharsets.UTF_8);
+
+        // copies of a work share one title reference, the last match is reused for runs of copies
+        long lastTitle = -1;
+        boolean lastMatched = false;
+
+        List<LibraryItem> found = new ArrayList<>();
+        for (int libraryId = current.nextPresent(0, current.limit()); libraryId >= 0;
+             libraryId = current.nextPresent(libraryId + 1, current.limit())) {
+            long titleReference = current.getTitle(libraryId);
+            if (titleReference != lastTitle) {
+                lastTitle = titleReference;
+                lastMatched = ignoreCase
+                        ? TitleIndex.matches(strings.get(titleReference), title, true)
+                        : strings.contains(titleReference, needle);
+            }
+            if (lastMatched)
+                found.add(items.view(current, libraryId));
+        }
+        return found;
+    }
+
+    @Override
+    public boolean addLoan(final Person customer, final LibraryItem item, final LocalDate issueDate, final LocalDate dueDate) {
+        return super.addLoan(customer, attach(item), issueDate, dueDate);
+    }
+
+    @Override
+    public boolean removeLoan(final Loan loan) {
+        return super.removeLoan(attach(loan));
+    }
+
+    @Override
+    public boolean replaceLoan(final Loan existing, final Loan replacement) {
+        return super.replaceLoan(attach(existing), attach(replacement));
+    }
+
+    // Loans refer to the view of their item, so the status seen through a loan is the one in the table
+    private LibraryItem attach(final LibraryItem item) {
+        LibraryItem view = getLibraryItem(item.getLibraryId());
+        return view == null ? item : view;
+    }
+
+    private Loan attach(final Loan loan) {
+        LibraryItem view = attach(loan.getItem());
+        if (view == loan.getItem())
+            return loan;
+        return new Loan(loan.getCustomer(), view, loan.getIssueDate(), loan.getDueDate());
+    }
+
+    private Object lock(final int libraryId) {
+        return locks[libraryId & (LOCK_STRIPES - 1)];
+    }
+
+    // Item storage of one catalog: the table and the canonical view of each of its rows
+    static final class Items {
+        private volatile OffHeapItemTable table = new OffHeapItemTable();
+        private final ConcurrentMap<Integer, ViewReference> views = new ConcurrentHashMap<>();
+        private final ReferenceQueue<OffHeapLibraryItem> collectedViews = new ReferenceQueue<>();
+        private final ItemIndexes indexes = new ItemIndexes();
+
+        LibraryItem get(final int libraryId) {
+            OffHeapItemTable current = table;
+            return current.isPresent(libraryId) ? view(current, libraryId) : null;
+        }
+
+        // under the library id's lock, the row's old type and shelf are read before they are overwritten
+        void write(final int libraryId, final LibraryItem item) {
+            OffHeapItemTable current = table;
+            if (current.isPresent(libraryId))
+                indexes.remove(libraryId, current.getItemId(libraryId), current.getType(libraryId), current.getShelfId(libraryId));
+            current.write(libraryId, item.getWork(), item.getShelfId(), item.getItemStatus());
+            indexes.add(libraryId, item.getItemId(), item.getType(), item.getShelfId());
+            indexes.syncStatus(libraryId, item.getItemId(), current.getStatus(libraryId));
+        }
+
+        // under the library id's lock
+        boolean remove(final int libraryId) {
+            OffHeapItemTable current = table;
+            if (!current.isPresent(libraryId))
+                return false;
+            int itemId = current.getItemId(libraryId);
+            ItemType type = current.getType(libraryId);
+            int shelfId = current.getShelfId(libraryId);
+            if (!current.remove(libraryId))
+                return false;
+            indexes.remove(libraryId, itemId, type, shelfId);
+            return true;
+        }
+
+        private OffHeapLibraryItem view(final OffHeapItemTable current, final int libraryId) {
+            expungeCollectedViews();
+            while (true) {
+                ViewReference reference = views.get(libraryId);
+                OffHeapLibraryItem view = reference == null ? null : reference.get();
+                if (view != null && view.isViewOf(current))
+                    return view;
+
+                OffHeapLibraryItem created = new OffHeapLibraryItem(libraryId, current);
+                ViewReference createdReference = new ViewReference(created, collectedViews);
+                boolean published = reference == null
+                        ? views.putIfAbsent(libraryId, createdReference) == null
+                        : views.replace(libraryId, reference, createdReference);
+                if (published)
+                    return created;
+            }
+        }
+
+        private void expungeCollectedViews() {
+            ViewReference collected;
+            while ((collected = (ViewReference) collectedViews.poll()) != null)
+                views.remove(collected.libraryId, collected);
+        }
+    }
+
+    private static final class ViewReference extends WeakReference<OffHeapLibraryItem> {
+        private final int libraryId;
+
+        ViewReference(final OffHeapLibraryItem view, final ReferenceQueue<OffHeapLibraryItem> queue) {
+            super(view, queue);
+            this.libraryId = view.getLibraryId();
+        }
+    }
+
+    private static final class ViewIterator implements Iterator<LibraryItem> {
+        private final Items items;
+        private final OffHeapItemTable current;
+        private int next;
+
+        ViewIterator(final Items items, final OffHeapItemTable current, final int from) {
+            this.items = items;
+            this.current = current;
+            this.next = current.nextPresent(from, current.limit());
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        @Override
+        public LibraryItem next() {
+            if (next < 0)
+                throw new NoSuchElementException();
+            LibraryItem view = items.view(current, next);
+            next = next == Integer.MAX_VALUE ? -1 : current.nextPresent(next + 1, current.limit());
+            return view;
+        }
+    }
+
+    // walks the library ids [from, to), splits at page sized boundaries for parallel scans
+    private static final class ViewSpliterator implements Spliterator<LibraryItem> {
+        private static final long MIN_SPLIT = 1 << 14;
+
+        private final Items items;
+        private final OffHeapItemTable current;
+        private long from;
+        private final long to;
+
+        ViewSpliterator(final Items items, final OffHeapItemTable current, final long from, final long to) {
+            this.items = items;
+            this.current = current;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super LibraryItem> action) {
+            int libraryId = from < to ? current.nextPresent((int) from, to) : -1;
+            if (libraryId < 0) {
+                from = to;
+                return false;
+            }
+            from = libraryId + 1L;
+            action.accept(items.view(current, libraryId));
+            return true;
+        }
+
+        @Override
+        public Spliterator<LibraryItem> trySplit() {
+            long remaining = to - from;
+            if (remaining < 2 * MIN_SPLIT)
+                return null;
+
+            long middle = from + remaining / 2 / MIN_SPLIT * MIN_SPLIT;
+            ViewSpliterator prefix = new ViewSpliterator(items, current, from, middle);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.NONNULL | Spliterator.CONCURRENT;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.citylibrary.db;
+
+import com.citylibrary.enums.ItemType;
+import com.citylibrary.enums.Status;
+import com.citylibrary.model.item.LibraryItem;
+import com.citylibrary.model.item.Work;
+
+// Flyweight view of one row of an OffHeapItemTable. It holds nothing but the library id and the
+// table, every getter reads the columns and every status change is written straight to them
+final class OffHeapLibraryItem extends LibraryItem {
+
+    private final OffHeapItemTable table;
+
+    OffHeapLibraryItem(final int libraryId, final OffHeapItemTable table) {
+        super(libraryId, null, 0);
+        this.table = table;
+    }
+
+    boolean isViewOf(final OffHeapItemTable table) {
+        return this.table == table;
+    }
+
+    // built from the columns on each call, equal for every copy of the work
+    @Override
+    public Work getWork() {
+        return table.getWork(getLibraryId());
+    }
+
+    @Override
+    public int getItemId() {
+        return table.getItemId(getLibraryId());
+    }
+
+    @Override
+    public ItemType getType() {
+        return table.getType(getLibraryId());
+    }
+
+    @Override
+    public String getTitle() {
+        return table.getStrings().get(table.getTitle(getLibraryId()));
+    }
+
+    @Override
+    public String getDescription() {
+        return table.getStrings().get(table.getDescription(getLibraryId()));
+    }
+
+    @Override
+    public int getShelfId() {
+        return table.getShelfId(getLibraryId());
+    }
+
+    @Override
+    public Status getItemStatus() {
+        return table.getStatus(getLibraryId());
+    }
+
+    @Override
+    public void setItemStatus(final Status itemStatus) {
+        table.setStatus(getLibraryId(), itemStatus);
+    }
+
+    @Override
+    public boolean compareAndSetItemStatus(final Status expected, final Status newStatus) {
+        return table.compareAndSetStatus(getLibraryId(), expected, newStatus);
+    }
+
+    @Override
+    public boolean isLoanable() {
+        return getItemStatus().equals(Status.AVAILABLE);
+    }
+}
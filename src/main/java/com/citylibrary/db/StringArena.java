@@ -0,0 +1,74 @@
+package com.citylibrary.db;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Append-only off-heap store for strings. Each string is written once as a length prefixed
+ * UTF-8 record into large direct chunks and addressed by a long reference, chunk index in the
+ * high word and offset in the low word. Chunks are never moved, so references stay valid
+ * for the life of the arena.
+ */
+final class StringArena {
+
+    private static final int CHUNK_SIZE = 1 << 24;
+    private static final int LENGTH_BYTES = Integer.BYTES;
+
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private ByteBuffer current;                     // guarded by this, the chunk being appended to
+
+    // The reference is only handed out after the bytes are written, readers that obtained it
+    // through a release/acquire pair see both the chunk and its contents
+    long add(final String value) {
+        return add(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // the UTF-8 bytes of a string
+    synchronized long add(final byte[] bytes) {
+        int needed = LENGTH_BYTES + bytes.length;
+        if (current == null || current.remaining() < needed) {
+            current = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, needed));
+            ByteBuffer[] grown = new ByteBuffer[chunks.length + 1];
+            System.arraycopy(chunks, 0, grown, 0, chunks.length);
+            grown[chunks.length] = current;
+            chunks = grown;
+        }
+
+        int offset = current.position();
+        current.putInt(bytes.length).put(bytes);
+        return (long) (chunks.length - 1) << 32 | offset;
+    }
+
+    String get(final long reference) {
+        ByteBuffer chunk = chunks[(int) (reference >>> 32)];
+        int offset = (int) reference;
+        byte[] bytes = new byte[chunk.getInt(offset)];
+        chunk.get(offset + LENGTH_BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // whether the string holds exactly the given UTF-8 bytes, compared without decoding it
+    boolean matches(final long reference, final byte[] bytes) {
+        ByteBuffer chunk = chunks[(int) (reference >>> 32)];
+        int offset = (int) reference;
+        if (chunk.getInt(offset) != bytes.length)
+            return false;
+        return chunk.slice(offset + LENGTH_BYTES, bytes.length).equals(ByteBuffer.wrap(bytes));
+    }
+
+    // Byte level substring search, a UTF-8 encoded needle only matches at character boundaries
+    boolean contains(final long reference, final byte[] needle) {
+        ByteBuffer chunk = chunks[(int) (reference >>> 32)];
+        int start = (int) reference + LENGTH_BYTES;
+        int last = start + chunk.getInt((int) reference) - needle.length;
+
+        for (int i = start; i <= last; i++) {
+            int matched = 0;
+            while (matched < needle.length && chunk.get(i + matched) == needle[matched])
+                matched++;
+            if (matched == needle.length)
+                return true;
+        }
+        return false;
+    }
+}
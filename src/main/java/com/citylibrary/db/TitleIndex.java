@@ -0,0 +1,83 @@
+package com.citylibrary.db;
+
+import com.citylibrary.model.item.LibraryItem;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Trigram inverted index over item titles. Trigrams are case folded so one index
+ * serves both case-sensitive and case-insensitive substring searches, the posting
+ * lists only narrow the candidates and the final check is always a substring match.
+ */
+final class TitleIndex {
+
+    static final int GRAM_LENGTH = 3;
+
+    private final ConcurrentMap<Long, Set<LibraryItem>> postings = new ConcurrentHashMap<>();
+
+    void add(final LibraryItem item) {
+        String title = item.getTitle();
+        for (int i = 0, last = title.length() - GRAM_LENGTH; i <= last; i++) {
+            postings.compute(trigram(title, i), (key, items) -> {
+                Set<LibraryItem> updated = items == null ? ConcurrentHashMap.newKeySet() : items;
+                updated.add(item);
+                return updated;
+            });
+        }
+    }
+
+    void remove(final LibraryItem item) {
+        String title = item.getTitle();
+        for (int i = 0, last = title.length() - GRAM_LENGTH; i <= last; i++) {
+            postings.computeIfPresent(trigram(title, i), (key, items) -> {
+                items.remove(item);
+                return items.isEmpty() ? null : items;
+            });
+        }
+    }
+
+    void clear() {
+        postings.clear();
+    }
+
+    // Smallest posting list of the query trigrams, null when the query is too short to narrow anything
+    Collection<LibraryItem> candidates(final String query) {
+        if (query.length() < GRAM_LENGTH)
+            return null;
+
+        Set<LibraryItem> smallest = null;
+        for (int i = 0, last = query.length() - GRAM_LENGTH; i <= last; i++) {
+            Set<LibraryItem> items = postings.get(trigram(query, i));
+            if (items == null)
+                return Set.of();
+            if (smallest == null || items.size() < smallest.size())
+                smallest = items;
+        }
+        return smallest;
+    }
+
+    static boolean matches(final String title, final String query, final boolean ignoreCase) {
+        if (!ignoreCase)
+            return title.contains(query);
+
+        for (int i = 0, last = title.length() - query.length(); i <= last; i++) {
+            if (title.regionMatches(true, i, query, 0, query.length()))
+                return true;
+        }
+        return false;
+    }
+
+    private static long trigram(final String text, final int offset) {
+        return (long) fold(text.charAt(offset)) << 32
+                | (long) fold(text.charAt(offset + 1)) << 16
+                | fold(text.charAt(offset + 2));
+    }
+
+    // same per character folding as String.regionMatches with ignoreCase
+    private static char fold(final char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
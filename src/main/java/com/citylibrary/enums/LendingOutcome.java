@@ -0,0 +1,10 @@
+package com.citylibrary.enums;
+
+// per item result of a bulk borrow or return
+public enum LendingOutcome {
+    BORROWED,
+    RETURNED,
+    NOT_FOUND,
+    NOT_LOANABLE,
+    NOT_LOANED,
+}
@@ -0,0 +1,10 @@
+package com.citylibrary.enums;
+
+// a reservation waits, then a copy is held for it until it is collected or the hold expires
+public enum ReservationStatus {
+    WAITING,
+    HELD,
+    COLLECTED,
+    CANCELLED,
+    EXPIRED,
+}
@@ -3,4 +3,5 @@ package com.citylibrary.enums;
 public enum Status {
     AVAILABLE,
     LOANED,
+    HELD,           // returned and kept for the patron next in the title's reservation queue
 }
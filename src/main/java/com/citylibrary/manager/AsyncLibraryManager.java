@@ -0,0 +1,121 @@
+package com.citylibrary.manager;
+
+import com.citylibrary.enums.ItemType;
+import com.citylibrary.enums.LendingOutcome;
+import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.Availability;
+import com.citylibrary.model.item.ItemQuery;
+import com.citylibrary.model.item.LibraryItem;
+import com.citylibrary.model.item.Loan;
+import com.citylibrary.model.item.Page;
+import com.citylibrary.service.LendingExecutor;
+import com.citylibrary.service.Reservation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// LibraryManager calls run on the lending executor, the caller's thread is free as soon as a call is made.
+// Validation and business exceptions complete the future exceptionally instead of being thrown
+@Component
+public final class AsyncLibraryManager {
+
+    private final LibraryManager libraryManager;
+    private final LendingExecutor lendingExecutor;
+
+    // constructor injection gives an opportunity to mock and run unit tests outside spring framework
+    @Autowired
+    public AsyncLibraryManager(final LibraryManager libraryManager, final LendingExecutor lendingExecutor) {
+        this.libraryManager = libraryManager;
+        this.lendingExecutor = lendingExecutor;
+    }
+
+    public CompletableFuture<Boolean> borrowItem(final Person customer, final LibraryItem item) {
+        return lendingExecutor.submit(() -> libraryManager.borrowItem(customer, item));
+    }
+
+    public CompletableFuture<Boolean> returnItem(final LibraryItem item) {
+        return lendingExecutor.submit(() -> libraryManager.returnItem(item));
+    }
+
+    public CompletableFuture<List<LendingOutcome>> borrowItems(final Person customer, final List<LibraryItem> items) {
+        return lendingExecutor.submit(() -> libraryManager.borrowItems(customer, items));
+    }
+
+    public CompletableFuture<Boolean> checkoutItems(final Person customer, final List<LibraryItem> items) {
+        return lendingExecutor.submit(() -> libraryManager.checkoutItems(customer, items));
+    }
+
+    public CompletableFuture<LibraryItem> borrowAnyCopy(final Person customer, final int itemId) {
+        return lendingExecutor.submit(() -> libraryManager.borrowAnyCopy(customer, itemId));
+    }
+
+    public CompletableFuture<Reservation> reserveTitle(final Person customer, final int itemId) {
+        return lendingExecutor.submit(() -> libraryManager.reserveTitle(customer, itemId));
+    }
+
+    public CompletableFuture<LibraryItem> collectHold(final Person customer, final Reservation reservation) {
+        return lendingExecutor.submit(() -> libraryManager.collectHold(customer, reservation));
+    }
+
+    public CompletableFuture<Boolean> cancelReservation(final Reservation reservation) {
+        return lendingExecutor.submit(() -> libraryManager.cancelReservation(reservation));
+    }
+
+    public CompletableFuture<List<LendingOutcome>> returnItems(final List<LibraryItem> items) {
+        return lendingExecutor.submit(() -> libraryManager.returnItems(items));
+    }
+
+    public CompletableFuture<List<Loan>> getOverDueItems() {
+        return lendingExecutor.submit(libraryManager::getOverDueItems);
+    }
+
+    public CompletableFuture<List<Loan>> getItemsDueWithin(final int days) {
+        return lendingExecutor.submit(() -> libraryManager.getItemsDueWithin(days));
+    }
+
+    public CompletableFuture<List<Loan>> getItemBorrowedByUser(final Person customer) {
+        return lendingExecutor.submit(() -> libraryManager.getItemBorrowedByUser(customer));
+    }
+
+    public CompletableFuture<List<LibraryItem>> getCurrentInventory() {
+        return lendingExecutor.submit(libraryManager::getCurrentInventory);
+    }
+
+    public CompletableFuture<List<LibraryItem>> getCurrentLoanableInventory() {
+        return lendingExecutor.submit(libraryManager::getCurrentLoanableInventory);
+    }
+
+    public CompletableFuture<Page<LibraryItem>> getCurrentInventory(final int after, final int pageSize) {
+        return lendingExecutor.submit(() -> libraryManager.getCurrentInventory(after, pageSize));
+    }
+
+    public CompletableFuture<Page<LibraryItem>> getCurrentLoanableInventory(final int after, final int pageSize) {
+        return lendingExecutor.submit(() -> libraryManager.getCurrentLoanableInventory(after, pageSize));
+    }
+
+    public CompletableFuture<Boolean> isBookAvailable(final LibraryItem libraryItem) {
+        return lendingExecutor.submit(() -> libraryManager.isBookAvailable(libraryItem));
+    }
+
+    public CompletableFuture<List<LibraryItem>> findItems(final ItemQuery query) {
+        return lendingExecutor.submit(() -> libraryManager.findItems(query));
+    }
+
+    public CompletableFuture<Availability> getAvailability(final int itemId) {
+        return lendingExecutor.submit(() -> libraryManager.getAvailability(itemId));
+    }
+
+    public CompletableFuture<LibraryItem> getItemByTitleAndType(final String title, final ItemType itemType) {
+        return lendingExecutor.submit(() -> libraryManager.getItemByTitleAndType(title, itemType));
+    }
+
+    public CompletableFuture<LibraryItem> getItemByLibraryId(final int libraryId) {
+        return lendingExecutor.submit(() -> libraryManager.getItemByLibraryId(libraryId));
+    }
+
+    public CompletableFuture<List<LibraryItem>> getItemsByLibraryIds(final int[] libraryIds) {
+        return lendingExecutor.submit(() -> libraryManager.getItemsByLibraryIds(libraryIds));
+    }
+}
@@ -4,11 +4,17 @@ import com.citylibrary.businessexception.LibraryItemNotFoundException;
 import com.citylibrary.businessexception.LibraryItemNotLoanableException;
 import com.citylibrary.businessexception.LibraryOperationException;
 import com.citylibrary.enums.ItemType;
+import com.citylibrary.enums.LendingOutcome;
+import com.citylibrary.enums.Status;
 import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.Availability;
+import com.citylibrary.model.item.ItemQuery;
 import com.citylibrary.model.item.LibraryItem;
 import com.citylibrary.model.item.Loan;
+import com.citylibrary.model.item.Page;
 import com.citylibrary.service.DataService;
 import com.citylibrary.service.LendingService;
+import com.citylibrary.service.Reservation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,7 +23,7 @@ import org.springframework.stereotype.Component;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.citylibrary.constant.Constant.LOAN_PERIOD;
 
@@ -61,12 +67,119 @@ public final class LibraryManager {
         return lendingService.returnItem(item);
     }
 
+    // all items share one issue and due date
+    public List<LendingOutcome> borrowItems(final Person customer, final List<LibraryItem> items) {
+        logger.debug("borrowItems was called with parameters Customer: " + customer + " and " + (items == null ? 0 : items.size()) + " LibraryItems");
+        if (customer == null || items == null) {
+            String msg = "One or  more invalid method parameter(s) passed to borrowItems. customer and items cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        LocalDate issueDate = LocalDate.now();
+        LocalDate dueDate = issueDate.plusDays(LOAN_PERIOD);
+
+        return lendingService.borrowItems(customer, items, issueDate, dueDate);
+    }
+
+    public boolean checkoutItems(final Person customer, final List<LibraryItem> items) throws
+            LibraryItemNotLoanableException, LibraryItemNotFoundException {
+        logger.debug("checkoutItems was called with parameters Customer: " + customer + " and " + (items == null ? 0 : items.size()) + " LibraryItems");
+        if (customer == null || items == null) {
+            String msg = "One or  more invalid method parameter(s) passed to checkoutItems. customer and items cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        LocalDate issueDate = LocalDate.now();
+        LocalDate dueDate = issueDate.plusDays(LOAN_PERIOD);
+
+        return lendingService.checkoutItems(customer, items, issueDate, dueDate);
+    }
+
+    // the patron asks for a title, the copy they were given is returned
+    public LibraryItem borrowAnyCopy(final Person customer, final int itemId) throws
+            LibraryItemNotLoanableException, LibraryItemNotFoundException {
+        logger.debug("borrowAnyCopy was called with parameters Customer: " + customer + " and itemId: " + itemId);
+        if (customer == null) {
+            String msg = "One or  more invalid method parameter(s) passed to borrowAnyCopy. customer cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        LocalDate issueDate = LocalDate.now();
+        LocalDate dueDate = issueDate.plusDays(LOAN_PERIOD);
+
+        return lendingService.borrowAnyCopy(customer, itemId, issueDate, dueDate);
+    }
+
+    // Instead of polling isBookAvailable the patron waits on the reservation's ready future,
+    // which completes when a copy is held for them
+    public Reservation reserveTitle(final Person customer, final int itemId) throws LibraryItemNotFoundException {
+        logger.debug("reserveTitle was called with parameters Customer: " + customer + " and itemId: " + itemId);
+        if (customer == null) {
+            String msg = "One or  more invalid method parameter(s) passed to reserveTitle. customer cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        return lendingService.reserveTitle(customer, itemId);
+    }
+
+    public LibraryItem collectHold(final Person customer, final Reservation reservation) throws LibraryItemNotLoanableException {
+        logger.debug("collectHold was called with parameters Customer: " + customer + " and Reservation: " + reservation);
+        if (customer == null || reservation == null) {
+            String msg = "One or  more invalid method parameter(s) passed to collectHold. customer, reservation cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        LocalDate issueDate = LocalDate.now();
+        LocalDate dueDate = issueDate.plusDays(LOAN_PERIOD);
+
+        return lendingService.collectHold(customer, reservation, issueDate, dueDate);
+    }
+
+    public boolean cancelReservation(final Reservation reservation) {
+        logger.debug("cancelReservation was called with parameter Reservation: " + reservation);
+        if (reservation == null) {
+            String msg = "One or  more invalid method parameter(s) passed to cancelReservation. reservation cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        return lendingService.cancelReservation(reservation);
+    }
+
+    // holds also expire as their titles are reserved, collected and returned, this catches quiet titles
+    public int expireHolds() {
+        return dataService.expireHolds();
+    }
+
+    public List<LendingOutcome> returnItems(final List<LibraryItem> items) {
+        logger.debug("returnItems was called with " + (items == null ? 0 : items.size()) + " LibraryItems");
+        if (items == null) {
+            String msg = "One or  more invalid method parameter(s) passed to returnItems. items cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        return lendingService.returnItems(items);
+    }
+
     public List<Loan> getOverDueItems() {
         return dataService
-                .getLoan()
-                .parallelStream()
-                .filter(item -> item.getDueDate().isBefore(LocalDate.now()))
-                .collect(Collectors.toList());
+                .getLoansDueBefore(LocalDate.now());
+    }
+
+    public List<Loan> getItemsDueWithin(final int days) {
+        logger.debug("getItemsDueWithin was called with parameter days: " + days);
+        if (days < 0) {
+            String msg = "One or  more invalid method parameter(s) passed to getItemsDueWithin. days cannot be negative";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        LocalDate today = LocalDate.now();
+        return dataService
+                .getLoansDueBetween(today, today.plusDays(days));
     }
 
     public List<Loan> getItemBorrowedByUser(final Person customer) {
@@ -76,11 +189,7 @@ public final class LibraryManager {
             logger.error(msg);
             throw new IllegalArgumentException(msg);
         }
-        return dataService
-                .getLoan()
-                .parallelStream()
-                .filter(item -> item.getCustomer().equals(customer))
-                .collect(Collectors.toList());
+        return dataService.getLoansByCustomer(customer);
     }
 
     public List<LibraryItem> getCurrentInventory() {
@@ -93,6 +202,30 @@ public final class LibraryManager {
                 .getCurrentLoanableInventory();
     }
 
+    // pass Page.FIRST for the first page, then the continuation of the page before
+    public Page<LibraryItem> getCurrentInventory(final int after, final int pageSize) {
+        logger.debug("getCurrentInventory was called with parameters after: " + after + " pageSize: " + pageSize);
+        return dataService
+                .getCurrentInventory(after, pageSize);
+    }
+
+    public Page<LibraryItem> getCurrentLoanableInventory(final int after, final int pageSize) {
+        logger.debug("getCurrentLoanableInventory was called with parameters after: " + after + " pageSize: " + pageSize);
+        return dataService
+                .getCurrentLoanableInventory(after, pageSize);
+    }
+
+    // lazy, items are read as the stream is consumed
+    public Stream<LibraryItem> streamCurrentInventory() {
+        return dataService
+                .streamCurrentInventory();
+    }
+
+    public Stream<LibraryItem> streamCurrentLoanableInventory() {
+        return dataService
+                .streamCurrentLoanableInventory();
+    }
+
     public boolean isBookAvailable(final LibraryItem libraryItem) {
         logger.debug("isBookAvailable was called with parameter LibraryItem: " + libraryItem);
         if (libraryItem == null) {
@@ -101,10 +234,39 @@ public final class LibraryManager {
             throw new IllegalArgumentException(msg);
         }
 
-        return dataService
-                .getCurrentLoanableInventory()
-                .parallelStream()
-                .anyMatch(item -> item.equals(libraryItem) && item.getType() == ItemType.BOOK);
+        ItemQuery availableBook = new ItemQuery.ItemQueryBuilder()
+                .withLibraryId(libraryItem.getLibraryId())
+                .withType(ItemType.BOOK)
+                .withStatus(Status.AVAILABLE)
+                .build();
+        return !dataService
+                .findItems(availableBook)
+                .isEmpty();
+    }
+
+    public List<LibraryItem> findItems(final ItemQuery query) {
+        logger.debug("findItems was called with parameter ItemQuery: " + query);
+        if (query == null) {
+            String msg = "One or  more invalid method parameter(s) passed to findItems. query cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        return dataService.findItems(query);
+    }
+
+    public int countItems(final ItemQuery query) {
+        logger.debug("countItems was called with parameter ItemQuery: " + query);
+        if (query == null) {
+            String msg = "One or  more invalid method parameter(s) passed to countItems. query cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        return dataService.countItems(query);
+    }
+
+    public Availability getAvailability(final int itemId) {
+        logger.debug("getAvailability was called with parameter itemId: " + itemId);
+        return dataService.getAvailability(itemId);
     }
 
     public LibraryItem getItemByTitleAndType(final String title, final ItemType itemType) throws LibraryItemNotFoundException {
@@ -115,9 +277,12 @@ public final class LibraryManager {
             throw new IllegalArgumentException(msg);
         }
 
-        Optional<LibraryItem> foundItem = dataService.getCurrentInventory()
-                .parallelStream()
-                .filter(item -> item.getTitle().contains(title) && item.getType().equals(itemType))
+        ItemQuery titleAndType = new ItemQuery.ItemQueryBuilder()
+                .withTitle(title, false)
+                .withType(itemType)
+                .build();
+        Optional<LibraryItem> foundItem = dataService.findItems(titleAndType)
+                .stream()
                 .findFirst();
 
         if (!foundItem.isPresent()) {
@@ -140,4 +305,15 @@ public final class LibraryManager {
         }
         return item;
     }
+
+    // unlike getItemByLibraryId an unknown id does not fail the lookup, its item is null
+    public List<LibraryItem> getItemsByLibraryIds(final int[] libraryIds) {
+        logger.debug("getItemsByLibraryIds was called with " + (libraryIds == null ? 0 : libraryIds.length) + " libraryIds");
+        if (libraryIds == null) {
+            String msg = "One or  more invalid method parameter(s) passed to getItemsByLibraryIds. libraryIds cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        return dataService.getItemsByLibraryIds(libraryIds);
+    }
 }
@@ -25,6 +25,20 @@ abstract public class Person {
         return lastName;
     }
 
+    // identity is the id, loans and indexes stay valid when a customer record is reloaded with new details
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Person that = (Person) o;
+        return id == that.id;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * id;
+    }
+
     @Override
     public String toString() {
         return "Person{" +
@@ -0,0 +1,49 @@
+package com.citylibrary.model.item;
+
+// Copies of one title, by item id, at one moment. Copies are available, loaned or held for a patron
+public final class Availability {
+
+    private final int itemId;
+    private final int total;
+    private final int loaned;
+    private final int held;
+
+
+    public Availability(final int itemId, final int total, final int loaned, final int held) {
+        this.itemId = itemId;
+        this.total = total;
+        this.loaned = loaned;
+        this.held = held;
+    }
+
+    public int getItemId() {
+        return itemId;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getAvailable() {
+        return total - loaned - held;
+    }
+
+    public int getLoaned() {
+        return loaned;
+    }
+
+    public int getHeld() {
+        return held;
+    }
+
+    @Override
+    public String toString() {
+        return "Availability[" +
+                "itemId=" + itemId +
+                ", total=" + total +
+                ", available=" + getAvailable() +
+                ", loaned=" + loaned +
+                ", held=" + held +
+                "]";
+    }
+}
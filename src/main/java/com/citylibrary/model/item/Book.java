@@ -1,12 +1,11 @@
 package com.citylibrary.model.item;
 
-import com.citylibrary.enums.ItemType;
 import com.citylibrary.enums.Status;
 
 public final class Book extends LibraryItem {
 
-    protected Book(final int libraryId, final int itemId, final String title, final String description, final int shelfId) {
-        super(libraryId, itemId, ItemType.BOOK, title, description, shelfId);
+    protected Book(final int libraryId, final Work work, final int shelfId) {
+        super(libraryId, work, shelfId);
     }
 
     @Override
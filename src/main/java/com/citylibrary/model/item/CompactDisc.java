@@ -1,12 +1,11 @@
 package com.citylibrary.model.item;
 
-import com.citylibrary.enums.ItemType;
 import com.citylibrary.enums.Status;
 
 public class CompactDisc extends LibraryItem {
 
-    protected CompactDisc(final int libraryId, final int itemId, final String title, final String description, final int shelfId) {
-        super(libraryId, itemId, ItemType.CD, title, description, shelfId);
+    protected CompactDisc(final int libraryId, final Work work, final int shelfId) {
+        super(libraryId, work, shelfId);
     }
 
     @Override
@@ -0,0 +1,138 @@
+package com.citylibrary.model.item;
+
+import com.citylibrary.enums.ItemType;
+import com.citylibrary.enums.Status;
+
+// Conditions on library items that must all hold, a condition left unset matches every item.
+// The title condition is a substring match like getItemsByTitle
+public final class ItemQuery {
+    public static final int ANY = -1;
+
+    private final int libraryId;
+    private final int itemId;
+    private final int shelfId;
+    private final String title;
+    private final boolean ignoreCase;
+    private final ItemType type;
+    private final Status status;
+
+    private ItemQuery(final ItemQueryBuilder builder) {
+        this.libraryId = builder.libraryId;
+        this.itemId = builder.itemId;
+        this.shelfId = builder.shelfId;
+        this.title = builder.title;
+        this.ignoreCase = builder.ignoreCase;
+        this.type = builder.type;
+        this.status = builder.status;
+    }
+
+    public boolean matches(final LibraryItem item) {
+        return (libraryId == ANY || item.getLibraryId() == libraryId)
+                && (itemId == ANY || item.getItemId() == itemId)
+                && (shelfId == ANY || item.getShelfId() == shelfId)
+                && (type == null || item.getType() == type)
+                && (status == null || item.getItemStatus() == status)
+                && (title == null || containsTitle(item.getTitle()));
+    }
+
+    private boolean containsTitle(final String itemTitle) {
+        if (!ignoreCase)
+            return itemTitle.contains(title);
+
+        for (int i = 0, last = itemTitle.length() - title.length(); i <= last; i++) {
+            if (itemTitle.regionMatches(true, i, title, 0, title.length()))
+                return true;
+        }
+        return false;
+    }
+
+    public int getLibraryId() {
+        return libraryId;
+    }
+
+    public int getItemId() {
+        return itemId;
+    }
+
+    public int getShelfId() {
+        return shelfId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public boolean isIgnoreCase() {
+        return ignoreCase;
+    }
+
+    public ItemType getType() {
+        return type;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    @Override
+    public String toString() {
+        return "ItemQuery[" +
+                "libraryId=" + libraryId +
+                ", itemId=" + itemId +
+                ", shelfId=" + shelfId +
+                ", title=" + title +
+                ", ignoreCase=" + ignoreCase +
+                ", type=" + type +
+                ", status=" + status +
+                "]";
+    }
+
+    public static class ItemQueryBuilder {
+
+        private int libraryId = ANY;
+        private int itemId = ANY;
+        private int shelfId = ANY;
+        private String title;
+        private boolean ignoreCase;
+        private ItemType type;
+        private Status status;
+
+        public ItemQueryBuilder withLibraryId(final int libraryId) {
+            this.libraryId = libraryId;
+            return this;
+        }
+
+        public ItemQueryBuilder withItemId(final int itemId) {
+            this.itemId = itemId;
+            return this;
+        }
+
+        public ItemQueryBuilder withShelfId(final int shelfId) {
+            this.shelfId = shelfId;
+            return this;
+        }
+
+        public ItemQueryBuilder withTitle(final String title, final boolean ignoreCase) {
+            if (title == null)
+                throw new IllegalArgumentException("One or more argurment are not set or valid");
+
+            this.title = title;
+            this.ignoreCase = ignoreCase;
+            return this;
+        }
+
+        public ItemQueryBuilder withType(final ItemType type) {
+            this.type = type;
+            return this;
+        }
+
+        public ItemQueryBuilder withStatus(final Status status) {
+            this.status = status;
+            return this;
+        }
+
+        public ItemQuery build() {
+            return new ItemQuery(this);
+        }
+    }
+}
@@ -3,24 +3,31 @@ package com.citylibrary.model.item;
 import com.citylibrary.enums.ItemType;
 import com.citylibrary.enums.Status;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 public abstract class LibraryItem implements Loanable {
 
+    private static final VarHandle ITEM_STATUS;
+
+    static {
+        try {
+            ITEM_STATUS = MethodHandles.lookup().findVarHandle(LibraryItem.class, "itemStatus", Status.class);
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
     private final int libraryId;            //required unique library id
-    private final int itemId;               //required
-    private final ItemType type;            //required
-    private final String title;             //required
+    private final Work work;                //required, shared by all copies of the work
     private volatile Status itemStatus;     //required
 
-    private final String description;       //optional
     private final int shelfId;               //optional
 
-    protected LibraryItem(final int libraryId, final int itemId, final ItemType type, final String title, final String description, final int shelfId) {
+    protected LibraryItem(final int libraryId, final Work work, final int shelfId) {
         this.libraryId = libraryId;
-        this.itemId = itemId;
-        this.type = type;
-        this.title = title;
+        this.work = work;
         this.itemStatus = Status.AVAILABLE;
-        this.description = description;
         this.shelfId = shelfId;
     }
 
@@ -28,16 +35,20 @@ public abstract class LibraryItem implements Loanable {
         return libraryId;
     }
 
+    public Work getWork() {
+        return work;
+    }
+
     public int getItemId() {
-        return itemId;
+        return work.getItemId();
     }
 
     public ItemType getType() {
-        return type;
+        return work.getType();
     }
 
     public String getTitle() {
-        return title;
+        return work.getTitle();
     }
 
     public Status getItemStatus() {
@@ -45,17 +56,23 @@ public abstract class LibraryItem implements Loanable {
     }
 
     public String getDescription() {
-        return description;
+        return work.getDescription();
     }
 
     public int getShelfId() {
         return shelfId;
     }
 
-    public final void setItemStatus(final Status itemStatus) {
+    public void setItemStatus(final Status itemStatus) {
         this.itemStatus = itemStatus;
     }
 
+    // Moves the item from the expected status to the new one in a single atomic step, false when
+    // the item was not in the expected status. Borrowing and returning go through here, not the setter
+    public boolean compareAndSetItemStatus(final Status expected, final Status newStatus) {
+        return ITEM_STATUS.compareAndSet(this, expected, newStatus);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -73,12 +90,12 @@ public abstract class LibraryItem implements Loanable {
     public String toString() {
         return "[" +
                 "libraryId=" + libraryId +
-                ", itemId=" + itemId +
-                ", type=" + type +
-                ", title='" + title + '\'' +
-                ", itemStatus=" + itemStatus +
-                ", description='" + description + '\'' +
-                ", shelfId=" + shelfId +
+                ", itemId=" + getItemId() +
+                ", type=" + getType() +
+                ", title='" + getTitle() + '\'' +
+                ", itemStatus=" + getItemStatus() +
+                ", description='" + getDescription() + '\'' +
+                ", shelfId=" + getShelfId() +
                 ']';
     }
 
@@ -91,6 +108,7 @@ public abstract class LibraryItem implements Loanable {
         private final String title;
         private String description = "";
         private int ShelfId = 0;
+        private Work work;
 
         public LibraryItemBuilder(final int libraryId, final int itemId, final ItemType type, final String title) {
             if (libraryId <= 0 || itemId <= 0 || type == null || title == null || title.isEmpty())
@@ -102,8 +120,21 @@ public abstract class LibraryItem implements Loanable {
             this.title = title;
         }
 
+        // Builds a copy of an already known work, the work is shared rather than copied
+        public LibraryItemBuilder(final int libraryId, final Work work) {
+            if (libraryId <= 0 || work == null)
+                throw new IllegalArgumentException("One or more argurment are not set or valid");
+
+            this.libraryId = libraryId;
+            this.itemId = work.getItemId();
+            this.type = work.getType();
+            this.title = work.getTitle();
+            this.work = work;
+        }
+
         public LibraryItemBuilder withDescription(final String description) {
             this.description = description;
+            this.work = null;
             return this;
         }
 
@@ -113,19 +144,20 @@ public abstract class LibraryItem implements Loanable {
         }
 
         public LibraryItem build() {
+            Work itemWork = work != null ? work : new Work(itemId, type, title, description);
             LibraryItem item = null;
             switch (this.type) {
                 case BOOK:
-                    item = new Book(libraryId, itemId, title, description, ShelfId);
+                    item = new Book(libraryId, itemWork, ShelfId);
                     break;
                 case DVD:
-                    item = new Dvd(libraryId, itemId, title, description, ShelfId);
+                    item = new Dvd(libraryId, itemWork, ShelfId);
                     break;
                 case VHS:
-                    item = new Vhs(libraryId, itemId, title, description, ShelfId);
+                    item = new Vhs(libraryId, itemWork, ShelfId);
                     break;
                 case CD:
-                    item = new CompactDisc(libraryId, itemId, title, description, ShelfId);
+                    item = new CompactDisc(libraryId, itemWork, ShelfId);
                     break;
             }
             return item;
@@ -0,0 +1,41 @@
+package com.citylibrary.model.item;
+
+import java.util.List;
+
+// One page of a query ordered by library id. The continuation is the library id the next page
+// starts after, a query starts after FIRST
+public final class Page<T> {
+    public static final int FIRST = -1;
+
+    private final List<T> items;
+    private final int continuation;
+    private final boolean hasNext;
+
+
+    public Page(final List<T> items, final int continuation, final boolean hasNext) {
+        this.items = items;
+        this.continuation = continuation;
+        this.hasNext = hasNext;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public int getContinuation() {
+        return continuation;
+    }
+
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    @Override
+    public String toString() {
+        return "Page[" +
+                "items=" + items.size() +
+                ", continuation=" + continuation +
+                ", hasNext=" + hasNext +
+                "]";
+    }
+}
@@ -0,0 +1,69 @@
+package com.citylibrary.model.item;
+
+import com.citylibrary.enums.ItemType;
+
+// Catalog data shared by every copy of one work. Copies with the same itemId point to a single
+// instance, so title and description are held once per work rather than once per copy
+public final class Work {
+
+    private final int itemId;               //required
+    private final ItemType type;            //required
+    private final String title;             //required
+    private final String description;       //optional
+
+    public Work(final int itemId, final ItemType type, final String title, final String description) {
+        if (itemId <= 0 || type == null || title == null || title.isEmpty())
+            throw new IllegalArgumentException("One or more argurment are not set or valid");
+
+        this.itemId = itemId;
+        this.type = type;
+        this.title = title;
+        this.description = description == null ? "" : description;
+    }
+
+    public int getItemId() {
+        return itemId;
+    }
+
+    public ItemType getType() {
+        return type;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public boolean matches(final int itemId, final ItemType type, final String title) {
+        return this.itemId == itemId && this.type == type && this.title.equals(title);
+    }
+
+    // equal in every field, the off-heap store builds a new instance on each read
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other)
+            return true;
+        if (!(other instanceof Work))
+            return false;
+        Work that = (Work) other;
+        return itemId == that.itemId && type == that.type
+                && title.equals(that.title) && description.equals(that.description);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * itemId + type.ordinal()) + title.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "Work[" +
+                "itemId=" + itemId +
+                ", type=" + type +
+                ", title='" + title + '\'' +
+                ']';
+    }
+}
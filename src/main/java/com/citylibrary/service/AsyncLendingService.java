@@ -0,0 +1,30 @@
+package com.citylibrary.service;
+
+import com.citylibrary.enums.LendingOutcome;
+import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.LibraryItem;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// LendingService calls that return at once. A business exception completes the future exceptionally
+public interface AsyncLendingService {
+    CompletableFuture<Boolean> borrowItem(Person customer, LibraryItem item, LocalDate issueDate, LocalDate dueDate);
+
+    CompletableFuture<Boolean> returnItem(LibraryItem item);
+
+    CompletableFuture<List<LendingOutcome>> borrowItems(Person customer, List<LibraryItem> items, LocalDate issueDate, LocalDate dueDate);
+
+    CompletableFuture<List<LendingOutcome>> returnItems(List<LibraryItem> items);
+
+    CompletableFuture<Boolean> checkoutItems(Person customer, List<LibraryItem> items, LocalDate issueDate, LocalDate dueDate);
+
+    CompletableFuture<LibraryItem> borrowAnyCopy(Person customer, int itemId, LocalDate issueDate, LocalDate dueDate);
+
+    CompletableFuture<Reservation> reserveTitle(Person customer, int itemId);
+
+    CompletableFuture<LibraryItem> collectHold(Person customer, Reservation reservation, LocalDate issueDate, LocalDate dueDate);
+
+    CompletableFuture<Boolean> cancelReservation(Reservation reservation);
+}
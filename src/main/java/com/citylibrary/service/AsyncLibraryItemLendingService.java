@@ -0,0 +1,74 @@
+package com.citylibrary.service;
+
+import com.citylibrary.enums.LendingOutcome;
+import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.LibraryItem;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@Service
+public class AsyncLibraryItemLendingService implements AsyncLendingService {
+
+    private final LendingService lendingService;
+    private final LendingExecutor lendingExecutor;
+
+    // constructor injection gives an opportunity to mock and run unit tests outside spring framework
+    @Autowired
+    public AsyncLibraryItemLendingService(final LendingService lendingService, final LendingExecutor lendingExecutor) {
+        this.lendingService = lendingService;
+        this.lendingExecutor = lendingExecutor;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> borrowItem(final Person customer, final LibraryItem item, final LocalDate issueDate, final LocalDate dueDate) {
+        return lendingExecutor.submit(() -> lendingService.borrowItem(customer, item, issueDate, dueDate));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> returnItem(final LibraryItem item) {
+        return lendingExecutor.submit(() -> lendingService.returnItem(item));
+    }
+
+    @Override
+    public CompletableFuture<List<LendingOutcome>> borrowItems(final Person customer, final List<LibraryItem> items,
+                                                               final LocalDate issueDate, final LocalDate dueDate) {
+        return lendingExecutor.submit(() -> lendingService.borrowItems(customer, items, issueDate, dueDate));
+    }
+
+    @Override
+    public CompletableFuture<List<LendingOutcome>> returnItems(final List<LibraryItem> items) {
+        return lendingExecutor.submit(() -> lendingService.returnItems(items));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> checkoutItems(final Person customer, final List<LibraryItem> items,
+                                                    final LocalDate issueDate, final LocalDate dueDate) {
+        return lendingExecutor.submit(() -> lendingService.checkoutItems(customer, items, issueDate, dueDate));
+    }
+
+    @Override
+    public CompletableFuture<LibraryItem> borrowAnyCopy(final Person customer, final int itemId,
+                                                        final LocalDate issueDate, final LocalDate dueDate) {
+        return lendingExecutor.submit(() -> lendingService.borrowAnyCopy(customer, itemId, issueDate, dueDate));
+    }
+
+    @Override
+    public CompletableFuture<Reservation> reserveTitle(final Person customer, final int itemId) {
+        return lendingExecutor.submit(() -> lendingService.reserveTitle(customer, itemId));
+    }
+
+    @Override
+    public CompletableFuture<LibraryItem> collectHold(final Person customer, final Reservation reservation,
+                                                      final LocalDate issueDate, final LocalDate dueDate) {
+        return lendingExecutor.submit(() -> lendingService.collectHold(customer, reservation, issueDate, dueDate));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> cancelReservation(final Reservation reservation) {
+        return lendingExecutor.submit(() -> lendingService.cancelReservation(reservation));
+    }
+}
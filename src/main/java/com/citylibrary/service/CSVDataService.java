@@ -1,91 +1,273 @@
 package com.citylibrary.service;
 
+import com.citylibrary.config.LibraryConfig;
 import com.citylibrary.csvhelper.CSVDataLoader;
 import com.citylibrary.db.DataStore;
+import com.citylibrary.enums.ReservationStatus;
 import com.citylibrary.enums.Status;
 import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.Availability;
+import com.citylibrary.model.item.ItemQuery;
 import com.citylibrary.model.item.LibraryItem;
 import com.citylibrary.model.item.Loan;
+import com.citylibrary.model.item.Page;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Service
 public class CSVDataService implements DataService {
 
     private final DataStore dataStore;
     private final CSVDataLoader csvDataLoader;
+    private final LibraryConfig libraryConfig;
+    private final ItemQueryPlanner planner;
+    private final HoldQueues holds;
 
-    private static final Object PRESENT = new Object();
     private static final Logger logger = LoggerFactory.getLogger(CSVDataService.class);
+    private static final int SETTLE_ATTEMPTS = 1_000;
+    private static final int STREAM_CHUNK = 1_024;
+    private static final ItemQuery ALL = new ItemQuery.ItemQueryBuilder().build();
+    private static final ItemQuery LOANABLE = new ItemQuery.ItemQueryBuilder().withStatus(Status.AVAILABLE).build();
+    private static final Duration DEFAULT_HOLD_TTL = new LibraryConfig().getHoldTtl();
 
     // constructor injection gives an opportunity to mock and run unit tests outside spring framework
     @Autowired
-    public CSVDataService(final DataStore dataStore, final CSVDataLoader csvDataLoader) {
+    public CSVDataService(final DataStore dataStore, final CSVDataLoader csvDataLoader, final LibraryConfig libraryConfig) {
+        this(dataStore, csvDataLoader, libraryConfig, Clock.systemUTC());
+    }
+
+    // the clock times hold expiry
+    CSVDataService(final DataStore dataStore, final CSVDataLoader csvDataLoader, final LibraryConfig libraryConfig, final Clock clock) {
         this.dataStore = dataStore;
         this.csvDataLoader = csvDataLoader;
+        this.libraryConfig = libraryConfig;
+        this.planner = new ItemQueryPlanner(dataStore);
+        this.holds = new HoldQueues(libraryConfig == null ? DEFAULT_HOLD_TTL : libraryConfig.getHoldTtl(), clock);
     }
 
+    // Warm starts from the binary snapshot when one exists for the current CSV files, CSV parsing is the fallback
     @PostConstruct
     public void initilize() {
-        this.reloadDataStore();
+        Path snapshot = getSnapshotFile();
+        if (snapshot != null) {
+            try {
+                if (dataStore.restoreSnapshot(snapshot, csvDataLoader.getSourceVersion())) {
+                    logger.info("Data store restored from snapshot " + snapshot);
+                    return;
+                }
+                logger.info("Snapshot " + snapshot + " is missing or stale, loading data from CSV");
+            } catch (IOException ex) {
+                logger.error("Error restoring data store from snapshot " + snapshot + " " + ex.getMessage());
+            }
+        }
+
+        // the service starts with an empty store rather than not at all, a later reload may succeed
+        try {
+            this.reloadDataStore();
+        } catch (IllegalStateException ex) {
+            logger.error("Data store starts empty. " + ex.getMessage());
+        }
+    }
+
+    // Persists items, customers and active loans so the next start can skip CSV parsing
+    @PreDestroy
+    public void saveSnapshot() {
+        Path snapshot = getSnapshotFile();
+        if (snapshot == null)
+            return;
+
+        try {
+            dataStore.writeSnapshot(snapshot, csvDataLoader.getSourceVersion());
+            logger.info("Data store snapshot written to " + snapshot);
+        } catch (IOException ex) {
+            logger.error("Error writing data store snapshot " + snapshot + " " + ex.getMessage());
+        }
     }
 
     @Override
     public void clearDataStore() {
-        dataStore.getLibraryItems().clear();
-        dataStore.getLoans().clear();
-        dataStore.getCustomers().clear();
+        dataStore.clearLibraryItems();
+        dataStore.clearLoans();
+        dataStore.clearCustomers();
+        holds.clear();
     }
 
+    // throws IllegalStateException when either CSV file could not be read whole, the current catalog is kept then
     @Override
     public void reloadDataStore() {
 
-        this.clearDataStore();
-
-        dataStore.getLibraryItems()
-                .putAll(csvDataLoader.getLibraryItemsFromCsv().stream()
-                        .collect(Collectors.toMap(LibraryItem::getLibraryId, item -> item)));
+        // Records are streamed straight into a new catalog, no intermediate row or item lists are built.
+        // The catalog replaces the current one once complete, readers never see a partly loaded store.
+        // A failed load aborts the rebuild, a partial catalog never replaces the whole library
+        dataStore.rebuild(catalog -> {
+            if (!loadLibraryItems(catalog::putLibraryItem) || !csvDataLoader.loadCustomers(catalog::putCustomer)) {
+                String msg = "Library items or customers could not be read whole from CSV, the current catalog version "
+                        + dataStore.getVersion() + " is kept";
+                logger.error(msg);
+                throw new IllegalStateException(msg);
+            }
+        });
+        logger.info("Data store reloaded, catalog version " + dataStore.getVersion());
 
-        dataStore.getCustomers()
-                .putAll(csvDataLoader.getCustomersFromCsv().parallelStream()
-                        .collect(Collectors.toMap(Person::getId, customer -> customer)));
+        // the held copies were replaced with available ones, which go to the waiting reservations again
+        holds.endAllHeld();
+        holds.waitingTitles().forEach(this::dispatch);
+    }
 
+    // Incremental reload, diffs the CSV data against the store instead of rebuilding it.
+    // New ids are added, missing ids are retired and changed entries are replaced, unchanged
+    // items keep their instance. Item status and active loans are carried over in every case.
+    // A load that did not read its whole file retires nothing, what it read is still merged
+    @Override
+    public synchronized void refreshDataStore() {
+
+        Set<Integer> loadedItems = ConcurrentHashMap.newKeySet();
+        boolean itemsLoaded = loadLibraryItems(item -> {
+            loadedItems.add(item.getLibraryId());
+            mergeLibraryItem(item);
+        });
+        int retiredItems = itemsLoaded
+                ? retainAll(dataStore.getLibraryItems(), LibraryItem::getLibraryId, loadedItems, dataStore::removeLibraryItem)
+                : 0;
+
+        Set<Integer> loadedCustomers = new HashSet<>();
+        boolean customersLoaded = csvDataLoader.loadCustomers(customer -> {
+            loadedCustomers.add(customer.getId());
+            Person existing = dataStore.putCustomerIfAbsent(customer);
+            if (existing != null && !isUnchanged(existing, customer))
+                dataStore.replaceCustomer(existing, customer);
+        });
+        int retiredCustomers = customersLoaded
+                ? retainAll(dataStore.getCustomers(), Person::getId, loadedCustomers, dataStore::removeCustomer)
+                : 0;
+
+        if (!itemsLoaded)
+            logger.error("Library items were read only partly by the refresh, no item was retired");
+        if (!customersLoaded)
+            logger.error("Customers were read only partly by the refresh, no customer was retired");
+
+        logger.info("Data store refreshed. " + loadedItems.size() + " items loaded, " + retiredItems + " retired. "
+                + loadedCustomers.size() + " customers loaded, " + retiredCustomers + " retired");
     }
 
     @Override
     public List<LibraryItem> getCurrentInventory() {
-        Predicates all = new Predicates();
-        return getLibraryItems(all);
+        return findItems(ALL);
     }
 
     @Override
     public List<LibraryItem> getCurrentLoanableInventory() {
-        Predicates loanable = new Predicates(Status.AVAILABLE);
-        return getLibraryItems(loanable);
+        return findItems(LOANABLE);
+    }
+
+    @Override
+    public Page<LibraryItem> getCurrentInventory(final int after, final int pageSize) {
+        return getLibraryItems(ALL, after, pageSize);
+    }
+
+    @Override
+    public Page<LibraryItem> getCurrentLoanableInventory(final int after, final int pageSize) {
+        return getLibraryItems(LOANABLE, after, pageSize);
+    }
+
+    @Override
+    public List<LibraryItem> findItems(final ItemQuery query) {
+        if (query == null) {
+            String msg = "One or  more invalid method parameter(s) passed to findItems. Query cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        ItemQueryPlanner.Plan plan = planner.plan(query);
+        logger.debug("findItems " + query + " runs as " + plan);
+        return planner.execute(query, plan);
+    }
+
+    @Override
+    public int countItems(final ItemQuery query) {
+        if (query == null) {
+            String msg = "One or  more invalid method parameter(s) passed to countItems. Query cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        return planner.count(query);
+    }
+
+    @Override
+    public Availability getAvailability(final int itemId) {
+        return dataStore.getAvailability(itemId);
     }
 
+    @Override
+    public Stream<LibraryItem> streamCurrentInventory() {
+        return dataStore.getLibraryItems().stream();
+    }
+
+    @Override
+    public Stream<LibraryItem> streamCurrentLoanableInventory() {
+        return dataStore.getLibraryItems().stream().filter(LOANABLE::matches);
+    }
 
     @Override
     public List<LibraryItem> getItemsByTitle(final String title) {
+        return getItemsByTitle(title, false);
+    }
+
+    @Override
+    public List<LibraryItem> getItemsByTitle(final String title, final boolean ignoreCase) {
         if (title == null) {
             String msg = "One or  more invalid method parameter(s) passed to getItemsByTitle. Title cannot be null";
             logger.error(msg);
             throw new IllegalArgumentException(msg);
         }
-        Predicates byTitle = new Predicates(title);
-        return getLibraryItems(byTitle);
+        return new ArrayList<>(dataStore.getItemsByTitle(title, ignoreCase));
     }
 
     @Override
     public LibraryItem getItemsByLibraryId(final int libraryId) {
-        return dataStore.getLibraryItems().get(libraryId);
+        return dataStore.getLibraryItem(libraryId);
+    }
+
+    @Override
+    public List<LibraryItem> getItemsByLibraryIds(final int[] libraryIds) {
+        if (libraryIds == null) {
+            String msg = "One or  more invalid method parameter(s) passed to getItemsByLibraryIds. libraryIds cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        List<LibraryItem> items = new ArrayList<>(libraryIds.length);
+        for (int libraryId : libraryIds)
+            items.add(dataStore.getLibraryItem(libraryId));
+        return items;
     }
 
     @Override
@@ -95,7 +277,7 @@ public class CSVDataService implements DataService {
             logger.error(msg);
             throw new IllegalArgumentException(msg);
         }
-        dataStore.getLibraryItems().putIfAbsent(item.getLibraryId(), item);
+        dataStore.putLibraryItemIfAbsent(item);
     }
 
     @Override
@@ -106,95 +288,500 @@ public class CSVDataService implements DataService {
             throw new IllegalArgumentException(msg);
         }
 
-        return dataStore.getLibraryItems().remove(item.getLibraryId(), item);
+        return dataStore.removeLibraryItem(item.getLibraryId()) != null;
     }
 
+    @Override
     public boolean isBorrowed(final LibraryItem item) {
-        return dataStore.getLoans().keySet().parallelStream()
-                .anyMatch(loan -> loan.getItem().equals(item));
+        return dataStore.isOnLoan(item.getLibraryId());
     }
 
     @Override
-    public void addLoan(final Person customer, final LibraryItem item, final LocalDate issueDate, final LocalDate dueDate) {
+    public boolean addLoan(final Person customer, final LibraryItem item, final LocalDate issueDate, final LocalDate dueDate) {
         if (customer == null || item == null || issueDate == null || dueDate == null) {
             String msg = "One or  more invalid method parameter(s) passed to addLoan. Customer, Item, IssueDate, DueDate cannot be null";
             logger.error(msg);
             throw new IllegalArgumentException(msg);
         }
 
-        synchronized (item) {
-            item.setItemStatus(Status.LOANED);
-            Loan newLoan = new Loan(customer, item, issueDate, dueDate);
-            dataStore.getLoans().put(newLoan, PRESENT);
+        // The status CAS is the check and the claim in one step, only its winner records a loan.
+        // A claim on an instance the store no longer holds, or on an item that still has a loan, is undone
+        if (!transition(item, Status.AVAILABLE, Status.LOANED))
+            return false;
+
+        if (dataStore.getLibraryItem(item.getLibraryId()) != item
+                || !dataStore.addLoan(customer, item, issueDate, dueDate)) {
+            unclaim(item);
+            return false;
         }
+        return true;
     }
 
+    // All or nothing. Items are claimed in library id order, so a basket only ever waits for claims on
+    // higher items than it holds and two overlapping baskets never wait for each other in a circle. An
+    // item another claimant holds without a loan yet is waited for, the basket fails only on an item that
+    // is lent or held. Loans are recorded only once every item is claimed, a failure undoes what was recorded
     @Override
-    public List<Loan> getLoan() {
+    public boolean addLoans(final Person customer, final List<LibraryItem> items, final LocalDate issueDate, final LocalDate dueDate) {
+        if (customer == null || items == null || items.stream().anyMatch(Objects::isNull) || issueDate == null || dueDate == null) {
+            String msg = "One or  more invalid method parameter(s) passed to addLoans. Customer, Items, IssueDate, DueDate cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        List<LibraryItem> ordered = new ArrayList<>(items);
+        ordered.sort(Comparator.comparingInt(LibraryItem::getLibraryId));
+        for (int i = 1; i < ordered.size(); i++) {
+            if (ordered.get(i - 1).getLibraryId() == ordered.get(i).getLibraryId()) {
+                String msg = "One or  more invalid method parameter(s) passed to addLoans. Item " + ordered.get(i).getLibraryId() + " is listed twice";
+                logger.error(msg);
+                throw new IllegalArgumentException(msg);
+            }
+        }
 
-        List<Loan> loanList;
-        loanList = dataStore.getLoans().keySet().parallelStream().collect(Collectors.toList());
+        int claimed = 0;
+        while (claimed < ordered.size() && claim(ordered.get(claimed)))
+            claimed++;
+        if (claimed < ordered.size()) {
+            release(ordered, 0, claimed);
+            return false;
+        }
 
-        return loanList;
+        for (int recorded = 0; recorded < ordered.size(); recorded++) {
+            LibraryItem item = ordered.get(recorded);
+            if (dataStore.getLibraryItem(item.getLibraryId()) != item
+                    || !dataStore.addLoan(customer, item, issueDate, dueDate)) {
+                for (int i = recorded - 1; i >= 0; i--)
+                    undoLoan(new Loan(customer, ordered.get(i), issueDate, dueDate));
+                release(ordered, recorded, ordered.size());
+                return false;
+            }
+        }
+        return true;
     }
 
-    public boolean returnLoanedItem(final LibraryItem item) {
+    // Concurrent borrowers of one title are handed distinct copies by the pool, so each claims a different
+    // one and none waits. A copy that is gone, or that was lent directly meanwhile, is dropped for the next
+    @Override
+    public LibraryItem addLoanOfAnyCopy(final Person customer, final int itemId, final LocalDate issueDate, final LocalDate dueDate) {
+        if (customer == null || issueDate == null || dueDate == null) {
+            String msg = "One or  more invalid method parameter(s) passed to addLoanOfAnyCopy. Customer, IssueDate, DueDate cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        for (int libraryId = dataStore.takeAvailableCopy(itemId); libraryId >= 0; libraryId = dataStore.takeAvailableCopy(itemId)) {
+            LibraryItem copy = dataStore.getLibraryItem(libraryId);
+            if (copy != null && copy.getItemId() == itemId && addLoan(customer, copy, issueDate, dueDate))
+                return copy;
+        }
+        return null;
+    }
+
+    // A reservation placed while a copy is held is queued, a copy held for a reservation is kept from
+    // other borrowers. Copies are held for a title's reservations in the order they were placed
+    @Override
+    public Reservation reserve(final Person customer, final int itemId) {
+        if (customer == null) {
+            String msg = "One or  more invalid method parameter(s) passed to reserve. Customer cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        expire(itemId);
+        Reservation reservation = holds.enqueue(customer, itemId);
+        dispatch(itemId);
+        return reservation;
+    }
+
+    // a held copy is passed on to the next reservation
+    @Override
+    public boolean cancelReservation(final Reservation reservation) {
+        if (reservation == null) {
+            String msg = "One or  more invalid method parameter(s) passed to cancelReservation. Reservation cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (reservation.compareAndSetStatus(ReservationStatus.WAITING, ReservationStatus.CANCELLED))
+            return true;
+        if (!holds.end(reservation, ReservationStatus.CANCELLED))
+            return false;
+        passOn(reservation.getLibraryId());
+        return true;
+    }
+
+    // The copy is claimed and lent under its hold lock, so the hold cannot end or move on meanwhile.
+    // Null when the reservation is not the customer's or has no hold, or its copy cannot be lent
+    @Override
+    public LibraryItem addLoanOfHeldItem(final Person customer, final Reservation reservation, final LocalDate issueDate, final LocalDate dueDate) {
+        if (customer == null || reservation == null || issueDate == null || dueDate == null) {
+            String msg = "One or  more invalid method parameter(s) passed to addLoanOfHeldItem. Customer, Reservation, IssueDate, DueDate cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        if (reservation.getCustomer().getId() != customer.getId())
+            return null;
+
+        expire(reservation.getItemId());
+        if (reservation.getStatus() != ReservationStatus.HELD)
+            return null;
+
+        int libraryId = reservation.getLibraryId();
+        synchronized (holds.lock(libraryId)) {
+            LibraryItem copy = dataStore.getLibraryItem(libraryId);
+            if (reservation.getStatus() != ReservationStatus.HELD || copy == null || !transition(copy, Status.HELD, Status.LOANED))
+                return null;
+
+            if (dataStore.getLibraryItem(libraryId) == copy && dataStore.addLoan(customer, copy, issueDate, dueDate)) {
+                holds.end(reservation, ReservationStatus.COLLECTED);
+                return copy;
+            }
+            transition(copy, Status.LOANED, Status.HELD);
+            return null;
+        }
+    }
+
+    // Expiry is also swept lazily by every reserve, collect and return of a title, this catches titles
+    // nobody touches. Returns the number of holds expired
+    @Override
+    public int expireHolds() {
+        int expired = 0;
+        for (int itemId : holds.heldTitles())
+            expired += expire(itemId);
+        return expired;
+    }
+
+    // the copies of expired holds go to the next reservations
+    private int expire(final int itemId) {
+        List<Reservation> expired = holds.expire(itemId);
+        for (Reservation reservation : expired)
+            passOn(reservation.getLibraryId());
+        return expired.size();
+    }
+
+    // A copy in status HELD without a hold goes to the title's next reservation, or back on the shelf
+    // when nobody waits. A reservation placed just before the copy is made available finds it then
+    private void passOn(final int libraryId) {
+        LibraryItem copy = dataStore.getLibraryItem(libraryId);
+        if (copy == null)
+            return;
+
+        Reservation held;
+        synchronized (holds.lock(libraryId)) {
+            if (copy.getItemStatus() != Status.HELD || holds.isHeld(libraryId))
+                return;
+            held = holds.hold(copy);
+            if (held == null)
+                transition(copy, Status.HELD, Status.AVAILABLE);
+        }
+        // the patron's callbacks run without the hold lock
+        if (held != null)
+            held.notifyHeld(copy);
+        else
+            dispatch(copy.getItemId());
+    }
+
+    // holds available copies of the title for its waiting reservations while there are both
+    private void dispatch(final int itemId) {
+        while (holds.hasWaiting(itemId)) {
+            int libraryId = dataStore.takeAvailableCopy(itemId);
+            if (libraryId < 0)
+                return;
+            LibraryItem copy = dataStore.getLibraryItem(libraryId);
+            if (copy != null && copy.getItemId() == itemId && transition(copy, Status.AVAILABLE, Status.HELD))
+                passOn(libraryId);
+        }
+    }
+
+    // A returned copy is held for the title's next reservation, or for the one that already holds it
+    // when a refresh swapped the copy's instance. Otherwise it is available again
+    private void shelve(final LibraryItem returned) {
+        int itemId = returned.getItemId();
+        expire(itemId);
+        if (holds.hasWaiting(itemId) || holds.isHeld(returned.getLibraryId())) {
+            if (transition(returned, Status.LOANED, Status.HELD))
+                passOn(returned.getLibraryId());
+        } else if (transition(returned, Status.LOANED, Status.AVAILABLE)) {
+            dispatch(itemId);
+        }
+    }
+
+    // a claim that did not become a loan, a reservation placed meanwhile finds the copy
+    private void unclaim(final LibraryItem item) {
+        if (transition(item, Status.LOANED, Status.AVAILABLE))
+            dispatch(item.getItemId());
+    }
 
-        boolean success = false;
-        Loan loanedItem = dataStore.getLoans().keySet().parallelStream()
-                .filter(litem -> litem.getItem().equals(item)).findAny().orElse(null);
+    // An item claimed by another borrower or basket that has not recorded its loan yet settles shortly,
+    // into a loan or back to available. Lent and held items fail at once, as does a retired instance
+    private boolean claim(final LibraryItem item) {
+        for (int attempt = 0; attempt < SETTLE_ATTEMPTS; attempt++) {
+            if (transition(item, Status.AVAILABLE, Status.LOANED))
+                return true;
+
+            Status status = item.getItemStatus();
+            if (status == Status.HELD
+                    || status == Status.LOANED && dataStore.isOnLoan(item.getLibraryId())
+                    || dataStore.getLibraryItem(item.getLibraryId()) != item)
+                return false;
+            Thread.yield();
+        }
+        return false;
+    }
+
+    // in reverse order of claiming
+    private void release(final List<LibraryItem> ordered, final int from, final int to) {
+        for (int i = to - 1; i >= from; i--)
+            unclaim(ordered.get(i));
+    }
 
-        if (loanedItem != null) {
-            synchronized (item) {
-                item.setItemStatus(Status.AVAILABLE);
-                dataStore.getLoans().remove(loanedItem);
-                success = true;
+    // A refresh may have moved the loan to a new instance of its item meanwhile, it is then taken back from
+    // there. A loan already returned, or one that is no longer this one, is left alone
+    private void undoLoan(final Loan loan) {
+        for (int attempt = 0; attempt < SETTLE_ATTEMPTS; attempt++) {
+            Loan current = dataStore.getLoan(loan.getItem().getLibraryId());
+            if (current == null
+                    || current.getCustomer().getId() != loan.getCustomer().getId()
+                    || !current.getIssueDate().equals(loan.getIssueDate())
+                    || !current.getDueDate().equals(loan.getDueDate()))
+                return;
+            if (dataStore.removeLoan(current)) {
+                unclaim(current.getItem());
+                return;
             }
+            Thread.yield();
+        }
+    }
+
+    @Override
+    public List<Loan> getLoan() {
+
+        return new ArrayList<>(dataStore.getLoans());
+    }
+
+    @Override
+    public Page<Loan> getLoan(final int after, final int pageSize) {
+        validatePage("getLoan", pageSize);
+        if (after == Integer.MAX_VALUE)
+            return new Page<>(List.of(), after, false);
+
+        // one loan more than the page tells whether there is a next page
+        return toPage(dataStore.getLoansFrom(after + 1, pageSize + 1), after, pageSize, loan -> loan.getItem().getLibraryId());
+    }
+
+    @Override
+    public Stream<Loan> streamLoans() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new LoanIterator(),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public List<Loan> getLoansByCustomer(final Person customer) {
+        if (customer == null) {
+            String msg = "One or  more invalid method parameter(s) passed to getLoansByCustomer. Customer cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
         }
-        return success;
+        return new ArrayList<>(dataStore.getLoansByCustomer(customer.getId()));
+    }
+
+    @Override
+    public List<Loan> getLoansDueBefore(final LocalDate date) {
+        if (date == null) {
+            String msg = "One or  more invalid method parameter(s) passed to getLoansDueBefore. Date cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        return new ArrayList<>(dataStore.getLoansDueBefore(date));
+    }
+
+    @Override
+    public List<Loan> getLoansDueBetween(final LocalDate from, final LocalDate to) {
+        if (from == null || to == null) {
+            String msg = "One or  more invalid method parameter(s) passed to getLoansDueBetween. From, To cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        return new ArrayList<>(dataStore.getLoansDueBetween(from, to));
+    }
+
+    // Removing the recorded loan is the claim, only one caller can win it. The status goes back on the
+    // instance the loan referred to, which a concurrent refresh may have swapped in
+    public boolean returnLoanedItem(final LibraryItem item) {
+
+        LibraryItem loanedItem = dataStore.removeLoan(item.getLibraryId());
+        if (loanedItem == null)
+            return false;
+
+        shelve(loanedItem);
+        return true;
+    }
+
+    // Statuses change in place, the store's status index follows every transition made here. It is
+    // synced by library id, so a transition on an instance the store no longer holds does no harm
+    private boolean transition(final LibraryItem item, final Status expected, final Status status) {
+        if (!item.compareAndSetItemStatus(expected, status))
+            return false;
+        dataStore.syncItemStatus(item.getLibraryId());
+        return true;
     }
 
     @Override
     public Person getCustomerById(final int customerID) {
-        return dataStore.getCustomers().get(customerID);
+        return dataStore.getCustomer(customerID);
     }
 
-    private List<LibraryItem> getLibraryItems(Predicates p) {
-        return dataStore.getLibraryItems().values().parallelStream()
-                .filter(p::filter).collect(Collectors.toList());
+    // whether the whole file was read
+    private boolean loadLibraryItems(final Consumer<LibraryItem> consumer) {
+        if (csvDataLoader.isParallelLoadEnabled())
+            return csvDataLoader.loadLibraryItemsInParallel(consumer);
+        return csvDataLoader.loadLibraryItems(consumer);
     }
 
-    private static class Predicates {
-        private Status status;
-        private String title;
-        private int libraryId;
+    private void mergeLibraryItem(final LibraryItem loaded) {
+        LibraryItem existing = dataStore.putLibraryItemIfAbsent(loaded);
+        if (existing == null || isUnchanged(existing, loaded))
+            return;
+
+        // No lock is shared with addLoan and returnLoanedItem. An available item is claimed first, so
+        // the instance being retired stays loaned and no borrower can win it. A loaned item is replaced
+        // once its loan is recorded and the loan moves over with it. In between, a borrow or return is
+        // halfway through its two steps and the item settles after a short wait
+        for (int attempt = 0; ; attempt++) {
+            if (transition(existing, Status.AVAILABLE, Status.LOANED)) {
+                loaded.setItemStatus(Status.AVAILABLE);
+                dataStore.replaceLibraryItem(existing, loaded);
+                dispatch(loaded.getItemId());
+                return;
+            }
 
-        public boolean filter(final LibraryItem item) {
-            if (title != null)
-                return item.getTitle().contains(this.title);
+            // a held item is claimed like an available one, under its hold lock so a collector takes
+            // either instance whole. Its hold is kept by library id and stays with the new instance
+            if (claimHeld(existing, loaded)) {
+                passOn(loaded.getLibraryId());
+                return;
+            }
 
-            if (libraryId > 0)
-                return item.getLibraryId() == this.libraryId;
+            Loan loan = dataStore.getLoan(existing.getLibraryId());
+            if (loan != null && loan.getItem() == existing) {
+                loaded.setItemStatus(Status.LOANED);
+                if (dataStore.replaceLibraryItem(existing, loaded)
+                        && !dataStore.replaceLoan(loan, new Loan(loan.getCustomer(), loaded, loan.getIssueDate(), loan.getDueDate())))
+                    // returned meanwhile, the return flipped the retired instance back
+                    shelve(dataStore.getLibraryItem(loaded.getLibraryId()));
+                return;
+            }
 
-            if (status != null)
-                return item.getItemStatus().equals(status);
+            // loaned without a loan for longer than any borrow or return takes, the status is carried over as is
+            if (attempt == SETTLE_ATTEMPTS) {
+                loaded.setItemStatus(existing.getItemStatus());
+                dataStore.replaceLibraryItem(existing, loaded);
+                return;
+            }
+            Thread.yield();
+        }
+    }
 
+    private boolean claimHeld(final LibraryItem existing, final LibraryItem loaded) {
+        if (existing.getItemStatus() != Status.HELD)
+            return false;
+
+        synchronized (holds.lock(existing.getLibraryId())) {
+            if (!transition(existing, Status.HELD, Status.LOANED))
+                return false;
+            loaded.setItemStatus(Status.HELD);
+            dataStore.replaceLibraryItem(existing, loaded);
             return true;
         }
+    }
 
-        public Predicates() {
+    private static boolean isUnchanged(final LibraryItem existing, final LibraryItem loaded) {
+        return existing.getType() == loaded.getType()
+                && existing.getItemId() == loaded.getItemId()
+                && existing.getShelfId() == loaded.getShelfId()
+                && existing.getTitle().equals(loaded.getTitle())
+                && existing.getDescription().equals(loaded.getDescription());
+    }
+
+    private static boolean isUnchanged(final Person existing, final Person loaded) {
+        return existing.getClass() == loaded.getClass()
+                && existing.getFirstName().equals(loaded.getFirstName())
+                && existing.getLastName().equals(loaded.getLastName());
+    }
+
+    // Removes every entry whose key was not loaded, loans of retired items stay active until returned
+    private static <T> int retainAll(final Collection<T> entries, final ToIntFunction<T> idOf,
+                                     final Set<Integer> loadedIds, final IntFunction<T> remove) {
+        int retired = 0;
+        for (T entry : entries) {
+            int id = idOf.applyAsInt(entry);
+            if (!loadedIds.contains(id) && remove.apply(id) != null)
+                retired++;
         }
+        return retired;
+    }
 
-        public Predicates(final Status status) {
-            this.status = status;
+    private Path getSnapshotFile() {
+        String snapshotFileName = libraryConfig.getSnapshotFileName();
+        return snapshotFileName == null || snapshotFileName.isBlank() ? null : Paths.get(snapshotFileName);
+    }
+
+    private Page<LibraryItem> getLibraryItems(final ItemQuery query, final int after, final int pageSize) {
+        validatePage("getCurrentInventory", pageSize);
+        if (after == Integer.MAX_VALUE)
+            return new Page<>(List.of(), after, false);
+
+        Iterator<LibraryItem> items = dataStore.getLibraryItemsFrom(after + 1);
+        List<LibraryItem> matching = new ArrayList<>(pageSize + 1);
+        while (matching.size() <= pageSize && items.hasNext()) {
+            LibraryItem item = items.next();
+            if (query.matches(item))
+                matching.add(item);
+        }
+        return toPage(matching, after, pageSize, LibraryItem::getLibraryId);
+    }
+
+    private static void validatePage(final String method, final int pageSize) {
+        if (pageSize <= 0) {
+            String msg = "One or  more invalid method parameter(s) passed to " + method + ". pageSize must be positive";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
         }
+    }
 
-        public Predicates(final String title) {
-            this.title = title;
+    // fetched holds up to one entry more than the page, its presence means there is a next page
+    private static <T> Page<T> toPage(final List<T> fetched, final int after, final int pageSize, final ToIntFunction<T> libraryId) {
+        boolean hasNext = fetched.size() > pageSize;
+        List<T> items = hasNext ? new ArrayList<>(fetched.subList(0, pageSize)) : fetched;
+        int continuation = items.isEmpty() ? after : libraryId.applyAsInt(items.get(items.size() - 1));
+        return new Page<>(items, continuation, hasNext);
+    }
+
+    // fetches the active loans a chunk at a time as the stream is consumed
+    private final class LoanIterator implements Iterator<Loan> {
+        private List<Loan> chunk = List.of();
+        private int index;
+        private int after = Page.FIRST;
+        private boolean hasMoreChunks = true;
+
+        @Override
+        public boolean hasNext() {
+            while (index == chunk.size() && hasMoreChunks) {
+                Page<Loan> page = getLoan(after, STREAM_CHUNK);
+                chunk = page.getItems();
+                index = 0;
+                after = page.getContinuation();
+                hasMoreChunks = page.hasNext();
+            }
+            return index < chunk.size();
         }
 
-        public Predicates(final int libraryId) {
-            this.libraryId = libraryId;
+        @Override
+        public Loan next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return chunk.get(index++);
         }
     }
 }
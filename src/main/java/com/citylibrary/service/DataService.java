@@ -1,34 +1,97 @@
 package com.citylibrary.service;
 
 import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.Availability;
+import com.citylibrary.model.item.ItemQuery;
 import com.citylibrary.model.item.LibraryItem;
 import com.citylibrary.model.item.Loan;
+import com.citylibrary.model.item.Page;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface DataService {
     void clearDataStore();
 
+    // the current catalog is kept when the CSV files cannot be read whole
     void reloadDataStore();
 
+    void refreshDataStore();
+
     void addLibraryItem(final LibraryItem item);
 
     boolean removeLibraryItem(final LibraryItem item);
 
-    void addLoan(Person customer, LibraryItem item, LocalDate issueDate, LocalDate dueDate);
+    // false when the item could not be claimed, another borrower got there first
+    boolean addLoan(Person customer, LibraryItem item, LocalDate issueDate, LocalDate dueDate);
+
+    // every item is loaned or none is, false when any of them could not be claimed
+    boolean addLoans(Person customer, List<LibraryItem> items, LocalDate issueDate, LocalDate dueDate);
+
+    // loans whichever available copy of the title the store's pool hands out, null when no copy is available
+    LibraryItem addLoanOfAnyCopy(Person customer, int itemId, LocalDate issueDate, LocalDate dueDate);
 
+    // A returned copy is held for the title's next reservation rather than made available
     boolean returnLoanedItem(LibraryItem item);
 
+    // queues the customer for the title, a copy is held for them as soon as one is free
+    Reservation reserve(Person customer, int itemId);
+
+    // false when the reservation had already ended
+    boolean cancelReservation(Reservation reservation);
+
+    // loans the copy held for the reservation, null when the reservation holds no copy or is not the customer's
+    LibraryItem addLoanOfHeldItem(Person customer, Reservation reservation, LocalDate issueDate, LocalDate dueDate);
+
+    // ends every hold past its time and passes the copies on, returns how many ended
+    int expireHolds();
+
+    boolean isBorrowed(LibraryItem item);
+
     List<LibraryItem> getCurrentInventory();
 
     List<LibraryItem> getCurrentLoanableInventory();
 
+    // Pages and streams are ordered by library id and read from the store as they are consumed,
+    // a page costs its own size and not the size of the inventory
+    Page<LibraryItem> getCurrentInventory(final int after, final int pageSize);
+
+    Page<LibraryItem> getCurrentLoanableInventory(final int after, final int pageSize);
+
+    Stream<LibraryItem> streamCurrentInventory();
+
+    Stream<LibraryItem> streamCurrentLoanableInventory();
+
+    // items meeting every condition of the query ordered by library id, answered from the most selective index
+    List<LibraryItem> findItems(final ItemQuery query);
+
+    // number of items findItems would return, read off the bitmaps when they cover the query
+    int countItems(final ItemQuery query);
+
+    // copies of the title in total, available and loaned, read off counters the store keeps. Null for an unknown title
+    Availability getAvailability(final int itemId);
+
     List<LibraryItem> getItemsByTitle(final String title);
 
+    List<LibraryItem> getItemsByTitle(final String title, final boolean ignoreCase);
+
     LibraryItem getItemsByLibraryId(final int libraryId);
 
+    // one item per id in the same order, null where no item has that id
+    List<LibraryItem> getItemsByLibraryIds(final int[] libraryIds);
+
     List<Loan> getLoan();
 
+    Page<Loan> getLoan(final int after, final int pageSize);
+
+    Stream<Loan> streamLoans();
+
+    List<Loan> getLoansByCustomer(final Person customer);
+
+    List<Loan> getLoansDueBefore(final LocalDate date);
+
+    List<Loan> getLoansDueBetween(final LocalDate from, final LocalDate to);
+
     Person getCustomerById(final int customerID);
 }
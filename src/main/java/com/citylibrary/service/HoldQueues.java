@@ -0,0 +1,155 @@
+package com.citylibrary.service;
+
+import com.citylibrary.enums.ReservationStatus;
+import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.LibraryItem;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reservation queues by title. Each title has a queue of waiting reservations in the order they were
+ * placed and a queue of held ones in the order they were held, which with one time to live is also
+ * the order they expire in. Queues are lock-free, any number of patrons reserve a title without
+ * waiting for each other. A reservation leaves a queue lazily, a cancelled one is dropped when it
+ * reaches the head.
+ * <p>
+ * Holding a copy for the next waiter and ending a hold are made under the copy's lock stripe, so a
+ * copy is held for one reservation at a time and the held copies map never keeps an ended hold.
+ * Reservation status changes are compare-and-set, of racing holders, collectors, cancellers and
+ * expiries exactly one wins.
+ */
+final class HoldQueues {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final Duration ttl;
+    private final Clock clock;
+    private final ConcurrentMap<Integer, ConcurrentLinkedQueue<Reservation>> waitingByItemId = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, ConcurrentLinkedQueue<Reservation>> heldByItemId = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Reservation> heldByLibraryId = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    HoldQueues(final Duration ttl, final Clock clock) {
+        this.ttl = ttl;
+        this.clock = clock;
+        for (int i = 0; i < LOCK_STRIPES; i++)
+            locks[i] = new Object();
+    }
+
+    Reservation enqueue(final Person customer, final int itemId) {
+        Reservation reservation = new Reservation(customer, itemId, clock.instant());
+        waitingByItemId.computeIfAbsent(itemId, title -> new ConcurrentLinkedQueue<>()).offer(reservation);
+        return reservation;
+    }
+
+    // Drops reservations at the head that stopped waiting. The head is removed by identity rather
+    // than polled, a racing caller may have removed it already and the next one is still waiting
+    boolean hasWaiting(final int itemId) {
+        ConcurrentLinkedQueue<Reservation> waiting = waitingByItemId.get(itemId);
+        if (waiting == null)
+            return false;
+
+        for (Reservation head = waiting.peek(); head != null; head = waiting.peek()) {
+            if (head.getStatus() == ReservationStatus.WAITING)
+                return true;
+            waiting.remove(head);
+        }
+        return false;
+    }
+
+    // Holds the copy for the longest waiting reservation of its title, null when nobody is waiting.
+    // Under the copy's lock. The caller completes the reservation's ready future once out of the
+    // lock, a callback that collects the copy at once finds it held
+    Reservation hold(final LibraryItem copy) {
+        ConcurrentLinkedQueue<Reservation> waiting = waitingByItemId.get(copy.getItemId());
+        if (waiting == null)
+            return null;
+
+        int libraryId = copy.getLibraryId();
+        Instant until = clock.instant().plus(ttl);
+        ConcurrentLinkedQueue<Reservation> held = heldByItemId.computeIfAbsent(copy.getItemId(), title -> new ConcurrentLinkedQueue<>());
+        for (Reservation next = waiting.poll(); next != null; next = waiting.poll()) {
+            heldByLibraryId.put(libraryId, next);
+            held.offer(next);
+            if (next.hold(copy, until))
+                return next;
+            heldByLibraryId.remove(libraryId, next);
+        }
+        return null;
+    }
+
+    boolean isHeld(final int libraryId) {
+        return heldByLibraryId.containsKey(libraryId);
+    }
+
+    // Ends a held reservation as collected, cancelled or expired, false when it is not held any more.
+    // The copy is read once the hold is seen, it was written before the reservation became held
+    boolean end(final Reservation reservation, final ReservationStatus status) {
+        if (reservation.getStatus() != ReservationStatus.HELD)
+            return false;
+
+        int libraryId = reservation.getLibraryId();
+        synchronized (lock(libraryId)) {
+            if (!reservation.compareAndSetStatus(ReservationStatus.HELD, status))
+                return false;
+            heldByLibraryId.remove(libraryId, reservation);
+            return true;
+        }
+    }
+
+    // Ends the title's holds that are past their time, the caller passes their copies on. Ended
+    // reservations at the head are dropped, one still waiting is being held right now and stays
+    List<Reservation> expire(final int itemId) {
+        ConcurrentLinkedQueue<Reservation> held = heldByItemId.get(itemId);
+        if (held == null)
+            return List.of();
+
+        Instant now = clock.instant();
+        List<Reservation> expired = new ArrayList<>();
+        for (Reservation head = held.peek(); head != null; head = held.peek()) {
+            ReservationStatus status = head.getStatus();
+            if (status == ReservationStatus.WAITING || status == ReservationStatus.HELD && now.isBefore(head.getHeldUntil()))
+                break;
+            held.remove(head);
+            if (end(head, ReservationStatus.EXPIRED))
+                expired.add(head);
+        }
+        return expired;
+    }
+
+    Set<Integer> heldTitles() {
+        return Set.copyOf(heldByItemId.keySet());
+    }
+
+    Set<Integer> waitingTitles() {
+        return Set.copyOf(waitingByItemId.keySet());
+    }
+
+    // the copies were replaced by a reload, their holds end and the reservations leave the queues
+    void endAllHeld() {
+        for (Reservation reservation : heldByLibraryId.values())
+            end(reservation, ReservationStatus.EXPIRED);
+        heldByItemId.clear();
+    }
+
+    // the customers were cleared with the store, every reservation ends
+    void clear() {
+        endAllHeld();
+        for (ConcurrentLinkedQueue<Reservation> waiting : waitingByItemId.values())
+            for (Reservation reservation = waiting.poll(); reservation != null; reservation = waiting.poll())
+                reservation.compareAndSetStatus(ReservationStatus.WAITING, ReservationStatus.CANCELLED);
+        waitingByItemId.clear();
+    }
+
+    Object lock(final int libraryId) {
+        return locks[Math.floorMod(libraryId, LOCK_STRIPES)];
+    }
+}
@@ -0,0 +1,139 @@
+package com.citylibrary.service;
+
+import com.citylibrary.db.DataStore;
+import com.citylibrary.db.IdBitmap;
+import com.citylibrary.model.item.ItemQuery;
+import com.citylibrary.model.item.LibraryItem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Answers item queries from the cheapest access path the store offers. Every path that applies to a
+ * query estimates the items it would hand over: the library id lookup one, the title index its
+ * shortest posting list, the type, shelf and status bitmaps the exact count of their intersection
+ * and a scan the whole inventory. The smallest estimate wins and the remaining conditions filter
+ * its items.
+ * <p>
+ * Candidate sets below the parallel threshold are filtered on the calling thread, where a fork join
+ * split costs more than the filter. Results are ordered by library id whatever the path.
+ */
+final class ItemQueryPlanner {
+
+    static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    enum Access {
+        LIBRARY_ID,
+        TITLE_INDEX,
+        BITMAP,
+        SCAN,
+    }
+
+    static final class Plan {
+        private final Access access;
+        private final int estimate;
+        private final boolean parallel;
+        private final IdBitmap ids;                    // selected library ids of a bitmap plan
+
+        Plan(final Access access, final int estimate) {
+            this(access, estimate, null);
+        }
+
+        Plan(final Access access, final int estimate, final IdBitmap ids) {
+            this.access = access;
+            this.estimate = estimate;
+            this.parallel = estimate >= PARALLEL_THRESHOLD;
+            this.ids = ids;
+        }
+
+        Access getAccess() {
+            return access;
+        }
+
+        int getEstimate() {
+            return estimate;
+        }
+
+        boolean isParallel() {
+            return parallel;
+        }
+
+        IdBitmap getIds() {
+            return ids;
+        }
+
+        @Override
+        public String toString() {
+            return "Plan[" + access + ", estimate=" + estimate + (parallel ? ", parallel]" : "]");
+        }
+    }
+
+    private final DataStore dataStore;
+
+    ItemQueryPlanner(final DataStore dataStore) {
+        this.dataStore = dataStore;
+    }
+
+    Plan plan(final ItemQuery query) {
+        if (query.getLibraryId() != ItemQuery.ANY)
+            return new Plan(Access.LIBRARY_ID, 1);
+
+        Access access = Access.SCAN;
+        int estimate = dataStore.getLibraryItems().size();
+        if (query.getTitle() != null) {
+            int titled = dataStore.estimateItemsByTitle(query.getTitle());
+            if (titled < estimate) {
+                access = Access.TITLE_INDEX;
+                estimate = titled;
+            }
+        }
+        // the intersection is exact and read without building items, so it wins a tie
+        IdBitmap ids = dataStore.selectItemIds(query.getType(), query.getStatus(), query.getShelfId());
+        if (ids != null && ids.cardinality() <= estimate)
+            return new Plan(Access.BITMAP, ids.cardinality(), ids);
+        return new Plan(access, estimate);
+    }
+
+    // Counted from the bitmaps alone when they cover every condition of the query
+    int count(final ItemQuery query) {
+        if (query.getLibraryId() == ItemQuery.ANY && query.getItemId() == ItemQuery.ANY && query.getTitle() == null) {
+            IdBitmap ids = dataStore.selectItemIds(query.getType(), query.getStatus(), query.getShelfId());
+            return ids == null ? dataStore.getLibraryItems().size() : ids.cardinality();
+        }
+        return execute(query, plan(query)).size();
+    }
+
+    List<LibraryItem> execute(final ItemQuery query, final Plan plan) {
+        switch (plan.getAccess()) {
+            case LIBRARY_ID:
+                LibraryItem item = dataStore.getLibraryItem(query.getLibraryId());
+                List<LibraryItem> found = new ArrayList<>(1);
+                if (item != null && query.matches(item))
+                    found.add(item);
+                return found;
+            case TITLE_INDEX:
+                return filter(dataStore.getItemsByTitle(query.getTitle(), query.isIgnoreCase()), query, plan);
+            case BITMAP:
+                // an id is looked up when it is reached, the item may have changed or gone since it was selected
+                IntStream ids = IntStream.of(plan.getIds().toArray());
+                return filter((plan.isParallel() ? ids.parallel() : ids)
+                        .mapToObj(dataStore::getLibraryItem)
+                        .filter(Objects::nonNull), query);
+            default:
+                return filter(dataStore.getLibraryItems(), query, plan);
+        }
+    }
+
+    private static List<LibraryItem> filter(final Collection<LibraryItem> candidates, final ItemQuery query, final Plan plan) {
+        return filter(plan.isParallel() ? candidates.parallelStream() : candidates.stream(), query);
+    }
+
+    private static List<LibraryItem> filter(final Stream<LibraryItem> candidates, final ItemQuery query) {
+        return candidates.filter(query::matches).collect(Collectors.toList());
+    }
+}
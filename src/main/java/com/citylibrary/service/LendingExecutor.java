@@ -0,0 +1,95 @@
+package com.citylibrary.service;
+
+import com.citylibrary.config.LibraryConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+// Runs the async lending calls off the caller's thread. The platform pool is a fork join pool of its
+// own, so parallel scans started from its tasks split over its workers instead of the common pool.
+// Virtual threads suit callers that issue many calls at once, they need a runtime that has them
+@Component
+public class LendingExecutor implements Executor {
+
+    public static final String PLATFORM = "platform";
+    public static final String VIRTUAL = "virtual";
+
+    private final ExecutorService executor;
+    private final String kind;
+    private static final Logger logger = LoggerFactory.getLogger(LendingExecutor.class);
+
+    // constructor injection gives an opportunity to mock and run unit tests outside spring framework
+    @Autowired
+    public LendingExecutor(final LibraryConfig libraryConfig) {
+        this(libraryConfig.getExecutor(), libraryConfig.getExecutorThreads());
+    }
+
+    // a thread count of 0 or less means one platform thread per available processor
+    public LendingExecutor(final String kind, final int threads) {
+        if (!PLATFORM.equals(kind) && !VIRTUAL.equals(kind)) {
+            String msg = "One or  more invalid method parameter(s) passed to LendingExecutor. kind must be " + PLATFORM + " or " + VIRTUAL;
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        ExecutorService virtual = VIRTUAL.equals(kind) ? newVirtualThreadPerTaskExecutor() : null;
+        if (virtual != null) {
+            this.executor = virtual;
+            this.kind = VIRTUAL;
+        } else {
+            if (VIRTUAL.equals(kind))
+                logger.info("Virtual threads are not supported by this runtime, lending calls run on platform threads");
+            int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+            this.executor = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+            this.kind = PLATFORM;
+        }
+    }
+
+    // the kind actually in use, platform when virtual threads were asked for but are not available
+    public String getKind() {
+        return kind;
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        executor.execute(task);
+    }
+
+    // A checked exception thrown by the call completes the future exceptionally with that exception as
+    // the cause of the CompletionException, the way CompletableFuture reports any other failure
+    public <T> CompletableFuture<T> submit(final Callable<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.call();
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new CompletionException(ex);
+            }
+        }, executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // looked up by reflection, the code is built for a runtime older than virtual threads
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+}
@@ -3,13 +3,34 @@ package com.citylibrary.service;
 import com.citylibrary.businessexception.LibraryItemNotFoundException;
 import com.citylibrary.businessexception.LibraryItemNotLoanableException;
 import com.citylibrary.businessexception.LibraryOperationException;
+import com.citylibrary.enums.LendingOutcome;
 import com.citylibrary.model.actor.Person;
 import com.citylibrary.model.item.LibraryItem;
 
 import java.time.LocalDate;
+import java.util.List;
 
 public interface LendingService {
     boolean borrowItem(Person customer, LibraryItem item, LocalDate issueDate, LocalDate dueDate) throws LibraryItemNotLoanableException, LibraryItemNotFoundException;
 
     boolean returnItem(LibraryItem item) throws LibraryOperationException;
+
+    // one outcome per item in the same order, an item that cannot be lent does not fail the others
+    List<LendingOutcome> borrowItems(Person customer, List<LibraryItem> items, LocalDate issueDate, LocalDate dueDate);
+
+    List<LendingOutcome> returnItems(List<LibraryItem> items);
+
+    // every item is borrowed or none is
+    boolean checkoutItems(Person customer, List<LibraryItem> items, LocalDate issueDate, LocalDate dueDate) throws LibraryItemNotLoanableException, LibraryItemNotFoundException;
+
+    // borrows whichever copy of the title is free and returns it
+    LibraryItem borrowAnyCopy(Person customer, int itemId, LocalDate issueDate, LocalDate dueDate) throws LibraryItemNotLoanableException, LibraryItemNotFoundException;
+
+    // queues the customer for the title, the reservation's ready future completes once a copy is held for them
+    Reservation reserveTitle(Person customer, int itemId) throws LibraryItemNotFoundException;
+
+    // borrows the copy held for the reservation and returns it
+    LibraryItem collectHold(Person customer, Reservation reservation, LocalDate issueDate, LocalDate dueDate) throws LibraryItemNotLoanableException;
+
+    boolean cancelReservation(Reservation reservation);
 }
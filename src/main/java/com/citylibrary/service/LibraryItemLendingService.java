@@ -4,6 +4,7 @@ import com.citylibrary.businessexception.LibraryItemNotFoundException;
 import com.citylibrary.businessexception.LibraryItemNotLoanableException;
 import com.citylibrary.businessexception.LibraryItemNotLoanedReturnedException;
 import com.citylibrary.businessexception.LibraryOperationException;
+import com.citylibrary.enums.LendingOutcome;
 import com.citylibrary.model.actor.Person;
 import com.citylibrary.model.item.LibraryItem;
 import org.slf4j.Logger;
@@ -12,6 +13,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 
 @Service
 public class LibraryItemLendingService implements LendingService {
@@ -44,15 +48,14 @@ public class LibraryItemLendingService implements LendingService {
             throw new LibraryItemNotFoundException(msg);
         }
 
-        if (!item.isLoanable()) {
+        // the status check is repeated atomically by addLoan, which fails when another borrower won the item
+        if (!item.isLoanable() || !dataService.addLoan(customer, item, issueDate, dueDate)) {
             String msg =
                     "Library item [ " + item.getLibraryId() + " " + item.getTitle()
                             + " is not available for loan at this time";
             logger.info(msg);
             throw new LibraryItemNotLoanableException(msg);
         }
-
-        dataService.addLoan(customer, item, issueDate, dueDate);
         return true;
     }
 
@@ -76,9 +79,194 @@ public class LibraryItemLendingService implements LendingService {
         return dataService.returnLoanedItem(item);
     }
 
+    // Parameters are validated and items looked up once for the whole batch. Failures are reported
+    // as outcomes rather than exceptions, and the batch is logged in one line
+    @Override
+    public List<LendingOutcome> borrowItems(final Person customer, final List<LibraryItem> items,
+                                            final LocalDate issueDate, final LocalDate dueDate) {
+        if (customer == null || items == null || issueDate == null || dueDate == null) {
+            String msg =
+                    "One or more invalid method parameter(s) passed to borrowItems. " +
+                            "Customer, Items, IssueDate, DueDate cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        List<LibraryItem> inventory = dataService.getItemsByLibraryIds(libraryIds(items));
+        List<LendingOutcome> outcomes = new ArrayList<>(items.size());
+        int borrowed = 0;
+        for (int i = 0; i < items.size(); i++) {
+            LibraryItem item = items.get(i);
+            if (item == null || inventory.get(i) == null) {
+                outcomes.add(LendingOutcome.NOT_FOUND);
+            } else if (!item.isLoanable() || !dataService.addLoan(customer, item, issueDate, dueDate)) {
+                outcomes.add(LendingOutcome.NOT_LOANABLE);
+            } else {
+                outcomes.add(LendingOutcome.BORROWED);
+                borrowed++;
+            }
+        }
+        logFailures("Customer " + customer.getId() + " borrowed", borrowed, items.size());
+        return outcomes;
+    }
+
+    // returnLoanedItem already fails for an item that is not on loan, no separate check is made
+    @Override
+    public List<LendingOutcome> returnItems(final List<LibraryItem> items) {
+        if (items == null) {
+            String msg =
+                    "One or more invalid method parameter(s) passed to returnItems. " +
+                            "Items cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        List<LendingOutcome> outcomes = new ArrayList<>(items.size());
+        int returned = 0;
+        for (LibraryItem item : items) {
+            if (item == null) {
+                outcomes.add(LendingOutcome.NOT_FOUND);
+            } else if (!dataService.returnLoanedItem(item)) {
+                outcomes.add(LendingOutcome.NOT_LOANED);
+            } else {
+                outcomes.add(LendingOutcome.RETURNED);
+                returned++;
+            }
+        }
+        logFailures("Returned", returned, items.size());
+        return outcomes;
+    }
+
+    @Override
+    public boolean checkoutItems(final Person customer, final List<LibraryItem> items,
+                                 final LocalDate issueDate, final LocalDate dueDate)
+            throws LibraryItemNotLoanableException, LibraryItemNotFoundException {
+        if (customer == null || items == null || items.isEmpty() || items.stream().anyMatch(Objects::isNull) || issueDate == null || dueDate == null) {
+            String msg =
+                    "One or more invalid method parameter(s) passed to checkoutItems. " +
+                            "Customer, Items, IssueDate, DueDate cannot be null or empty";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        List<LibraryItem> inventory = dataService.getItemsByLibraryIds(libraryIds(items));
+        for (int i = 0; i < items.size(); i++) {
+            if (inventory.get(i) == null) {
+                String msg =
+                        "Library item [ " + items.get(i).getLibraryId() + " " + items.get(i).getTitle()
+                                + " not in our inventory";
+                logger.info(msg);
+                throw new LibraryItemNotFoundException(msg);
+            }
+        }
+
+        // a basket with an item already on loan fails before anything is claimed
+        if (!items.stream().allMatch(LibraryItem::isLoanable) || !dataService.addLoans(customer, items, issueDate, dueDate)) {
+            String msg =
+                    "Library items for customer " + customer.getId() + " are not all available for loan at this time";
+            logger.info(msg);
+            throw new LibraryItemNotLoanableException(msg);
+        }
+        return true;
+    }
+
+    // the title is known when the store counts copies of it, whether or not one is free
+    @Override
+    public LibraryItem borrowAnyCopy(final Person customer, final int itemId, final LocalDate issueDate, final LocalDate dueDate)
+            throws LibraryItemNotLoanableException, LibraryItemNotFoundException {
+        if (customer == null || issueDate == null || dueDate == null) {
+            String msg =
+                    "One or more invalid method parameter(s) passed to borrowAnyCopy. " +
+                            "Customer, IssueDate, DueDate cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (dataService.getAvailability(itemId) == null) {
+            String msg = "Title " + itemId + " not in our inventory";
+            logger.info(msg);
+            throw new LibraryItemNotFoundException(msg);
+        }
+
+        LibraryItem copy = dataService.addLoanOfAnyCopy(customer, itemId, issueDate, dueDate);
+        if (copy == null) {
+            String msg = "No copy of title " + itemId + " is available for loan at this time";
+            logger.info(msg);
+            throw new LibraryItemNotLoanableException(msg);
+        }
+        return copy;
+    }
+
+    // A title with copies can be reserved whether or not one is free, a free copy is held at once
+    @Override
+    public Reservation reserveTitle(final Person customer, final int itemId) throws LibraryItemNotFoundException {
+        if (customer == null) {
+            String msg =
+                    "One or more invalid method parameter(s) passed to reserveTitle. " +
+                            "Customer cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (dataService.getAvailability(itemId) == null) {
+            String msg = "Title " + itemId + " not in our inventory";
+            logger.info(msg);
+            throw new LibraryItemNotFoundException(msg);
+        }
+        return dataService.reserve(customer, itemId);
+    }
+
+    @Override
+    public LibraryItem collectHold(final Person customer, final Reservation reservation, final LocalDate issueDate, final LocalDate dueDate)
+            throws LibraryItemNotLoanableException {
+        if (customer == null || reservation == null || issueDate == null || dueDate == null) {
+            String msg =
+                    "One or more invalid method parameter(s) passed to collectHold. " +
+                            "Customer, Reservation, IssueDate, DueDate cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        LibraryItem copy = dataService.addLoanOfHeldItem(customer, reservation, issueDate, dueDate);
+        if (copy == null) {
+            String msg = "No copy of title " + reservation.getItemId() + " is held for customer " + customer.getId()
+                    + ", reservation is " + reservation.getStatus();
+            logger.info(msg);
+            throw new LibraryItemNotLoanableException(msg);
+        }
+        return copy;
+    }
+
+    @Override
+    public boolean cancelReservation(final Reservation reservation) {
+        if (reservation == null) {
+            String msg =
+                    "One or more invalid method parameter(s) passed to cancelReservation. " +
+                            "Reservation cannot be null";
+            logger.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+        return dataService.cancelReservation(reservation);
+    }
+
+    // like the single item calls nothing is logged when every item went through
+    private static void logFailures(final String msg, final int succeeded, final int total) {
+        if (succeeded < total)
+            logger.info(msg + ": " + succeeded + " of " + total + " items");
+    }
+
+    // no item has a negative id, so one stands in for a null item
+    private static int[] libraryIds(final List<LibraryItem> items) {
+        int[] libraryIds = new int[items.size()];
+        for (int i = 0; i < libraryIds.length; i++) {
+            LibraryItem item = items.get(i);
+            libraryIds[i] = item == null ? -1 : item.getLibraryId();
+        }
+        return libraryIds;
+    }
+
     private boolean isItemLoaned(LibraryItem item) {
-        return dataService.getLoan().parallelStream()
-                .anyMatch(loan -> loan.getItem().equals(item));
+        return dataService.isBorrowed(item);
     }
 
 }
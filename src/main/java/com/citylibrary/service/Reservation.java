@@ -0,0 +1,120 @@
+package com.citylibrary.service;
+
+import com.citylibrary.enums.ReservationStatus;
+import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.LibraryItem;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+// A patron's place in the queue for a title, by item id. When a copy is held for the patron the
+// ready future completes with it, so a waiting patron is told rather than polling availability.
+// Status, held copy and hold deadline change together in one compare-and-set, of racing holders,
+// collectors, cancellers and expiries exactly one wins each step. Only the service moves a
+// reservation on, callers read it
+public final class Reservation {
+
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(Reservation.class, "state", State.class);
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private static final State WAITING = new State(ReservationStatus.WAITING, -1, null);
+
+    private final Person customer;
+    private final int itemId;
+    private final Instant placedAt;
+    private final CompletableFuture<LibraryItem> ready = new CompletableFuture<>();
+    private volatile State state = WAITING;
+
+
+    public Reservation(final Person customer, final int itemId, final Instant placedAt) {
+        this.customer = customer;
+        this.itemId = itemId;
+        this.placedAt = placedAt;
+    }
+
+    // the status with the held copy and its deadline, replaced whole
+    private static final class State {
+        private final ReservationStatus status;
+        private final int libraryId;
+        private final Instant heldUntil;
+
+        private State(final ReservationStatus status, final int libraryId, final Instant heldUntil) {
+            this.status = status;
+            this.libraryId = libraryId;
+            this.heldUntil = heldUntil;
+        }
+    }
+
+    public Person getCustomer() {
+        return customer;
+    }
+
+    public int getItemId() {
+        return itemId;
+    }
+
+    public Instant getPlacedAt() {
+        return placedAt;
+    }
+
+    public ReservationStatus getStatus() {
+        return state.status;
+    }
+
+    // the held copy, -1 while waiting
+    public int getLibraryId() {
+        return state.libraryId;
+    }
+
+    public Instant getHeldUntil() {
+        return state.heldUntil;
+    }
+
+    // Completes with the held copy, fails with a CancellationException when the reservation is cancelled while waiting.
+    // Callbacks that are not async run on the thread that holds the copy, after it released its locks
+    public CompletableFuture<LibraryItem> getReady() {
+        return ready.copy();
+    }
+
+    // Holds the copy for the patron until the given time, only while the reservation is waiting. The
+    // ready future is completed separately, once the holder is out of its locks
+    boolean hold(final LibraryItem copy, final Instant until) {
+        return STATE.compareAndSet(this, WAITING, new State(ReservationStatus.HELD, copy.getLibraryId(), until));
+    }
+
+    // tells the patron, a hold that ended meanwhile still hands over its copy and the collect is refused
+    void notifyHeld(final LibraryItem copy) {
+        ready.complete(copy);
+    }
+
+    boolean compareAndSetStatus(final ReservationStatus expected, final ReservationStatus newStatus) {
+        for (State current = state; current.status == expected; current = state) {
+            if (STATE.compareAndSet(this, current, new State(newStatus, current.libraryId, current.heldUntil))) {
+                if (expected == ReservationStatus.WAITING)
+                    ready.cancel(false);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        State current = state;
+        return "Reservation[" +
+                "customer=" + customer.getId() +
+                ", itemId=" + itemId +
+                ", status=" + current.status +
+                (current.status == ReservationStatus.WAITING ? "" : ", libraryId=" + current.libraryId + ", heldUntil=" + current.heldUntil) +
+                "]";
+    }
+}
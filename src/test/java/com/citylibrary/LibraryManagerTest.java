@@ -4,6 +4,7 @@ import com.citylibrary.businessexception.LibraryItemNotFoundException;
 import com.citylibrary.businessexception.LibraryItemNotLoanableException;
 import com.citylibrary.businessexception.LibraryOperationException;
 import com.citylibrary.enums.ItemType;
+import com.citylibrary.enums.LendingOutcome;
 import com.citylibrary.enums.Status;
 import com.citylibrary.manager.LibraryManager;
 import com.citylibrary.model.actor.Customer;
@@ -160,6 +161,33 @@ public class LibraryManagerTest {
                 .borrowItem(customer, frozenCD, today, dueDate);
     }
 
+    @Test
+    public void canBorrowAndReturnItemsInBulk() {
+
+        //Given
+        Person customer = new Customer(1, "Customer 1", "Customer's last name");
+        LocalDate today = LocalDate.now();
+        LocalDate dueDate = today.plusDays(LOAN_PERIOD);
+        List<LibraryItem> basket = items.subList(0, SIZE_TWO);
+        when(mockLendingService.borrowItems(customer, basket, today, dueDate))
+                .thenReturn(List.of(LendingOutcome.BORROWED, LendingOutcome.NOT_LOANABLE));
+        when(mockLendingService.returnItems(basket))
+                .thenReturn(List.of(LendingOutcome.RETURNED, LendingOutcome.NOT_LOANED));
+        when(mockDataService.getItemsByLibraryIds(new int[]{1, 2})).thenReturn(basket);
+
+        //When
+        List<LendingOutcome> borrowed = libraryManager.borrowItems(customer, basket);
+        List<LendingOutcome> returned = libraryManager.returnItems(basket);
+        List<LibraryItem> found = libraryManager.getItemsByLibraryIds(new int[]{1, 2});
+
+        //Then
+        Assertions.assertThat(borrowed).containsExactly(LendingOutcome.BORROWED, LendingOutcome.NOT_LOANABLE);
+        Assertions.assertThat(returned).containsExactly(LendingOutcome.RETURNED, LendingOutcome.NOT_LOANED);
+        Assertions.assertThat(found).isSameAs(basket);
+        Assertions.assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> libraryManager.borrowItems(customer, null));
+    }
+
     @Test
     public void canReturnItem() throws LibraryOperationException {
 
@@ -182,7 +210,7 @@ public class LibraryManagerTest {
     public void getOverDueItems() {
 
         //Given
-        when(mockDataService.getLoan()).thenReturn(loans);
+        when(mockDataService.getLoansDueBefore(LocalDate.now())).thenReturn(loans.subList(0, SIZE_TWO));
 
         //When
         List<Loan> overDueItems = libraryManager.getOverDueItems();
@@ -193,14 +221,33 @@ public class LibraryManagerTest {
                 .hasSize(SIZE_TWO)
                 .allMatch(loan -> loan.getDueDate().isBefore(LocalDate.now()));         //checks due date is in the past
 
-        verify(mockDataService, atMost(INVOKED_ONCE)).getLoan();
+        verify(mockDataService, times(INVOKED_ONCE)).getLoansDueBefore(LocalDate.now());
+        verify(mockDataService, never()).getLoan();
+    }
+
+    @Test
+    public void canGetItemsDueWithinDays() {
+
+        //Given
+        LocalDate today = LocalDate.now();
+        when(mockDataService.getLoansDueBetween(today, today.plusDays(SEVEN_DAYS))).thenReturn(loans.subList(SIZE_TWO, SIZE_THREE));
+
+        //When
+        List<Loan> dueItems = libraryManager.getItemsDueWithin(SEVEN_DAYS);
+
+        //Then
+        Assertions.assertThat(dueItems)
+                .hasSize(1)
+                .allMatch(loan -> !loan.getDueDate().isAfter(today.plusDays(SEVEN_DAYS)));
+
+        verify(mockDataService, times(INVOKED_ONCE)).getLoansDueBetween(today, today.plusDays(SEVEN_DAYS));
     }
 
     @Test
     public void canGetItemBorrowedByUser() {
 
         //Given
-        when(mockDataService.getLoan()).thenReturn(loans);
+        when(mockDataService.getLoansByCustomer(customerOne)).thenReturn(loans);
 
         //When
         List<Loan> borrowedItems = libraryManager.getItemBorrowedByUser(customerOne);
@@ -211,7 +258,9 @@ public class LibraryManagerTest {
                 .hasSize(SIZE_THREE)
                 .allMatch(loan -> loan.getCustomer().equals(customerOne));
 
-        verify(mockDataService, atMost(INVOKED_ONCE))
+        verify(mockDataService, times(INVOKED_ONCE))
+                .getLoansByCustomer(customerOne);
+        verify(mockDataService, never())
                 .getLoan();
     }
 
@@ -219,8 +268,10 @@ public class LibraryManagerTest {
     public void canCheckBookAvailablity() {
 
         //Given
-        when(mockDataService.getCurrentLoanableInventory()).thenReturn(items);
         LibraryItem availableBook = items.get(0);
+        when(mockDataService.findItems(argThat(query -> query.getLibraryId() == availableBook.getLibraryId()
+                && query.getType() == ItemType.BOOK && query.getStatus() == Status.AVAILABLE)))
+                .thenReturn(List.of(availableBook));
 
         //When
         boolean isBookAvailable = libraryManager.isBookAvailable(availableBook);
@@ -230,8 +281,8 @@ public class LibraryManagerTest {
         Assertions.assertThat(isBookAvailable)
                 .isTrue();
 
-        verify(mockDataService, atMost(INVOKED_ONCE))
-                .getCurrentLoanableInventory();
+        verify(mockDataService, times(INVOKED_ONCE)).findItems(any());
+        verify(mockDataService, never()).getCurrentLoanableInventory();
 
     }
 
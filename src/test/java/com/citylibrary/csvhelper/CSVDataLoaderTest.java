@@ -1,5 +1,6 @@
 package com.citylibrary.csvhelper;
 
+import com.citylibrary.config.LibraryConfig;
 import com.citylibrary.model.actor.Person;
 import com.citylibrary.model.item.LibraryItem;
 import org.assertj.core.api.Assertions;
@@ -7,7 +8,14 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
 
 @SpringBootTest
 class CSVDataLoaderTest {
@@ -42,4 +50,126 @@ class CSVDataLoaderTest {
                 .isNotEmpty()
                 .hasSize(3);
     }
-}
\ No newline at end of file
+
+    @Test
+    void canStreamLibraryItemsFromCsv() {
+
+        //Given
+        List<LibraryItem> streamedItems = new ArrayList<>();
+
+        //When
+        csvReader.loadLibraryItems(streamedItems::add);
+
+        //Then
+        Assertions.assertThat(streamedItems)
+                .hasSize(12)
+                .doesNotContainNull()
+                .extracting(LibraryItem::getLibraryId)
+                .doesNotHaveDuplicates();
+    }
+
+    @Test
+    void canStreamCustomersFromCsv() {
+
+        //Given
+        List<Person> streamedCustomers = new ArrayList<>();
+
+        //When
+        csvReader.loadCustomers(streamedCustomers::add);
+
+        //Then
+        Assertions.assertThat(streamedCustomers)
+                .hasSize(3)
+                .extracting(Person::getId)
+                .containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void canLoadLibraryItemsInParallel() {
+
+        //Given
+        ConcurrentLinkedQueue<LibraryItem> parallelItems = new ConcurrentLinkedQueue<>();
+
+        //When
+        csvReader.loadLibraryItemsInParallel(parallelItems::add);
+
+        //Then
+        Assertions.assertThat(parallelItems)
+                .hasSize(12)
+                .containsExactlyInAnyOrderElementsOf(csvReader.getLibraryItemsFromCsv());
+    }
+
+    @Test
+    void canShareWorkAcrossCopies() {
+
+        //Given
+
+        //When
+        List<LibraryItem> libraryItemList = csvReader.getLibraryItemsFromCsv();
+
+        //Then
+        Assertions.assertThat(libraryItemList)
+                .filteredOn(item -> item.getItemId() == 4)
+                .hasSize(3)
+                .extracting(LibraryItem::getWork)
+                .containsOnly(libraryItemList.get(5).getWork());
+        Assertions.assertThat(libraryItemList.get(5).getDescription())
+                .isEqualTo("Description for Introduction to Algorithms");
+    }
+
+    @Test
+    void canReportAMalformedOrMissingFile() throws IOException {
+
+        //Given
+        Path malformed = Files.createTempFile("library", ".csv");
+        Files.writeString(malformed, "UniqueID,BookID,Type,Title\n1,5,DVD,Pi\n2,six,VHS,Pi\n3,7,DVD,Frozen\n");
+        LibraryConfig missingFiles = new LibraryConfig();
+        missingFiles.setLibraryItemFileName("data/missing-library.csv");
+        missingFiles.setCustomerFileName("data/missing-customers.csv");
+        CSVDataLoader missing = new CSVDataLoader(missingFiles);
+        List<LibraryItem> items = new ArrayList<>();
+        List<Person> customers = new ArrayList<>();
+
+        //When
+        boolean malformedLoaded = csvReader.loadLibraryItems(malformed, 1, items::add);
+        boolean missingItemsLoaded = missing.loadLibraryItems(items::add);
+        boolean missingCustomersLoaded = missing.loadCustomers(customers::add);
+        Files.delete(malformed);
+
+        //Then
+        Assertions.assertThat(malformedLoaded).isFalse();
+        Assertions.assertThat(items).hasSize(1);
+        Assertions.assertThat(missingItemsLoaded).isFalse();
+        Assertions.assertThat(missingCustomersLoaded).isFalse();
+        Assertions.assertThat(customers).isEmpty();
+        Assertions.assertThat(csvReader.loadCustomers(customers::add)).isTrue();
+    }
+
+    @Test
+    void canReadBackslashesAlikeOnBothPaths() throws IOException {
+
+        //Given
+        Path catalog = Files.createTempFile("library", ".csv");
+        Files.writeString(catalog, "UniqueID,BookID,Type,Title\n"
+                + "1,1,Book,AC\\DC\n"
+                + "2,2,DVD,\"Ends in \\, \"\"Quoted\\\"\" \\n\\\"\n");
+        List<LibraryItem> mapped = new ArrayList<>();
+        List<LibraryItem> streamed = new ArrayList<>();
+
+        //When
+        boolean mappedLoaded = csvReader.loadLibraryItems(catalog, 1, mapped::add);
+        boolean streamedLoaded;
+        try (InputStream datafile = Files.newInputStream(catalog)) {
+            streamedLoaded = csvReader.streamLibraryItems(datafile, streamed::add);
+        }
+        Files.delete(catalog);
+
+        //Then
+        Assertions.assertThat(mappedLoaded).isTrue();
+        Assertions.assertThat(streamedLoaded).isTrue();
+        Assertions.assertThat(mapped).extracting(LibraryItem::getTitle)
+                .containsExactly("AC\\DC", "Ends in \\, \"Quoted\\\" \\n\\");
+        Assertions.assertThat(streamed).extracting(LibraryItem::getTitle)
+                .containsExactlyElementsOf(mapped.stream().map(LibraryItem::getTitle).collect(Collectors.toList()));
+    }
+}
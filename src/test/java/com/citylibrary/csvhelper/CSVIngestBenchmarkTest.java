@@ -0,0 +1,144 @@
+package com.citylibrary.csvhelper;
+
+import com.citylibrary.config.LibraryConfig;
+import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.LibraryItem;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+// Compares the CSVTokenizer ingest path with the opencsv path on a generated catalog.
+// Both paths must produce the same items. The timed run is tagged benchmark and left out of the build
+class CSVIngestBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CSVIngestBenchmarkTest.class);
+
+    private static final int ROWS = 2_000;
+    private static final int BENCHMARK_ROWS = 200_000;
+    private static final int COPIES_PER_WORK = 8;
+    private static final int ROUNDS = 5;
+    private static final String[] TYPES = {"Book", "DVD", "VHS"};
+
+    private CSVDataLoader csvDataLoader;
+    private Path catalog;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        csvDataLoader = new CSVDataLoader(new LibraryConfig());
+        catalog = Files.createTempFile("library", ".csv");
+    }
+
+    private void writeCatalog(final int rows) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(catalog, StandardCharsets.UTF_8)) {
+            writer.write("UniqueID,BookID,Type,Title\n");
+            for (int libraryId = 1; libraryId <= rows; libraryId++) {
+                int itemId = (libraryId - 1) / COPIES_PER_WORK + 1;
+                writer.write(libraryId + "," + itemId + "," + TYPES[itemId % TYPES.length]
+                        + ",Title of work " + itemId + "\n");
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(catalog);
+    }
+
+    @Test
+    void tokenizerMatchesOpenCsv() throws IOException {
+
+        //Given
+        writeCatalog(ROWS);
+        List<LibraryItem> openCsvItems = new ArrayList<>();
+        List<LibraryItem> tokenizerItems = new ArrayList<>();
+
+        //When
+        try (InputStream datafile = Files.newInputStream(catalog)) {
+            csvDataLoader.streamLibraryItems(datafile, openCsvItems::add);
+        }
+        csvDataLoader.loadLibraryItems(catalog, 1, tokenizerItems::add);
+
+        //Then
+        assertSameItems(tokenizerItems, openCsvItems, ROWS);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void tokenizerIngestIsTimedAgainstOpenCsv() throws IOException {
+
+        //Given
+        writeCatalog(BENCHMARK_ROWS);
+        List<LibraryItem> openCsvItems = new ArrayList<>();
+        List<LibraryItem> tokenizerItems = new ArrayList<>();
+
+        //When
+        long openCsvNanos = Long.MAX_VALUE;
+        long tokenizerNanos = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            openCsvItems.clear();
+            long start = System.nanoTime();
+            try (InputStream datafile = Files.newInputStream(catalog)) {
+                csvDataLoader.streamLibraryItems(datafile, openCsvItems::add);
+            }
+            openCsvNanos = Math.min(openCsvNanos, System.nanoTime() - start);
+
+            tokenizerItems.clear();
+            start = System.nanoTime();
+            csvDataLoader.loadLibraryItems(catalog, 1, tokenizerItems::add);
+            tokenizerNanos = Math.min(tokenizerNanos, System.nanoTime() - start);
+        }
+        logger.info("Ingest of {} rows, best of {}: opencsv {} ms, tokenizer {} ms",
+                BENCHMARK_ROWS, ROUNDS, openCsvNanos / 1_000_000, tokenizerNanos / 1_000_000);
+
+        //Then
+        assertSameItems(tokenizerItems, openCsvItems, BENCHMARK_ROWS);
+    }
+
+    @Test
+    void tokenizerMatchesOpenCsvForCustomers() throws Exception {
+
+        //Given
+        Path customers = Paths.get(getClass().getClassLoader().getResource("data/customers.csv").toURI());
+        List<Person> openCsvCustomers = new ArrayList<>();
+        List<Person> tokenizerCustomers = new ArrayList<>();
+
+        //When
+        try (InputStream datafile = Files.newInputStream(customers)) {
+            csvDataLoader.streamCustomers(datafile, openCsvCustomers::add);
+        }
+        csvDataLoader.loadCustomers(customers, tokenizerCustomers::add);
+
+        //Then
+        Assertions.assertThat(tokenizerCustomers)
+                .usingElementComparatorOnFields("id", "firstName", "lastName")
+                .containsExactlyElementsOf(openCsvCustomers);
+    }
+
+    private static void assertSameItems(final List<LibraryItem> tokenizerItems, final List<LibraryItem> openCsvItems, final int rows) {
+        Assertions.assertThat(tokenizerItems).hasSize(rows);
+        Assertions.assertThat(openCsvItems).hasSize(rows);
+        for (int i = 0; i < rows; i++) {
+            LibraryItem expected = openCsvItems.get(i);
+            LibraryItem actual = tokenizerItems.get(i);
+            Assertions.assertThat(actual.getLibraryId()).isEqualTo(expected.getLibraryId());
+            Assertions.assertThat(actual.getItemId()).isEqualTo(expected.getItemId());
+            Assertions.assertThat(actual.getType()).isEqualTo(expected.getType());
+            Assertions.assertThat(actual.getTitle()).isEqualTo(expected.getTitle());
+            Assertions.assertThat(actual.getDescription()).isEqualTo(expected.getDescription());
+        }
+    }
+}
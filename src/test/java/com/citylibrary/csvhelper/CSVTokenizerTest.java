@@ -0,0 +1,110 @@
+package com.citylibrary.csvhelper;
+
+import com.citylibrary.enums.ItemType;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+class CSVTokenizerTest {
+
+    private static final ItemType[] TYPES = ItemType.values();
+
+    @Test
+    void canReadLibraryRecords() {
+
+        //Given
+        CSVTokenizer tokenizer = tokenizer("1,5,DVD,Pi\r\n2,6,vhs,\"Pi, \"\"the movie\"\"\"\n\n3,1,Book,\u00DCber\n");
+
+        //When
+        tokenizer.nextRecord();
+        int libraryId = tokenizer.nextInt();
+        int itemId = tokenizer.nextInt();
+        ItemType type = tokenizer.nextEnum(TYPES);
+        String title = tokenizer.nextString();
+
+        //Then
+        Assertions.assertThat(libraryId).isEqualTo(1);
+        Assertions.assertThat(itemId).isEqualTo(5);
+        Assertions.assertThat(type).isEqualTo(ItemType.DVD);
+        Assertions.assertThat(title).isEqualTo("Pi");
+
+        Assertions.assertThat(tokenizer.nextRecord()).isTrue();
+        Assertions.assertThat(tokenizer.nextInt()).isEqualTo(2);
+        tokenizer.skipField();
+        Assertions.assertThat(tokenizer.nextEnum(TYPES)).isEqualTo(ItemType.VHS);
+        Assertions.assertThat(tokenizer.nextString()).isEqualTo("Pi, \"the movie\"");
+
+        Assertions.assertThat(tokenizer.nextRecord()).isTrue();
+        tokenizer.skipField();
+        tokenizer.skipField();
+        Assertions.assertThat(tokenizer.nextEnum(TYPES)).isEqualTo(ItemType.BOOK);
+        Assertions.assertThat(tokenizer.nextString()).isEqualTo("\u00DCber");
+
+        Assertions.assertThat(tokenizer.nextRecord()).isFalse();
+    }
+
+    @Test
+    void canReuseCandidateForRepeatedValue() {
+
+        //Given
+        String candidate = new String("Introduction to Algorithms");
+        CSVTokenizer tokenizer = tokenizer("Introduction to Algorithms,Introduction to Algorithms 2\n");
+
+        //When
+        tokenizer.nextRecord();
+        String same = tokenizer.nextString(candidate);
+        String different = tokenizer.nextString(candidate);
+
+        //Then
+        Assertions.assertThat(same).isSameAs(candidate);
+        Assertions.assertThat(different).isEqualTo("Introduction to Algorithms 2");
+    }
+
+    @Test
+    void canSkipUnreadFieldsAndUnknownTypes() {
+
+        //Given
+        CSVTokenizer tokenizer = tokenizer("1,2,Tape,\"multi\nline\",extra\n4,5,CD,Frozen");
+
+        //When
+        tokenizer.nextRecord();
+        tokenizer.nextInt();
+        tokenizer.nextInt();
+        ItemType unknown = tokenizer.nextEnum(TYPES);
+
+        //Then
+        Assertions.assertThat(unknown).isNull();
+        Assertions.assertThat(tokenizer.nextRecord()).isTrue();
+        Assertions.assertThat(tokenizer.nextInt()).isEqualTo(4);
+    }
+
+    @Test
+    void cannotReadInvalidNumbers() {
+        CSVTokenizer tokenizer = tokenizer("12a,1\n");
+        tokenizer.nextRecord();
+
+        Assertions.assertThatExceptionOfType(NumberFormatException.class)
+                .isThrownBy(tokenizer::nextInt)
+                .withMessage("For input string: \"12a\"");
+    }
+
+    @Test
+    void cannotReadMissingFields() {
+        CSVTokenizer tokenizer = tokenizer("1,2\n");
+        tokenizer.nextRecord();
+        tokenizer.nextInt();
+        tokenizer.nextInt();
+
+        Assertions.assertThatExceptionOfType(IllegalStateException.class)
+                .isThrownBy(tokenizer::nextString);
+    }
+
+    private static CSVTokenizer tokenizer(final String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        return new CSVTokenizer(direct);
+    }
+}
@@ -0,0 +1,78 @@
+package com.citylibrary.csvhelper;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class MappedCSVFileTest {
+
+    private Path csv;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        StringBuilder content = new StringBuilder("UniqueID,BookID,Type,Title\n");
+        for (int i = 1; i <= 200; i++) {
+            if (i % 3 == 0)
+                content.append(i).append(",1,Book,\"Quoted, \"\"multi\"\"\nline title ").append(i).append("\"\n");
+            else
+                content.append(i).append(",2,DVD,Plain title ").append(i).append('\n');
+        }
+        csv = Files.createTempFile("library", ".csv");
+        Files.write(csv, content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(csv);
+    }
+
+    @Test
+    void canSplitWithoutBreakingQuotedRecords() throws IOException {
+
+        //Given
+        List<String[]> records = new ArrayList<>();
+
+        //When
+        try (MappedCSVFile csvFile = new MappedCSVFile(csv)) {
+            List<MappedCSVFile.Chunk> chunks = csvFile.split(1, 16);
+
+            Assertions.assertThat(chunks).hasSizeGreaterThan(1);
+            for (MappedCSVFile.Chunk chunk : chunks) {
+                CSVTokenizer tokenizer = new CSVTokenizer(csvFile.map(chunk));
+                while (tokenizer.nextRecord()) {
+                    records.add(new String[]{
+                            tokenizer.nextString(), tokenizer.nextString(), tokenizer.nextString(), tokenizer.nextString()});
+                }
+            }
+        }
+
+        //Then
+        Assertions.assertThat(records)
+                .hasSize(200)
+                .allMatch(record -> record.length == 4);
+        Assertions.assertThat(records.get(2)[3])
+                .isEqualTo("Quoted, \"multi\"\nline title 3");
+    }
+
+    @Test
+    void canSplitHeaderOnlyFile() throws IOException {
+
+        //Given
+        Files.write(csv, "UniqueID,BookID,Type,Title\n".getBytes(StandardCharsets.UTF_8));
+
+        //When
+        try (MappedCSVFile csvFile = new MappedCSVFile(csv)) {
+
+            //Then
+            Assertions.assertThat(csvFile.split(1, 4)).isEmpty();
+        }
+    }
+}
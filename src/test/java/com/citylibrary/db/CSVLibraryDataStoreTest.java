@@ -0,0 +1,325 @@
+package com.citylibrary.db;
+
+import com.citylibrary.enums.ItemType;
+import com.citylibrary.enums.Status;
+import com.citylibrary.model.actor.Customer;
+import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.LibraryItem;
+import com.citylibrary.model.item.Loan;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static com.citylibrary.constant.TestConstants.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class CSVLibraryDataStoreTest {
+
+    private static final long SOURCE_VERSION = 42L;
+
+    private CSVLibraryDataStore dataStore;
+    private Path snapshot;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        dataStore = new CSVLibraryDataStore();
+        snapshot = Files.createTempDirectory("snapshot").resolve("library.snapshot");
+
+        LibraryItem book = new LibraryItem.LibraryItemBuilder(1, 1, ItemType.BOOK, "Introduction to Algorithms")
+                .withDescription("Description for Introduction to Algorithms")
+                .withShelftId(12)
+                .build();
+        LibraryItem dvd = new LibraryItem.LibraryItemBuilder(2, 2, ItemType.DVD, "Pi").build();
+        Person customer = new Customer(1, "Customer-1", "Customer-1-LastName");
+
+        dataStore.putLibraryItem(book);
+        dataStore.putLibraryItem(dvd);
+        dataStore.putCustomer(customer);
+
+        book.setItemStatus(Status.LOANED);
+        dataStore.addLoan(new Loan(customer, book, LocalDate.now(), LocalDate.now().plusDays(SEVEN_DAYS)));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshot);
+        Files.deleteIfExists(snapshot.getParent());
+    }
+
+    @Test
+    public void canRestoreFromSnapshot() throws IOException {
+
+        //Given
+        dataStore.writeSnapshot(snapshot, SOURCE_VERSION);
+        CSVLibraryDataStore restored = new CSVLibraryDataStore();
+
+        //When
+        boolean isRestored = restored.restoreSnapshot(snapshot, SOURCE_VERSION);
+
+        //Then
+        assertThat(isRestored).isTrue();
+        assertThat(restored.getLibraryItems()).hasSize(SIZE_TWO);
+        assertThat(restored.getCustomers()).hasSize(1);
+
+        LibraryItem book = restored.getLibraryItem(1);
+        assertThat(book.getItemStatus()).isEqualTo(Status.LOANED);
+        assertThat(book.getShelfId()).isEqualTo(12);
+        assertThat(book.getDescription()).isEqualTo("Description for Introduction to Algorithms");
+        assertThat(restored.getLoans())
+                .hasSize(1)
+                .allMatch(loan -> loan.getItem() == book
+                        && loan.getCustomer() == restored.getCustomer(1)
+                        && loan.getDueDate().equals(LocalDate.now().plusDays(SEVEN_DAYS)));
+    }
+
+    @Test
+    public void canRestoreSharedWorkFromSnapshot() throws IOException {
+
+        //Given
+        LibraryItem copy = new LibraryItem.LibraryItemBuilder(3, dataStore.getLibraryItem(1).getWork()).build();
+        dataStore.putLibraryItem(copy);
+        dataStore.writeSnapshot(snapshot, SOURCE_VERSION);
+        CSVLibraryDataStore restored = new CSVLibraryDataStore();
+
+        //When
+        restored.restoreSnapshot(snapshot, SOURCE_VERSION);
+
+        //Then
+        assertThat(restored.getLibraryItem(3).getWork())
+                .isSameAs(restored.getLibraryItem(1).getWork());
+        assertThat(restored.getLibraryItem(3).getItemStatus())
+                .isEqualTo(Status.AVAILABLE);
+    }
+
+    @Test
+    public void canIndexLoansByLibraryId() {
+
+        //Given
+        Loan loan = dataStore.getLoan(1);
+        Loan duplicate = new Loan(loan.getCustomer(), loan.getItem(), LocalDate.now(), LocalDate.now());
+
+        //When
+        boolean isDuplicateAdded = dataStore.addLoan(duplicate);
+        boolean isDuplicateRemoved = dataStore.removeLoan(duplicate);
+
+        //Then
+        assertThat(isDuplicateAdded).isFalse();
+        assertThat(isDuplicateRemoved).isFalse();
+        assertThat(dataStore.getLoan(1)).isEqualTo(loan).isNotSameAs(loan);        // built on every read
+        assertThat(dataStore.getLoan(1).getItem()).isSameAs(loan.getItem());
+        assertThat(dataStore.getLoan(2)).isNull();
+        assertThat(dataStore.isOnLoan(1)).isTrue();
+        assertThat(dataStore.isOnLoan(2)).isFalse();
+        assertThat(dataStore.removeLoan(new Loan(loan.getCustomer(), new LibraryItem.LibraryItemBuilder(1, loan.getItem().getWork()).build(),
+                loan.getIssueDate(), loan.getDueDate()))).isFalse();               // compares item instances
+        assertThat(dataStore.replaceLoan(duplicate, loan)).isFalse();
+        assertThat(dataStore.replaceLoan(loan, duplicate)).isTrue();
+        assertThat(dataStore.getLoansDueBefore(LocalDate.now().plusDays(1))).containsExactly(duplicate);
+        assertThat(dataStore.getLoansByCustomer(1)).containsExactly(duplicate);
+        assertThat(dataStore.replaceLoan(duplicate, loan)).isTrue();
+        assertThat(dataStore.removeLoan(loan)).isTrue();
+        assertThat(dataStore.getLoan(1)).isNull();
+        assertThat(dataStore.getLoans()).isEmpty();
+        assertThat(dataStore.getLoansByCustomer(1)).isEmpty();
+    }
+
+    @Test
+    public void canIndexLoansByCustomer() {
+
+        //Given
+        Person reloadedCustomer = new Customer(1, "Customer-1", "Renamed");
+        LibraryItem dvd = dataStore.getLibraryItem(2);
+        Loan dvdLoan = new Loan(reloadedCustomer, dvd, LocalDate.now(), LocalDate.now().plusDays(SEVEN_DAYS));
+
+        //When
+        dataStore.addLoan(dvdLoan);
+
+        //Then
+        assertThat(reloadedCustomer).isEqualTo(dataStore.getCustomer(1));
+        assertThat(dataStore.getLoansByCustomer(1))
+                .hasSize(SIZE_TWO)
+                .extracting(Loan::getItem)
+                .containsExactlyInAnyOrder(dataStore.getLibraryItem(1), dvd);
+        assertThat(dataStore.getLoansByCustomer(2)).isEmpty();
+
+        dataStore.removeLoan(dvdLoan);
+        dataStore.removeLoan(dataStore.getLoan(1));
+        assertThat(dataStore.getLoansByCustomer(1)).isEmpty();
+    }
+
+    @Test
+    public void canIndexLoansByDueDate() {
+
+        //Given
+        LocalDate today = LocalDate.now();
+        Person customer = dataStore.getCustomer(1);
+        LibraryItem dvd = dataStore.getLibraryItem(2);
+        Loan overdueLoan = new Loan(customer, dvd, today.minusDays(SEVEN_DAYS), today.minusDays(1));
+        dataStore.addLoan(overdueLoan);
+
+        //When
+        Collection<Loan> overdue = dataStore.getLoansDueBefore(today);
+        Collection<Loan> dueThisWeek = dataStore.getLoansDueBetween(today, today.plusDays(SEVEN_DAYS));
+
+        //Then
+        assertThat(overdue).containsExactly(overdueLoan);
+        assertThat(dueThisWeek).containsExactly(dataStore.getLoan(1));
+        assertThat(dataStore.getLoansDueBetween(today.minusDays(SEVEN_DAYS), today.plusDays(SEVEN_DAYS)))
+                .containsExactly(overdueLoan, dataStore.getLoan(1));                 // ordered by due date
+        assertThat(dataStore.getLoansDueBetween(today, today.minusDays(1))).isEmpty();
+
+        dataStore.removeLoan(overdueLoan);
+        assertThat(dataStore.getLoansDueBefore(today)).isEmpty();
+    }
+
+    @Test
+    public void canSearchItemsByTitleThroughIndex() {
+
+        //Given
+        LibraryItem book = dataStore.getLibraryItem(1);
+        LibraryItem copy = new LibraryItem.LibraryItemBuilder(3, book.getWork()).build();
+        dataStore.putLibraryItem(copy);
+
+        //When
+        Collection<LibraryItem> bySubstring = dataStore.getItemsByTitle("to Algo", false);
+        Collection<LibraryItem> byWrongCase = dataStore.getItemsByTitle("to algo", false);
+        Collection<LibraryItem> ignoringCase = dataStore.getItemsByTitle("TO ALGO", true);
+
+        //Then
+        assertThat(bySubstring).containsExactly(book, copy);
+        assertThat(byWrongCase).isEmpty();
+        assertThat(ignoringCase).containsExactly(book, copy);
+        assertThat(dataStore.getItemsByTitle("Pi", false))                             // shorter than a trigram
+                .containsExactly(dataStore.getLibraryItem(2));
+        assertThat(dataStore.getItemsByTitle("Algorithms for", false)).isEmpty();
+
+        dataStore.removeLibraryItem(3);
+        dataStore.replaceLibraryItem(dataStore.getLibraryItem(1), new LibraryItem.LibraryItemBuilder(1, 1, ItemType.BOOK, "Algorithm Design").build());
+        assertThat(dataStore.getItemsByTitle("to Algo", false)).isEmpty();
+        assertThat(dataStore.getItemsByTitle("algorithm", true))
+                .extracting(LibraryItem::getTitle)
+                .containsExactly("Algorithm Design");
+
+        dataStore.clearLibraryItems();
+        assertThat(dataStore.getItemsByTitle("Algorithm", false)).isEmpty();
+    }
+
+    @Test
+    public void canRebuildCatalogOffToTheSide() {
+
+        //Given
+        LibraryItem book = dataStore.getLibraryItem(1);
+        LibraryItem reloaded = new LibraryItem.LibraryItemBuilder(1, 1, ItemType.BOOK, "Introduction to Algorithms").build();
+        long version = dataStore.getVersion();
+
+        //When
+        dataStore.rebuild(catalog -> {
+            catalog.putLibraryItem(reloaded);
+            catalog.putCustomer(new Customer(2, "Customer-2", "Customer-2-LastName"));
+
+            // the live store keeps serving the old catalog until the new one is complete
+            assertThat(dataStore.getLibraryItem(1)).isSameAs(book);
+            assertThat(dataStore.getLibraryItem(2)).isNotNull();
+            assertThat(dataStore.isOnLoan(1)).isTrue();
+        });
+
+        //Then
+        assertThat(dataStore.getVersion()).isEqualTo(version + 1);
+        assertThat(dataStore.getLibraryItems()).containsExactly(reloaded);
+        assertThat(dataStore.getItemsByTitle("Algorithms", false)).containsExactly(reloaded);
+        assertThat(dataStore.getCustomer(1)).isNull();
+        assertThat(dataStore.getCustomer(2)).isNotNull();
+        assertThat(dataStore.getLoans()).isEmpty();
+        assertThat(dataStore.addLoan(dataStore.getCustomer(2), reloaded, LocalDate.now(), LocalDate.now())).isTrue();
+    }
+
+    @Test
+    public void cannotPublishCorruptSnapshot() throws IOException {
+
+        //Given
+        dataStore.writeSnapshot(snapshot, SOURCE_VERSION);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        Files.write(snapshot, Arrays.copyOf(bytes, bytes.length - 1));      // END record cut off
+        long version = dataStore.getVersion();
+
+        //When
+        Throwable thrown = catchThrowable(() -> dataStore.restoreSnapshot(snapshot, SOURCE_VERSION));
+
+        //Then
+        assertThat(thrown).isInstanceOf(IOException.class);
+        assertThat(dataStore.getVersion()).isEqualTo(version);
+        assertThat(dataStore.getLibraryItems()).hasSize(SIZE_TWO);
+        assertThat(dataStore.getLoans()).hasSize(1);
+    }
+
+    @Test
+    public void cannotRestoreSnapshotWithCorruptOrdinal() throws IOException {
+
+        //Given
+        dataStore.writeSnapshot(snapshot, SOURCE_VERSION);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[19] = 9;                                                      // type of the first work, after header, tag and item id
+        Files.write(snapshot, bytes);
+        CSVLibraryDataStore restored = new CSVLibraryDataStore();
+
+        //When
+        Throwable thrown = catchThrowable(() -> restored.restoreSnapshot(snapshot, SOURCE_VERSION));
+
+        //Then
+        assertThat(thrown).isInstanceOf(IOException.class).hasMessageContaining("ItemType ordinal 9");
+        assertThat(restored.getLibraryItems()).isEmpty();
+    }
+
+    @Test
+    public void cannotRestoreSnapshotWithCorruptIdOrLength() throws IOException {
+
+        //Given
+        dataStore.writeSnapshot(snapshot, SOURCE_VERSION);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        byte[] zeroWorkId = bytes.clone();
+        ByteBuffer.wrap(zeroWorkId).putInt(15, 0);                          // id of the first work, after header and tag
+        byte[] hugeTitle = bytes.clone();
+        ByteBuffer.wrap(hugeTitle).putInt(20, Integer.MAX_VALUE);           // length of its title, after the type
+        CSVLibraryDataStore restored = new CSVLibraryDataStore();
+
+        //When
+        Files.write(snapshot, zeroWorkId);
+        Throwable zeroWorkIdThrown = catchThrowable(() -> restored.restoreSnapshot(snapshot, SOURCE_VERSION));
+        Files.write(snapshot, hugeTitle);
+        Throwable hugeTitleThrown = catchThrowable(() -> restored.restoreSnapshot(snapshot, SOURCE_VERSION));
+
+        //Then
+        assertThat(zeroWorkIdThrown).isInstanceOf(IOException.class).hasMessageContaining("invalid work id 0");
+        assertThat(hugeTitleThrown).isInstanceOf(IOException.class).hasMessageContaining("string length");
+        assertThat(restored.getLibraryItems()).isEmpty();
+    }
+
+    @Test
+    public void cannotRestoreFromStaleSnapshot() throws IOException {
+
+        //Given
+        dataStore.writeSnapshot(snapshot, SOURCE_VERSION);
+        CSVLibraryDataStore restored = new CSVLibraryDataStore();
+
+        //When
+        boolean isRestored = restored.restoreSnapshot(snapshot, SOURCE_VERSION + 1);
+
+        //Then
+        assertThat(isRestored).isFalse();
+        assertThat(restored.getLibraryItems()).isEmpty();
+    }
+
+    @Test
+    public void cannotRestoreFromMissingSnapshot() throws IOException {
+        assertThat(new CSVLibraryDataStore().restoreSnapshot(snapshot, SOURCE_VERSION)).isFalse();
+    }
+}
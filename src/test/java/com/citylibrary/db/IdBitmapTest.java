@@ -0,0 +1,112 @@
+package com.citylibrary.db;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static com.citylibrary.constant.TestConstants.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class IdBitmapTest {
+
+    private static final int CHUNK = 1 << 16;
+
+    @Test
+    public void canGrowFromSparseToDenseChunks() {
+
+        //Given
+        IdBitmap bitmap = new IdBitmap();
+
+        //When
+        IntStream.range(0, 5000).forEach(id -> bitmap.add(id * SIZE_TWO));
+        bitmap.add(CHUNK * SIZE_THREE + SIZE_FIVE);
+        bitmap.add(SIZE_TWO);
+        bitmap.remove(SIZE_TWO * SIZE_TWO);
+        bitmap.remove(SIZE_THREE);
+
+        //Then
+        assertThat(bitmap.cardinality()).isEqualTo(5000);
+        assertThat(bitmap.contains(SIZE_TWO)).isTrue();
+        assertThat(bitmap.contains(SIZE_TWO * SIZE_TWO)).isFalse();
+        assertThat(bitmap.contains(CHUNK * SIZE_THREE + SIZE_FIVE)).isTrue();
+        assertThat(bitmap.contains(CHUNK + SIZE_FIVE)).isFalse();
+        assertThat(bitmap.contains(-1)).isFalse();
+        assertThat(bitmap.toArray()).isSorted().endsWith(9998, CHUNK * SIZE_THREE + SIZE_FIVE);
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> bitmap.add(-1));
+    }
+
+    @Test
+    public void canCombineSparseAndDenseChunks() {
+
+        //Given
+        IdBitmap evens = new IdBitmap();
+        IdBitmap thirds = new IdBitmap();
+        IntStream.range(0, CHUNK * SIZE_TWO).filter(id -> id % SIZE_TWO == 0).forEach(evens::add);
+        IntStream.range(CHUNK, CHUNK * SIZE_THREE).filter(id -> id % SIZE_THREE == 0).forEach(thirds::add);
+        IdBitmap few = new IdBitmap();
+        IntStream.of(SIZE_TWO, SIZE_THREE, CHUNK + SIZE_TWELVE, CHUNK * SIZE_FIVE).forEach(few::add);
+
+        //When
+        IdBitmap both = evens.and(thirds);
+        IdBitmap either = evens.or(thirds);
+        IdBitmap evensOnly = evens.andNot(thirds);
+        IdBitmap fewEvens = few.and(evens);
+        IdBitmap fewNotEven = few.andNot(evens);
+
+        //Then
+        assertThat(both.toArray()).isEqualTo(IntStream.range(CHUNK, CHUNK * SIZE_TWO)
+                .filter(id -> id % (SIZE_TWO * SIZE_THREE) == 0).toArray());
+        assertThat(either.cardinality()).isEqualTo(CHUNK + CHUNK * SIZE_TWO / SIZE_THREE - both.cardinality());
+        assertThat(evensOnly.cardinality()).isEqualTo(evens.cardinality() - both.cardinality());
+        assertThat(fewEvens.toArray()).containsExactly(SIZE_TWO, CHUNK + SIZE_TWELVE);
+        assertThat(fewNotEven.toArray()).containsExactly(SIZE_THREE, CHUNK * SIZE_FIVE);
+        assertThat(new IdBitmap().and(evens).isEmpty()).isTrue();
+
+        evens.remove(SIZE_TWO);
+        assertThat(fewEvens.contains(SIZE_TWO)).isTrue();
+    }
+
+    @Test
+    public void canSetAndClearBitsConcurrently() {
+
+        //Given
+        IdBitmap bitmap = new IdBitmap();
+        int count = CHUNK * SIZE_TWO;
+
+        //When
+        IntStream.range(0, count).parallel().forEach(bitmap::add);
+        IntStream.range(0, count).parallel().filter(id -> id % SIZE_THREE != 0).forEach(bitmap::remove);
+
+        //Then
+        assertThat(bitmap.cardinality()).isEqualTo((count + SIZE_TWO) / SIZE_THREE);
+        assertThat(IntStream.of(bitmap.toArray()).allMatch(id -> id % SIZE_THREE == 0)).isTrue();
+    }
+
+    @Test
+    public void canWriteManyChunksConcurrentlyWhileTheDirectoryGrows() {
+
+        //Given
+        IdBitmap sparse = new IdBitmap();
+        IdBitmap dense = new IdBitmap(true);
+        int[] ids = IntStream.range(0, CHUNK).map(id -> (id % 1000) * CHUNK + id / 1000).toArray();
+
+        //When
+        IntStream.of(ids).parallel().forEach(id -> {
+            sparse.add(id);
+            dense.add(id);
+        });
+        IntStream.of(ids).parallel().filter(id -> id % SIZE_TWO == 0).forEach(sparse::remove);
+
+        //Then
+        int[] sorted = IntStream.of(ids).sorted().toArray();
+        assertThat(dense.cardinality()).isEqualTo(CHUNK);
+        assertThat(dense.toArray()).isEqualTo(sorted);
+        assertThat(sparse.toArray()).isEqualTo(IntStream.of(sorted).filter(id -> id % SIZE_TWO != 0).toArray());
+
+        dense.clear();
+        assertThat(dense.isEmpty()).isTrue();
+        assertThat(dense.add(ids[SIZE_FIVE])).isTrue();
+        assertThat(dense.toArray()).containsExactly(ids[SIZE_FIVE]);
+    }
+}
@@ -0,0 +1,74 @@
+package com.citylibrary.db;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static com.citylibrary.constant.TestConstants.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class IntObjectMapTest {
+
+    private final IntObjectMap<String> map = new IntObjectMap<>();
+
+    @Test
+    public void canPutGetAndRemoveByKey() {
+
+        //Given
+        String pi = new String("Pi");
+
+        //When
+        String previous = map.put(4, "WarGames");
+        String displaced = map.put(4, pi);
+
+        //Then
+        assertThat(previous).isNull();
+        assertThat(displaced).isEqualTo("WarGames");
+        assertThat(map.get(4)).isSameAs(pi);
+        assertThat(map.get(5)).isNull();
+        assertThat(map.putIfAbsent(4, "Hackers")).isSameAs(pi);
+        assertThat(map.replace(4, new String("Pi"), "Hackers")).isFalse();         // compares instances
+        assertThat(map.replace(4, pi, "Hackers")).isTrue();
+        assertThat(map.remove(4, pi)).isFalse();
+        assertThat(map.remove(4)).isEqualTo("Hackers");
+        assertThat(map.size()).isZero();
+    }
+
+    @Test
+    public void canStoreSparseKeys() {
+
+        //Given
+        int farKey = Integer.MAX_VALUE;
+
+        //When
+        map.put(1, "Introduction to Algorithms");
+        map.put(farKey, "Pi");
+
+        //Then
+        assertThat(map.get(farKey)).isEqualTo("Pi");
+        assertThat(map.get(-1)).isNull();
+        assertThat(map.values()).containsExactly("Introduction to Algorithms", "Pi");
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> map.put(-1, "Frozen"));
+    }
+
+    @Test
+    public void canStreamValuesInParallel() {
+
+        //Given
+        int count = 100_000;
+        IntStream.range(0, count).parallel().forEach(key -> map.put(key, String.valueOf(key)));
+
+        //When
+        long streamed = map.values().parallelStream().count();
+        map.clear();
+
+        //Then
+        assertThat(streamed).isEqualTo(count);
+        assertThat(map.values()).isEmpty();
+        assertThat(map.size()).isZero();
+        assertThat(map.putIfAbsent(SIZE_TWO, "Pi")).isNull();
+        assertThat(map.values()).hasSize(1);
+    }
+}
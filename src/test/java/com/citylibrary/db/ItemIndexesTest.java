@@ -0,0 +1,39 @@
+package com.citylibrary.db;
+
+import com.citylibrary.enums.ItemType;
+import com.citylibrary.enums.Status;
+import org.junit.jupiter.api.Test;
+
+import static com.citylibrary.constant.TestConstants.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ItemIndexesTest {
+
+    private final ItemIndexes indexes = new ItemIndexes();
+    private final Object lock = new Object();
+
+    @Test
+    public void canPoolACopyLentAndReturnedWhileItIsTaken() {
+
+        //Given
+        indexes.add(1, SEVEN_DAYS, ItemType.DVD, 1);
+        indexes.syncStatus(1, SEVEN_DAYS, Status.AVAILABLE);
+
+        //When
+        int taken = indexes.takeAvailableCopy(SEVEN_DAYS, libraryId -> {
+            synchronized (lock) {
+                indexes.syncStatus(libraryId, SEVEN_DAYS, Status.LOANED);
+                indexes.syncStatus(libraryId, SEVEN_DAYS, Status.AVAILABLE);
+            }
+            return lock;
+        });
+        indexes.syncStatus(taken, SEVEN_DAYS, Status.LOANED);
+        indexes.syncStatus(taken, SEVEN_DAYS, Status.AVAILABLE);
+
+        //Then
+        assertThat(taken).isEqualTo(1);
+        assertThat(indexes.takeAvailableCopy(SEVEN_DAYS, libraryId -> lock)).isEqualTo(1);
+        assertThat(indexes.takeAvailableCopy(SEVEN_DAYS, libraryId -> lock)).isEqualTo(-1);
+        assertThat(indexes.takeAvailableCopy(SIZE_TWELVE, libraryId -> lock)).isEqualTo(-1);
+    }
+}
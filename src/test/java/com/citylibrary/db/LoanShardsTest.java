@@ -0,0 +1,90 @@
+package com.citylibrary.db;
+
+import com.citylibrary.enums.ItemType;
+import com.citylibrary.model.actor.Customer;
+import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.LibraryItem;
+import com.citylibrary.model.item.Loan;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.stream.IntStream;
+
+import static com.citylibrary.constant.TestConstants.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class LoanShardsTest {
+
+    private final LoanShards loans = new LoanShards(SIZE_THREE);
+    private final Person customer = new Customer(1, "Customer-1", "Customer-1-LastName");
+    private final LocalDate today = LocalDate.now();
+
+    @Test
+    public void canMergeLoansAcrossShards() {
+
+        //Given
+        IntStream.rangeClosed(1, SIZE_TWELVE).forEach(libraryId -> loans.add(customer,
+                new LibraryItem.LibraryItemBuilder(libraryId, 1, ItemType.BOOK, "Introduction to Algorithms").build(),
+                today, today.plusDays(SIZE_TWELVE - libraryId)));
+
+        //When
+        LibraryItem returned = loans.remove(SIZE_FIVE);
+
+        //Then
+        assertThat(returned.getLibraryId()).isEqualTo(SIZE_FIVE);
+        assertThat(loans.contains(SIZE_FIVE)).isFalse();
+        assertThat(loans.contains(SIZE_TWO)).isTrue();
+        assertThat(loans.get(-1)).isNull();
+        assertThat(loans.values())
+                .extracting(loan -> loan.getItem().getLibraryId())
+                .containsExactly(1, 2, 3, 4, 6, 7, 8, 9, 10, 11, 12);
+        assertThat(loans.byCustomer(1)).hasSize(SIZE_TWELVE - 1);
+        assertThat(loans.dueBetween(today.toEpochDay(), today.plusDays(SIZE_THREE).toEpochDay()))
+                .extracting(Loan::getDueDate)
+                .isSorted()
+                .hasSize(SIZE_THREE + 1);
+    }
+
+    @Test
+    public void canBorrowAndReturnOnAllShardsConcurrently() {
+
+        //Given
+        int count = 20_000;
+
+        //When
+        IntStream.rangeClosed(1, count).parallel().forEach(libraryId -> {
+            LibraryItem item = new LibraryItem.LibraryItemBuilder(libraryId, 1, ItemType.BOOK, "Introduction to Algorithms").build();
+            loans.add(customer, item, today, today.plusDays(libraryId % SEVEN_DAYS));
+            if (libraryId % SIZE_TWO == 0)
+                loans.remove(libraryId);
+        });
+
+        //Then
+        assertThat(loans.values()).hasSize(count / 2);
+        assertThat(loans.byCustomer(1)).hasSize(count / 2);
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> new LoanShards(0));
+    }
+
+    @Test
+    public void canListCustomerLoansByLibraryIdWhateverTheShardCount() {
+
+        //Given
+        LoanShards single = new LoanShards(1);
+        IntStream.of(7, 2, 11, 4, 1, 12, 5, 9, 3, 10, 6, 8).forEach(libraryId -> {
+            LibraryItem item = new LibraryItem.LibraryItemBuilder(libraryId, 1, ItemType.BOOK, "Introduction to Algorithms").build();
+            single.add(customer, item, today, today.plusDays(SEVEN_DAYS));
+            loans.add(customer, item, today, today.plusDays(SEVEN_DAYS));
+        });
+
+        //When
+        single.remove(SIZE_FIVE);
+        loans.remove(SIZE_FIVE);
+
+        //Then
+        assertThat(single.byCustomer(1))
+                .extracting(loan -> loan.getItem().getLibraryId())
+                .containsExactly(1, 2, 3, 4, 6, 7, 8, 9, 10, 11, 12);
+        assertThat(loans.byCustomer(1)).isEqualTo(single.byCustomer(1));
+    }
+}
@@ -0,0 +1,104 @@
+package com.citylibrary.db;
+
+import com.citylibrary.enums.ItemType;
+import com.citylibrary.model.actor.Customer;
+import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.LibraryItem;
+import com.citylibrary.model.item.Loan;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.stream.IntStream;
+
+import static com.citylibrary.constant.TestConstants.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LoanTableTest {
+
+    private final LoanTable loans = new LoanTable();
+    private final Person customer = new Customer(1, "Customer-1", "Customer-1-LastName");
+    private final LocalDate today = LocalDate.now();
+
+    @Test
+    public void canKeepIndexesThroughSlotReuse() {
+
+        //Given
+        LibraryItem book = new LibraryItem.LibraryItemBuilder(1, 1, ItemType.BOOK, "Introduction to Algorithms").build();
+        LibraryItem dvd = new LibraryItem.LibraryItemBuilder(2, 2, ItemType.DVD, "Pi").build();
+        LibraryItem vhs = new LibraryItem.LibraryItemBuilder(3, 4, ItemType.VHS, "WarGames").build();
+        loans.add(customer, book, today, today.plusDays(SEVEN_DAYS));
+        loans.add(customer, dvd, today, today.minusDays(1));
+
+        //When
+        LibraryItem returned = loans.remove(1);
+        boolean isAdded = loans.add(customer, vhs, today, today.plusDays(SEVEN_DAYS));
+
+        //Then
+        assertThat(returned).isSameAs(book);
+        assertThat(isAdded).isTrue();
+        assertThat(loans.remove(1)).isNull();
+        assertThat(loans.contains(1)).isFalse();
+        assertThat(loans.get(3)).isEqualTo(new Loan(customer, vhs, today, today.plusDays(SEVEN_DAYS)));
+        assertThat(loans.values()).extracting(Loan::getItem).containsExactly(dvd, vhs);
+        assertThat(loans.byCustomer(1)).extracting(Loan::getItem).containsExactlyInAnyOrder(dvd, vhs);
+        assertThat(loans.dueBetween(Long.MIN_VALUE, today.toEpochDay()))
+                .extracting(Loan::getItem)
+                .containsExactly(dvd);
+        assertThat(loans.dueBetween(today.toEpochDay(), Long.MAX_VALUE))
+                .extracting(Loan::getItem)
+                .containsExactly(vhs);
+    }
+
+    @Test
+    public void canHoldManyLoansAndClear() {
+
+        //Given
+        int count = 10_000;
+        IntStream.rangeClosed(1, count).parallel().forEach(libraryId -> loans.add(
+                new Customer(libraryId % SIZE_FIVE, "Customer", "LastName"),
+                new LibraryItem.LibraryItemBuilder(libraryId, 1, ItemType.BOOK, "Introduction to Algorithms").build(),
+                today, today.plusDays(libraryId % SEVEN_DAYS)));
+
+        //When
+        IntStream.rangeClosed(1, count / 2).parallel().forEach(loans::remove);
+
+        //Then
+        assertThat(loans.values()).hasSize(count / 2);
+        assertThat(loans.byCustomer(0)).hasSize(count / 2 / SIZE_FIVE);
+        assertThat(loans.dueBetween(today.toEpochDay(), today.plusDays(SEVEN_DAYS).toEpochDay())).hasSize(count / 2);
+
+        loans.clear();
+        assertThat(loans.values()).isEmpty();
+        assertThat(loans.byCustomer(0)).isEmpty();
+        assertThat(loans.contains(count)).isFalse();
+    }
+
+    @Test
+    public void canListLoansDueAcrossTheEpochInDateOrder() {
+
+        //Given
+        LocalDate epoch = LocalDate.ofEpochDay(0);
+        LocalDate[] dueDates = {today, epoch.minusDays(SIZE_FIVE), epoch, epoch.minusDays(5_000),
+                today.plusYears(SIZE_TWELVE * SIZE_TWELVE), epoch.minusDays(1), today};
+        for (int libraryId = 1; libraryId <= dueDates.length; libraryId++)
+            loans.add(customer, new LibraryItem.LibraryItemBuilder(libraryId, 1, ItemType.BOOK, "Introduction to Algorithms").build(),
+                    epoch.minusDays(10_000), dueDates[libraryId - 1]);
+
+        //When
+        loans.remove(SIZE_TWO);
+        loans.remove(1);
+
+        //Then
+        assertThat(loans.dueBetween(Long.MIN_VALUE, Long.MAX_VALUE))
+                .extracting(Loan::getDueDate)
+                .containsExactly(epoch.minusDays(5_000), epoch.minusDays(1), epoch, today, today.plusYears(SIZE_TWELVE * SIZE_TWELVE));
+        assertThat(loans.dueBetween(epoch.minusDays(SIZE_TWELVE).toEpochDay(), 0))
+                .extracting(loan -> loan.getItem().getLibraryId())
+                .containsExactly(SIZE_FIVE + 1, SIZE_THREE);
+        assertThat(loans.dueBetween(today.toEpochDay(), today.toEpochDay()))
+                .extracting(loan -> loan.getItem().getLibraryId())
+                .containsExactly(SEVEN_DAYS);
+        assertThat(loans.dueBetween(Long.MAX_VALUE - 1, Long.MAX_VALUE)).isEmpty();
+        assertThat(loans.dueBetween(Long.MIN_VALUE, Long.MIN_VALUE + 1)).isEmpty();
+    }
+}
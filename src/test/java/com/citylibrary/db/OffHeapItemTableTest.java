@@ -0,0 +1,44 @@
+package com.citylibrary.db;
+
+import com.citylibrary.enums.ItemType;
+import com.citylibrary.enums.Status;
+import com.citylibrary.model.item.Work;
+import org.junit.jupiter.api.Test;
+
+import static com.citylibrary.constant.TestConstants.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OffHeapItemTableTest {
+
+    private static final int WORKS = 5000;
+
+    private final OffHeapItemTable table = new OffHeapItemTable();
+
+    @Test
+    public void canShareArenaStringsAcrossCopiesOfAWork() {
+
+        //Given
+        for (int itemId = 1; itemId <= WORKS; itemId++) {
+            table.write(itemId, new Work(itemId, ItemType.BOOK, "Title " + itemId, "Description"), 1, Status.AVAILABLE);
+            table.write(WORKS + itemId, new Work(itemId, ItemType.BOOK, "Title " + itemId, "Description"), 1, Status.AVAILABLE);
+        }
+
+        //When
+        table.write(2 * WORKS + 1, new Work(1, ItemType.BOOK, "Title 1", "Another description"), 1, Status.AVAILABLE);
+        table.write(2 * WORKS + 2, new Work(1, ItemType.DVD, "Title 1", "Description"), 1, Status.AVAILABLE);
+        table.write(2 * WORKS + 3, new Work(SIZE_TWO, ItemType.BOOK, "Title 1", "Description"), 1, Status.AVAILABLE);
+
+        //Then
+        for (int itemId = 1; itemId <= WORKS; itemId++) {
+            assertThat(table.getTitle(WORKS + itemId)).isEqualTo(table.getTitle(itemId));
+            assertThat(table.getDescription(WORKS + itemId)).isEqualTo(table.getDescription(itemId));
+            assertThat(table.getWork(WORKS + itemId)).isEqualTo(table.getWork(itemId));
+        }
+        assertThat(table.getTitle(2)).isNotEqualTo(table.getTitle(1));
+        assertThat(table.getTitle(2 * WORKS + 1)).isNotEqualTo(table.getTitle(1));
+        assertThat(table.getTitle(2 * WORKS + 2)).isNotEqualTo(table.getTitle(1));
+        assertThat(table.getTitle(2 * WORKS + 3)).isNotEqualTo(table.getTitle(1));
+        assertThat(table.getWork(2 * WORKS + 1).getDescription()).isEqualTo("Another description");
+        assertThat(table.getWork(2 * WORKS + 2).getType()).isEqualTo(ItemType.DVD);
+    }
+}
@@ -0,0 +1,231 @@
+package com.citylibrary.db;
+
+import com.citylibrary.enums.ItemType;
+import com.citylibrary.enums.Status;
+import com.citylibrary.model.actor.Customer;
+import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.LibraryItem;
+import com.citylibrary.model.item.Loan;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.stream.IntStream;
+
+import static com.citylibrary.constant.TestConstants.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OffHeapLibraryDataStoreTest {
+
+    private OffHeapLibraryDataStore dataStore;
+    private LibraryItem book;
+
+    @BeforeEach
+    public void setUp() {
+        dataStore = new OffHeapLibraryDataStore();
+
+        book = new LibraryItem.LibraryItemBuilder(1, 1, ItemType.BOOK, "Introduction to Algorithms")
+                .withDescription("Description for Introduction to Algorithms")
+                .withShelftId(12)
+                .build();
+        dataStore.putLibraryItem(book);
+        dataStore.putLibraryItem(new LibraryItem.LibraryItemBuilder(2, book.getWork()).build());
+        dataStore.putLibraryItem(new LibraryItem.LibraryItemBuilder(3, 2, ItemType.DVD, "Pi").build());
+        dataStore.putCustomer(new Customer(1, "Customer-1", "Customer-1-LastName"));
+    }
+
+    @Test
+    public void canReadItemFieldsThroughView() {
+
+        //When
+        LibraryItem view = dataStore.getLibraryItem(1);
+
+        //Then
+        assertThat(view).isNotSameAs(book).isSameAs(dataStore.getLibraryItem(1));   // one view per id
+        assertThat(view.getItemId()).isEqualTo(1);
+        assertThat(view.getType()).isEqualTo(ItemType.BOOK);
+        assertThat(view.getTitle()).isEqualTo("Introduction to Algorithms");
+        assertThat(view.getDescription()).isEqualTo("Description for Introduction to Algorithms");
+        assertThat(view.getShelfId()).isEqualTo(12);
+        assertThat(view.getItemStatus()).isEqualTo(Status.AVAILABLE);
+        assertThat(dataStore.getLibraryItem(4)).isNull();
+        assertThat(dataStore.getLibraryItems())
+                .hasSize(SIZE_THREE)
+                .extracting(LibraryItem::getLibraryId)
+                .containsExactly(1, 2, 3);
+    }
+
+    @Test
+    public void canIterateItemsAndLoansFromLibraryId() {
+
+        //Given
+        Person customer = dataStore.getCustomer(1);
+        dataStore.putLibraryItem(new LibraryItem.LibraryItemBuilder(1 << 20, 2, ItemType.DVD, "Pi").build());
+        dataStore.addLoan(customer, dataStore.getLibraryItem(1), LocalDate.now(), LocalDate.now());
+        dataStore.addLoan(customer, dataStore.getLibraryItem(3), LocalDate.now(), LocalDate.now());
+
+        //When
+        Iterator<LibraryItem> fromTwo = dataStore.getLibraryItemsFrom(2);
+
+        //Then
+        assertThat(fromTwo).toIterable().extracting(LibraryItem::getLibraryId).containsExactly(2, 3, 1 << 20);
+        assertThat(dataStore.getLibraryItemsFrom((1 << 20) + 1).hasNext()).isFalse();
+        assertThat(dataStore.getLoansFrom(2, SIZE_FIVE)).extracting(loan -> loan.getItem().getLibraryId()).containsExactly(3);
+        assertThat(dataStore.getLoansFrom(0, 1)).extracting(loan -> loan.getItem().getLibraryId()).containsExactly(1);
+    }
+
+    @Test
+    public void canFlipStatusInTable() {
+
+        //Given
+        LibraryItem view = dataStore.getLibraryItem(3);
+
+        //When
+        view.setItemStatus(Status.LOANED);
+
+        //Then
+        assertThat(dataStore.getLibraryItem(3).getItemStatus()).isEqualTo(Status.LOANED);
+        assertThat(dataStore.getLibraryItem(3).isLoanable()).isFalse();
+        assertThat(dataStore.getLibraryItems().parallelStream()
+                .filter(item -> item.getItemStatus() == Status.AVAILABLE)
+                .count()).isEqualTo(SIZE_TWO);
+    }
+
+    @Test
+    public void canReplaceAndRemoveItems() {
+
+        //Given
+        LibraryItem existing = dataStore.getLibraryItem(3);
+        LibraryItem remastered = new LibraryItem.LibraryItemBuilder(3, 2, ItemType.DVD, "Pi (Remastered)").build();
+
+        //When
+        boolean isReplaced = dataStore.replaceLibraryItem(existing, remastered);
+        boolean isStaleReplaced = dataStore.replaceLibraryItem(remastered, existing);
+
+        //Then
+        assertThat(isReplaced).isTrue();
+        assertThat(isStaleReplaced).isFalse();
+        assertThat(existing.getTitle()).isEqualTo("Pi (Remastered)");
+        assertThat(dataStore.removeLibraryItem(3)).isSameAs(existing);
+        assertThat(dataStore.removeLibraryItem(3)).isNull();
+        assertThat(dataStore.putLibraryItemIfAbsent(remastered)).isNull();
+        assertThat(dataStore.putLibraryItemIfAbsent(remastered)).isSameAs(existing);
+
+        dataStore.clearLibraryItems();
+        assertThat(dataStore.getLibraryItems()).isEmpty();
+        assertThat(dataStore.getLibraryItem(1)).isNull();
+    }
+
+    @Test
+    public void canSearchTitlesInArena() {
+        assertThat(dataStore.getItemsByTitle("to Algo", false))
+                .extracting(LibraryItem::getLibraryId)
+                .containsExactly(1, 2);
+        assertThat(dataStore.getItemsByTitle("to algo", false)).isEmpty();
+        assertThat(dataStore.getItemsByTitle("PI", true))
+                .extracting(LibraryItem::getLibraryId)
+                .containsExactly(3);
+    }
+
+    @Test
+    public void canAttachLoansToViews() {
+
+        //Given
+        Person customer = dataStore.getCustomer(1);
+        Loan loan = new Loan(customer, book, LocalDate.now(), LocalDate.now().plusDays(SEVEN_DAYS));
+
+        //When
+        boolean isAdded = dataStore.addLoan(loan);
+
+        //Then
+        assertThat(isAdded).isTrue();
+        assertThat(dataStore.getLoan(1).getItem()).isSameAs(dataStore.getLibraryItem(1));
+        assertThat(dataStore.getLoansByCustomer(1)).hasSize(1);
+        assertThat(dataStore.removeLoan(loan)).isTrue();
+        assertThat(dataStore.getLoans()).isEmpty();
+    }
+
+    @Test
+    public void canRestoreSnapshotIntoOffHeapStore() throws IOException {
+
+        //Given
+        Path snapshot = Files.createTempDirectory("snapshot").resolve("library.snapshot");
+        dataStore.getLibraryItem(1).setItemStatus(Status.LOANED);
+        dataStore.addLoan(new Loan(dataStore.getCustomer(1), dataStore.getLibraryItem(1), LocalDate.now(), LocalDate.now()));
+        dataStore.writeSnapshot(snapshot, 1L);
+        OffHeapLibraryDataStore restored = new OffHeapLibraryDataStore();
+
+        //When
+        boolean isRestored = restored.restoreSnapshot(snapshot, 1L);
+
+        //Then
+        assertThat(isRestored).isTrue();
+        assertThat(restored.getLibraryItems()).hasSize(SIZE_THREE);
+        assertThat(restored.getLibraryItem(1).getItemStatus()).isEqualTo(Status.LOANED);
+        assertThat(restored.getLibraryItem(2).getDescription()).isEqualTo("Description for Introduction to Algorithms");
+        assertThat(restored.getLoan(1).getItem()).isSameAs(restored.getLibraryItem(1));
+
+        Files.deleteIfExists(snapshot);
+        Files.deleteIfExists(snapshot.getParent());
+    }
+
+    @Test
+    public void canShareOneWorkAcrossCopies() throws IOException {
+
+        //Given
+        Path directory = Files.createTempDirectory("snapshot");
+        CSVLibraryDataStore heapStore = new CSVLibraryDataStore();
+        OffHeapLibraryDataStore restored = new OffHeapLibraryDataStore();
+        for (int libraryId = 10; libraryId < 10 + SEVEN_DAYS; libraryId++) {
+            LibraryItem copy = new LibraryItem.LibraryItemBuilder(libraryId, 1, ItemType.BOOK, "Introduction to Algorithms")
+                    .withDescription("Description for Introduction to Algorithms")
+                    .build();
+            dataStore.putLibraryItem(copy);
+            heapStore.putLibraryItem(new LibraryItem.LibraryItemBuilder(libraryId, book.getWork()).build());
+        }
+        heapStore.putLibraryItem(new LibraryItem.LibraryItemBuilder(1, book.getWork()).build());
+        heapStore.putLibraryItem(new LibraryItem.LibraryItemBuilder(2, book.getWork()).build());
+        heapStore.putLibraryItem(new LibraryItem.LibraryItemBuilder(3, dataStore.getLibraryItem(3).getWork()).build());
+        heapStore.putCustomer(dataStore.getCustomer(1));
+
+        //When
+        dataStore.writeSnapshot(directory.resolve("offheap.snapshot"), 1L);
+        heapStore.writeSnapshot(directory.resolve("heap.snapshot"), 1L);
+        restored.restoreSnapshot(directory.resolve("offheap.snapshot"), 1L);
+
+        //Then
+        assertThat(dataStore.getLibraryItems())
+                .filteredOn(item -> item.getItemId() == 1)
+                .hasSize(SEVEN_DAYS + SIZE_TWO)
+                .extracting(LibraryItem::getWork)
+                .containsOnly(dataStore.getLibraryItem(1).getWork());
+        assertThat(Files.size(directory.resolve("offheap.snapshot"))).isEqualTo(Files.size(directory.resolve("heap.snapshot")));
+        assertThat(restored.getLibraryItem(10).getWork()).isEqualTo(restored.getLibraryItem(1).getWork());
+        assertThat(restored.getLibraryItem(3).getWork()).isNotEqualTo(restored.getLibraryItem(1).getWork());
+
+        Files.delete(directory.resolve("offheap.snapshot"));
+        Files.delete(directory.resolve("heap.snapshot"));
+        Files.delete(directory);
+    }
+
+    @Test
+    public void canStoreSparseAndManyItems() {
+
+        //Given
+        int count = 50_000;
+
+        //When
+        IntStream.rangeClosed(10, count).parallel()
+                .forEach(id -> dataStore.putLibraryItem(new LibraryItem.LibraryItemBuilder(id, book.getWork()).build()));
+        dataStore.putLibraryItem(new LibraryItem.LibraryItemBuilder(Integer.MAX_VALUE, 2, ItemType.DVD, "Pi").build());
+
+        //Then
+        assertThat(dataStore.getLibraryItems()).hasSize(count - 9 + SIZE_THREE + 1);
+        assertThat(dataStore.getLibraryItems().parallelStream().count()).isEqualTo(count - 9 + SIZE_THREE + 1);
+        assertThat(dataStore.getLibraryItem(Integer.MAX_VALUE).getTitle()).isEqualTo("Pi");
+    }
+}
@@ -214,4 +214,25 @@ public class LibraryIntegrationTest {
         assertThat(available)
                 .isTrue();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void canRefreshDataStoreWithoutLosingLoans() throws LibraryItemNotLoanableException, LibraryItemNotFoundException {
+        //Given
+        LibraryItem borrowBook = libraryManager.getItemByTitleAndType("The Pragmatic Programmer", ItemType.BOOK);
+        libraryManager.borrowItem(customer, borrowBook);
+
+        //When
+        dataService.refreshDataStore();
+
+        //Then
+        assertThat(libraryManager.getCurrentInventory())
+                .hasSize(TestConstants.SIZE_TWELVE);
+        assertThat(libraryManager.getItemByLibraryId(borrowBook.getLibraryId()))
+                .isSameAs(borrowBook)
+                .extracting(LibraryItem::getItemStatus)
+                .isEqualTo(Status.LOANED);
+        assertThat(libraryManager.getItemBorrowedByUser(customer))
+                .extracting(Loan::getItem)
+                .containsExactly(borrowBook);
+    }
+}
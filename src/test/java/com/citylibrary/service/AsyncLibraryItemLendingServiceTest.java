@@ -0,0 +1,86 @@
+package com.citylibrary.service;
+
+import com.citylibrary.businessexception.LibraryItemNotLoanableException;
+import com.citylibrary.businessexception.LibraryOperationException;
+import com.citylibrary.enums.ItemType;
+import com.citylibrary.model.actor.Customer;
+import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.LibraryItem;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static com.citylibrary.constant.TestConstants.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+public class AsyncLibraryItemLendingServiceTest {
+
+    @Mock
+    LendingService lendingService;
+
+    private LendingExecutor lendingExecutor;
+    private AsyncLibraryItemLendingService asyncLendingService;
+
+    private final LibraryItem book = new LibraryItem.LibraryItemBuilder(1, 1, ItemType.BOOK, "Test Book").build();
+    private final Person customer = new Customer(1, "Customer-1", "Customer Last name");
+    private final LocalDate today = LocalDate.now();
+
+    @BeforeEach
+    public void setUp() {
+        lendingExecutor = new LendingExecutor(LendingExecutor.PLATFORM, SIZE_TWO);
+        asyncLendingService = new AsyncLibraryItemLendingService(lendingService, lendingExecutor);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        lendingExecutor.shutdown();
+    }
+
+    @Test
+    public void canBorrowAndReturnOffTheCallersThread() throws Exception {
+
+        //Given
+        Thread caller = Thread.currentThread();
+        when(lendingService.borrowItem(customer, book, today, today.plusDays(SEVEN_DAYS)))
+                .thenAnswer(invocation -> Thread.currentThread() != caller);
+        when(lendingService.returnItem(book)).thenReturn(true);
+
+        //When
+        CompletableFuture<Boolean> borrowed = asyncLendingService.borrowItem(customer, book, today, today.plusDays(SEVEN_DAYS));
+        CompletableFuture<Boolean> returned = borrowed.thenCompose(isBorrowed -> asyncLendingService.returnItem(book));
+
+        //Then
+        Assertions.assertThat(borrowed.join()).isTrue();
+        Assertions.assertThat(returned.join()).isTrue();
+        verify(lendingService, times(INVOKED_ONCE)).returnItem(book);
+    }
+
+    @Test
+    public void canCompleteExceptionallyWithBusinessException() throws Exception {
+
+        //Given
+        when(lendingService.borrowItem(customer, book, today, today.plusDays(SEVEN_DAYS)))
+                .thenThrow(new LibraryItemNotLoanableException("Library item [ 1 Test Book is not available for loan at this time"));
+        when(lendingService.returnItem(null)).thenThrow(new IllegalArgumentException("Item cannot be null"));
+
+        //When
+        CompletableFuture<Boolean> borrowed = asyncLendingService.borrowItem(customer, book, today, today.plusDays(SEVEN_DAYS));
+        CompletableFuture<Boolean> returned = asyncLendingService.returnItem(null);
+
+        //Then
+        Assertions.assertThatExceptionOfType(CompletionException.class)
+                .isThrownBy(borrowed::join)
+                .withCauseInstanceOf(LibraryOperationException.class);
+        Assertions.assertThatExceptionOfType(CompletionException.class)
+                .isThrownBy(returned::join)
+                .withCauseInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,142 @@
+package com.citylibrary.service;
+
+import com.citylibrary.businessexception.LibraryOperationException;
+import com.citylibrary.config.LibraryConfig;
+import com.citylibrary.csvhelper.CSVDataLoader;
+import com.citylibrary.db.CSVLibraryDataStore;
+import com.citylibrary.enums.ItemType;
+import com.citylibrary.enums.LendingOutcome;
+import com.citylibrary.enums.Status;
+import com.citylibrary.model.actor.Customer;
+import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.LibraryItem;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Compares borrowing and returning baskets of items one call per item with the bulk calls. Both paths must
+// leave every item available and report every item lent. The timed run is tagged benchmark and left out of the build
+class BulkLendingBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkLendingBenchmarkTest.class);
+
+    private static final int ITEMS = 1_000;
+    private static final int BENCHMARK_ITEMS = 100_000;
+    private static final int BASKET = 10;
+    private static final int ROUNDS = 5;
+
+    private CSVLibraryDataStore dataStore;
+    private LibraryItemLendingService lendingService;
+    private List<List<LibraryItem>> baskets;
+    private final Person customer = new Customer(1, "Customer-1", "Customer-1-LastName");
+    private final LocalDate today = LocalDate.now();
+    private final LocalDate dueDate = today.plusDays(7);
+
+    @BeforeEach
+    void setUp() {
+        dataStore = new CSVLibraryDataStore();
+        lendingService = new LibraryItemLendingService(
+                new CSVDataService(dataStore, new CSVDataLoader(new LibraryConfig()), new LibraryConfig()));
+        baskets = new ArrayList<>();
+    }
+
+    private void stockItems(final int items) {
+        List<LibraryItem> basket = new ArrayList<>(BASKET);
+        for (int libraryId = 1; libraryId <= items; libraryId++) {
+            LibraryItem item = new LibraryItem.LibraryItemBuilder(libraryId, libraryId, ItemType.BOOK, "Title " + libraryId).build();
+            dataStore.putLibraryItem(item);
+            basket.add(item);
+            if (basket.size() == BASKET) {
+                baskets.add(basket);
+                basket = new ArrayList<>(BASKET);
+            }
+        }
+    }
+
+    @Test
+    void bulkMatchesSingleItemLoop() throws Exception {
+
+        //Given
+        stockItems(ITEMS);
+
+        //When
+        int singleLent = lendOneByOne();
+        int bulkLent = lendInBulk();
+
+        //Then
+        assertAllLentAndReturned(singleLent, bulkLent, ITEMS);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void bulkIsTimedAgainstSingleItemLoop() throws Exception {
+
+        //Given
+        stockItems(BENCHMARK_ITEMS);
+        int singleLent = 0;
+        int bulkLent = 0;
+
+        //When
+        long singleNanos = Long.MAX_VALUE;
+        long bulkNanos = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            singleLent = lendOneByOne();
+            singleNanos = Math.min(singleNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            bulkLent = lendInBulk();
+            bulkNanos = Math.min(bulkNanos, System.nanoTime() - start);
+        }
+        logger.info("Borrow and return of {} items in baskets of {}, best of {}: single {} ms, bulk {} ms",
+                BENCHMARK_ITEMS, BASKET, ROUNDS, singleNanos / 1_000_000, bulkNanos / 1_000_000);
+
+        //Then
+        assertAllLentAndReturned(singleLent, bulkLent, BENCHMARK_ITEMS);
+    }
+
+    private int lendOneByOne() throws Exception {
+        int lent = 0;
+        for (List<LibraryItem> basket : baskets) {
+            for (LibraryItem item : basket)
+                if (lendingService.borrowItem(customer, item, today, dueDate))
+                    lent++;
+            for (LibraryItem item : basket)
+                returnItem(item);
+        }
+        return lent;
+    }
+
+    private int lendInBulk() {
+        int lent = 0;
+        for (List<LibraryItem> basket : baskets) {
+            for (LendingOutcome outcome : lendingService.borrowItems(customer, basket, today, dueDate))
+                if (outcome == LendingOutcome.BORROWED)
+                    lent++;
+            lendingService.returnItems(basket);
+        }
+        return lent;
+    }
+
+    private void assertAllLentAndReturned(final int singleLent, final int bulkLent, final int items) {
+        Assertions.assertThat(singleLent).isEqualTo(items);
+        Assertions.assertThat(bulkLent).isEqualTo(singleLent);
+        Assertions.assertThat(dataStore.getLoans()).isEmpty();
+        Assertions.assertThat(dataStore.getLibraryItems()).allMatch(item -> item.getItemStatus() == Status.AVAILABLE);
+    }
+
+    private void returnItem(final LibraryItem item) {
+        try {
+            lendingService.returnItem(item);
+        } catch (LibraryOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,22 +1,47 @@
 package com.citylibrary.service;
 
+import com.citylibrary.csvhelper.CSVDataLoader;
+import com.citylibrary.db.CSVLibraryDataStore;
 import com.citylibrary.db.DataStore;
 import com.citylibrary.enums.ItemType;
+import com.citylibrary.enums.ReservationStatus;
 import com.citylibrary.enums.Status;
 import com.citylibrary.model.actor.Customer;
 import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.Availability;
 import com.citylibrary.model.item.LibraryItem;
 import com.citylibrary.model.item.Loan;
+import com.citylibrary.model.item.Page;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.citylibrary.constant.TestConstants.*;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -29,17 +54,18 @@ public class CSVDataServiceTest {
     @Mock
     DataStore dataStore;
 
+    @Mock
+    CSVDataLoader csvDataLoader;
+
     @InjectMocks
     CSVDataService libraryCsvDataService;
 
-    private final Object PRESENT = new Object();
-
     @Test
     public void canGetCurrentInventory() {
 
         //Given
         ConcurrentMap<Integer, LibraryItem> items = getLibraryItemMap();
-        when(dataStore.getLibraryItems()).thenReturn(items);
+        when(dataStore.getLibraryItems()).thenReturn(items.values());
 
         //When
         List<LibraryItem> returnedItems = libraryCsvDataService.getCurrentInventory();
@@ -60,7 +86,7 @@ public class CSVDataServiceTest {
         items.get(1).setItemStatus(Status.LOANED);
         items.get(3).setItemStatus(Status.LOANED);
 
-        when(dataStore.getLibraryItems()).thenReturn(items);
+        when(dataStore.getLibraryItems()).thenReturn(items.values());
 
         //When
         List<LibraryItem> returnedItems = libraryCsvDataService.getCurrentLoanableInventory();
@@ -78,8 +104,9 @@ public class CSVDataServiceTest {
     public void canSearchItemsByTitle() {
 
         //Given
-        ConcurrentMap<Integer, LibraryItem> items = getLibraryItemMap();
-        when(dataStore.getLibraryItems()).thenReturn(items);
+        ConcurrentMap<Integer, LibraryItem> libraryItems = getLibraryItemMap();
+        List<LibraryItem> items = List.of(libraryItems.get(1), libraryItems.get(2), libraryItems.get(3));
+        when(dataStore.getItemsByTitle("Introduction to Algorithms", false)).thenReturn(items);
 
         //When
         List<LibraryItem> returnedItems = libraryCsvDataService.getItemsByTitle("Introduction to Algorithms");
@@ -96,8 +123,7 @@ public class CSVDataServiceTest {
     public void cannotSearchItemsByTitleWhenItemDoesNotExist() {
 
         //Given
-        ConcurrentMap<Integer, LibraryItem> items = getLibraryItemMap();
-        when(dataStore.getLibraryItems()).thenReturn(items);
+        when(dataStore.getItemsByTitle("Fake Title", false)).thenReturn(List.of());
 
         //When
         List<LibraryItem> returnedItems = libraryCsvDataService.getItemsByTitle("Fake Title");
@@ -119,15 +145,12 @@ public class CSVDataServiceTest {
         //Given
         LibraryItem vhs =
                 new LibraryItem.LibraryItemBuilder(7, 2, ItemType.VHS, "WarGames").build();
-        ConcurrentMap<Integer, LibraryItem> items = getLibraryItemMap();
-        when(dataStore.getLibraryItems()).thenReturn(items);
 
         //When
         libraryCsvDataService.addLibraryItem(vhs);
 
         //Then
-        assertThat(items.values()).contains(vhs);
-        verify(dataStore, atMost(INVOKED_ONCE)).getLibraryItems();
+        verify(dataStore, times(INVOKED_ONCE)).putLibraryItemIfAbsent(vhs);
     }
 
     @Test
@@ -141,17 +164,32 @@ public class CSVDataServiceTest {
     public void canRemoveItemFromDataStore() {
 
         //Given
-        ConcurrentMap<Integer, LibraryItem> items = getLibraryItemMap();
-        when(dataStore.getLibraryItems()).thenReturn(items);
-        LibraryItem frozenDvd = items.get(5);
+        LibraryItem frozenDvd = getLibraryItemMap().get(5);
+        when(dataStore.removeLibraryItem(5)).thenReturn(frozenDvd);
 
         //When
         boolean isRemoved = libraryCsvDataService.removeLibraryItem(frozenDvd);
 
         //Then
         assertThat(isRemoved).isEqualTo(true);
-        assertThat(items.values()).doesNotContain(frozenDvd);
         assertThat(libraryCsvDataService.getItemsByLibraryId(5)).isNull();
+        verify(dataStore, times(INVOKED_ONCE)).removeLibraryItem(5);
+    }
+
+    @Test
+    public void canGetItemsByLibraryIdsInOrder() {
+
+        //Given
+        ConcurrentMap<Integer, LibraryItem> items = getLibraryItemMap();
+        when(dataStore.getLibraryItem(anyInt())).thenAnswer(invocation -> items.get(invocation.<Integer>getArgument(0)));
+
+        //When
+        List<LibraryItem> found = libraryCsvDataService.getItemsByLibraryIds(new int[]{SIZE_THREE, 100, 1});
+
+        //Then
+        assertThat(found).containsExactly(items.get(SIZE_THREE), null, items.get(1));
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> libraryCsvDataService.getItemsByLibraryIds(null));
     }
 
     @Test
@@ -165,8 +203,6 @@ public class CSVDataServiceTest {
     public void cannotRemoveNonExistingLibraryItem() {
 
         //Given
-        ConcurrentMap<Integer, LibraryItem> items = getLibraryItemMap();
-        when(dataStore.getLibraryItems()).thenReturn(items);
         LibraryItem nonExistingVhs =
                 new LibraryItem.LibraryItemBuilder(100, 200, ItemType.VHS, "Fake Item").build();
 
@@ -175,15 +211,14 @@ public class CSVDataServiceTest {
 
         //Then
         assertThat(isRemoved).isFalse();
-        assertThat(items).hasSize(SIZE_FIVE);
-        verify(dataStore, atMost(INVOKED_ONCE)).getLibraryItems();
+        verify(dataStore, times(INVOKED_ONCE)).removeLibraryItem(100);
     }
 
 
     @Test
     public void canGetLoanList() {
         //Given
-        ConcurrentMap<Loan, Object> loans = getLoanMap();
+        List<Loan> loans = getLoans();
         when(dataStore.getLoans()).thenReturn(loans);
 
         //When
@@ -198,44 +233,708 @@ public class CSVDataServiceTest {
     @Test
     public void canAddLoan() {
         //Given
-        ConcurrentMap<Loan, Object> loans = getLoanMap();
-        when(dataStore.getLoans()).thenReturn(loans);
+        LibraryItem vhs =
+                new LibraryItem.LibraryItemBuilder(7, 2, ItemType.VHS, "WarGames").build();
+        Person customer = new Customer(4, "Customer 4", "Customer Last Name");
+        when(dataStore.getLibraryItem(7)).thenReturn(vhs);
+        when(dataStore.addLoan(any(Person.class), any(LibraryItem.class), any(LocalDate.class), any(LocalDate.class)))
+                .thenReturn(true);
 
+        //When
+        boolean isAdded = libraryCsvDataService.addLoan(customer, vhs, LocalDate.now(), LocalDate.now().plusDays(7));
+        boolean isAddedTwice = libraryCsvDataService.addLoan(customer, vhs, LocalDate.now(), LocalDate.now().plusDays(7));
+
+        //Then
+        assertThat(isAdded).isTrue();
+        assertThat(isAddedTwice).isFalse();
+        assertThat(vhs.getItemStatus()).isEqualTo(Status.LOANED);
+        verify(dataStore, times(INVOKED_ONCE))
+                .addLoan(customer, vhs, LocalDate.now(), LocalDate.now().plusDays(7));
+    }
+
+    @Test
+    public void cannotAddLoanForItemNoLongerInStore() {
+        //Given
         LibraryItem vhs =
                 new LibraryItem.LibraryItemBuilder(7, 2, ItemType.VHS, "WarGames").build();
         Person customer = new Customer(4, "Customer 4", "Customer Last Name");
 
         //When
-        libraryCsvDataService.addLoan(customer, vhs, LocalDate.now(), LocalDate.now().plusDays(7));
+        boolean isAdded = libraryCsvDataService.addLoan(customer, vhs, LocalDate.now(), LocalDate.now().plusDays(7));
 
         //Then
-        assertThat(loans).isNotEmpty()
-                .hasSize(SIZE_FOUR);
-        verify(dataStore, atMost(INVOKED_ONCE)).getLoans();
+        assertThat(isAdded).isFalse();
+        assertThat(vhs.getItemStatus()).isEqualTo(Status.AVAILABLE);
+        verify(dataStore, never()).addLoan(any(Person.class), any(LibraryItem.class), any(LocalDate.class), any(LocalDate.class));
     }
 
     @Test
-    public void canReturnLoanItem() {
+    public void onlyOneConcurrentBorrowerGetsTheItem() throws InterruptedException {
         //Given
-        ConcurrentMap<Loan, Object> loans = getLoanMap();
-        when(dataStore.getLoans()).thenReturn(loans);
+        CSVLibraryDataStore csvLibraryDataStore = new CSVLibraryDataStore();
+        CSVDataService dataService = new CSVDataService(csvLibraryDataStore, csvDataLoader, null);
+        getLibraryItemMap().values().forEach(csvLibraryDataStore::putLibraryItem);
+        LibraryItem book = csvLibraryDataStore.getLibraryItem(1);
+        int borrowers = 8;
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(borrowers);
+
+        //When
+        for (int i = 1; i <= borrowers; i++) {
+            Person customer = new Customer(i, "Customer " + i, "Customer Last Name");
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    if (dataService.addLoan(customer, book, LocalDate.now(), LocalDate.now().plusDays(SEVEN_DAYS)))
+                        granted.incrementAndGet();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        //Then
+        assertThat(granted.get()).isEqualTo(1);
+        assertThat(csvLibraryDataStore.getLoans()).hasSize(1);
+        assertThat(book.getItemStatus()).isEqualTo(Status.LOANED);
+        assertThat(dataService.returnLoanedItem(book)).isTrue();
+        assertThat(dataService.returnLoanedItem(book)).isFalse();
+        assertThat(book.getItemStatus()).isEqualTo(Status.AVAILABLE);
+    }
+
+    @Test
+    public void canCheckoutAllItemsOrNone() {
+        //Given
+        CSVLibraryDataStore csvLibraryDataStore = new CSVLibraryDataStore();
+        CSVDataService dataService = new CSVDataService(csvLibraryDataStore, csvDataLoader, null);
+        getLibraryItemMap().values().forEach(csvLibraryDataStore::putLibraryItem);
+        Person customer = new Customer(1, "Customer 1", "Customer Last Name");
+        LocalDate today = LocalDate.now();
+        List<LibraryItem> volumes = List.of(csvLibraryDataStore.getLibraryItem(SIZE_THREE),
+                csvLibraryDataStore.getLibraryItem(1), csvLibraryDataStore.getLibraryItem(SIZE_TWO));
+        dataService.addLoan(new Customer(2, "Customer 2", "Customer Last Name"), volumes.get(2), today, today.plusDays(SEVEN_DAYS));
+
+        //When
+        boolean partlyLoanedCheckout = dataService.addLoans(customer, volumes, today, today.plusDays(SEVEN_DAYS));
+        dataService.returnLoanedItem(volumes.get(2));
+        boolean checkout = dataService.addLoans(customer, volumes, today, today.plusDays(SEVEN_DAYS));
+
+        //Then
+        assertThat(partlyLoanedCheckout).isFalse();
+        assertThat(checkout).isTrue();
+        assertThat(csvLibraryDataStore.getLoansByCustomer(1)).extracting(Loan::getItem).containsExactlyInAnyOrderElementsOf(volumes);
+        assertThat(volumes).allMatch(item -> item.getItemStatus() == Status.LOANED);
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> dataService.addLoans(customer, List.of(volumes.get(0), volumes.get(0)), today, today));
+    }
+
+    @Test
+    public void overlappingCheckoutsNeverSplitABasket() throws InterruptedException {
+        //Given
+        CSVLibraryDataStore csvLibraryDataStore = new CSVLibraryDataStore();
+        CSVDataService dataService = new CSVDataService(csvLibraryDataStore, csvDataLoader, null);
+        getLibraryItemMap().values().forEach(csvLibraryDataStore::putLibraryItem);
+        List<LibraryItem> lower = List.of(csvLibraryDataStore.getLibraryItem(SIZE_THREE), csvLibraryDataStore.getLibraryItem(1),
+                csvLibraryDataStore.getLibraryItem(SIZE_TWO));
+        List<LibraryItem> upper = List.of(csvLibraryDataStore.getLibraryItem(SIZE_FIVE), csvLibraryDataStore.getLibraryItem(SIZE_THREE),
+                csvLibraryDataStore.getLibraryItem(SIZE_TWO + SIZE_TWO));
+        int rounds = 500;
+        AtomicInteger split = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(SIZE_TWO);
+
+        //When
+        for (int round = 0; round < rounds; round++) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> checkouts = List.of(
+                    executor.submit(() -> {
+                        start.await();
+                        return dataService.addLoans(new Customer(1, "Customer 1", "Last Name"), lower, LocalDate.now(), LocalDate.now());
+                    }),
+                    executor.submit(() -> {
+                        start.await();
+                        return dataService.addLoans(new Customer(2, "Customer 2", "Last Name"), upper, LocalDate.now(), LocalDate.now());
+                    }));
+            start.countDown();
+            for (Future<Boolean> checkout : checkouts) {
+                try {
+                    checkout.get();
+                } catch (ExecutionException ex) {
+                    throw new IllegalStateException(ex.getCause());
+                }
+            }
+            int first = csvLibraryDataStore.getLoansByCustomer(1).size();
+            int second = csvLibraryDataStore.getLoansByCustomer(2).size();
+            if (first % SIZE_THREE != 0 || second % SIZE_THREE != 0 || first + second == 2 * SIZE_THREE)
+                split.incrementAndGet();
+            csvLibraryDataStore.getLibraryItems().forEach(dataService::returnLoanedItem);
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        //Then
+        assertThat(split.get()).isZero();
+        assertThat(csvLibraryDataStore.getLoans()).isEmpty();
+        assertThat(csvLibraryDataStore.getLibraryItems()).allMatch(item -> item.getItemStatus() == Status.AVAILABLE);
+    }
+
+    @Test
+    public void canLendOverlappingBasketsWhileOneBacksOut() throws InterruptedException {
+        //Given
+        CSVLibraryDataStore csvLibraryDataStore = new CSVLibraryDataStore();
+        CSVDataService dataService = new CSVDataService(csvLibraryDataStore, csvDataLoader, null);
+        int items = 100;
+        for (int libraryId = 1; libraryId <= items + 1; libraryId++)
+            csvLibraryDataStore.putLibraryItem(new LibraryItem.LibraryItemBuilder(libraryId, libraryId, ItemType.BOOK, "Title " + libraryId).build());
+        Person lent = new Customer(SIZE_THREE, "Customer 3", "Last Name");
+        dataService.addLoan(lent, csvLibraryDataStore.getLibraryItem(items), LocalDate.now(), LocalDate.now());
+        // the doomed basket holds its first item while it claims up to its last, lent one and backs out
+        List<LibraryItem> doomed = IntStream.rangeClosed(1, items).mapToObj(csvLibraryDataStore::getLibraryItem).collect(Collectors.toList());
+        List<LibraryItem> overlapping = List.of(csvLibraryDataStore.getLibraryItem(1), csvLibraryDataStore.getLibraryItem(items + 1));
+        int rounds = 500;
+        AtomicInteger refused = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(SIZE_TWO);
+
+        //When
+        for (int round = 0; round < rounds; round++) {
+            CountDownLatch start = new CountDownLatch(1);
+            Future<Boolean> doomedCheckout = executor.submit(() -> {
+                start.await();
+                return dataService.addLoans(new Customer(1, "Customer 1", "Last Name"), doomed, LocalDate.now(), LocalDate.now());
+            });
+            // starts once the doomed basket holds the shared item, or is already done
+            Future<Boolean> overlappingCheckout = executor.submit(() -> {
+                start.await();
+                while (overlapping.get(0).getItemStatus() != Status.LOANED && !doomedCheckout.isDone())
+                    Thread.onSpinWait();
+                return dataService.addLoans(new Customer(2, "Customer 2", "Last Name"), overlapping, LocalDate.now(), LocalDate.now());
+            });
+            start.countDown();
+            try {
+                assertThat(doomedCheckout.get()).isFalse();
+                if (!overlappingCheckout.get())
+                    refused.incrementAndGet();
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException(ex.getCause());
+            }
+            overlapping.forEach(dataService::returnLoanedItem);
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        dataService.returnLoanedItem(csvLibraryDataStore.getLibraryItem(items));
+        boolean retried = dataService.addLoans(new Customer(1, "Customer 1", "Last Name"), doomed, LocalDate.now(), LocalDate.now());
+
+        //Then
+        assertThat(refused.get()).isZero();
+        assertThat(retried).isTrue();
+        assertThat(csvLibraryDataStore.getLoansByCustomer(1)).hasSize(items);
+        assertThat(csvLibraryDataStore.getLoansByCustomer(2)).isEmpty();
+    }
+
+    @Test
+    public void canPageInventoryAndLoansByLibraryId() {
+        //Given
+        CSVLibraryDataStore csvLibraryDataStore = new CSVLibraryDataStore(SIZE_THREE);
+        CSVDataService dataService = new CSVDataService(csvLibraryDataStore, csvDataLoader, null);
+        getLibraryItemMap().values().forEach(csvLibraryDataStore::putLibraryItem);
+        Person customer = new Customer(1, "Customer 1", "Customer Last Name");
+        dataService.addLoan(customer, csvLibraryDataStore.getLibraryItem(SIZE_TWO), LocalDate.now(), LocalDate.now());
+        dataService.addLoan(customer, csvLibraryDataStore.getLibraryItem(SIZE_FIVE), LocalDate.now(), LocalDate.now());
+
+        //When
+        Page<LibraryItem> first = dataService.getCurrentInventory(Page.FIRST, SIZE_TWO);
+        Page<LibraryItem> second = dataService.getCurrentInventory(first.getContinuation(), SIZE_TWO);
+        Page<LibraryItem> last = dataService.getCurrentInventory(second.getContinuation(), SIZE_TWO);
+        Page<LibraryItem> loanable = dataService.getCurrentLoanableInventory(Page.FIRST, SIZE_TWO);
+        Page<Loan> loans = dataService.getLoan(Page.FIRST, SIZE_TWO);
+
+        //Then
+        assertThat(first.getItems()).extracting(LibraryItem::getLibraryId).containsExactly(1, 2);
+        assertThat(first.hasNext()).isTrue();
+        assertThat(second.getItems()).extracting(LibraryItem::getLibraryId).containsExactly(3, 4);
+        assertThat(last.getItems()).extracting(LibraryItem::getLibraryId).containsExactly(SIZE_FIVE);
+        assertThat(last.hasNext()).isFalse();
+        assertThat(loanable.getItems()).extracting(LibraryItem::getLibraryId).containsExactly(1, 3);
+        assertThat(dataService.getCurrentLoanableInventory(loanable.getContinuation(), SIZE_TWO).getItems())
+                .extracting(LibraryItem::getLibraryId).containsExactly(4);
+        assertThat(loans.getItems()).extracting(loan -> loan.getItem().getLibraryId()).containsExactly(2, 5);
+        assertThat(loans.hasNext()).isFalse();
+        assertThat(dataService.getCurrentInventory(Integer.MAX_VALUE, SIZE_TWO).getItems()).isEmpty();
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> dataService.getLoan(Page.FIRST, 0));
+    }
+
+    @Test
+    public void canStreamInventoryAndLoansLazily() {
+        //Given
+        CSVLibraryDataStore csvLibraryDataStore = new CSVLibraryDataStore(SIZE_TWO);
+        CSVDataService dataService = new CSVDataService(csvLibraryDataStore, csvDataLoader, null);
+        Person customer = new Customer(1, "Customer 1", "Customer Last Name");
+        int count = 5_000;
+        for (int libraryId = 1; libraryId <= count; libraryId++) {
+            LibraryItem item = new LibraryItem.LibraryItemBuilder(libraryId, libraryId, ItemType.BOOK, "Title " + libraryId).build();
+            csvLibraryDataStore.putLibraryItem(item);
+            if (libraryId % SIZE_THREE == 0)
+                dataService.addLoan(customer, item, LocalDate.now(), LocalDate.now());
+        }
 
+        //When
+        List<Integer> firstLoanable = dataService.streamCurrentLoanableInventory()
+                .limit(SIZE_THREE).map(LibraryItem::getLibraryId).collect(Collectors.toList());
+        List<Integer> loanIds = dataService.streamLoans()
+                .map(loan -> loan.getItem().getLibraryId()).collect(Collectors.toList());
+
+        //Then
+        assertThat(firstLoanable).containsExactly(1, 2, 4);
+        assertThat(dataService.streamCurrentInventory().count()).isEqualTo(count);
+        assertThat(loanIds).hasSize(count / SIZE_THREE).isSorted().doesNotHaveDuplicates();
+    }
+
+    @Test
+    public void canReturnLoanItem() {
+        //Given
         LibraryItem vhs =
                 new LibraryItem.LibraryItemBuilder(7, 2, ItemType.VHS, "WarGames").build();
-        Person customer = new Customer(4, "Customer 4", "Customer Last Name");
-        Loan newLoan = new Loan(customer, vhs, LocalDate.now(), LocalDate.now().plusDays(SEVEN_DAYS));
+        vhs.setItemStatus(Status.LOANED);
 
-        loans.put(newLoan, PRESENT);
+        when(dataStore.removeLoan(7)).thenReturn(vhs);
 
         //When
         boolean isReturnSuccess = libraryCsvDataService.returnLoanedItem(vhs);
 
         //Then
         assertThat(isReturnSuccess).isTrue();
-        assertThat(loans).isNotEmpty()
-                .hasSize(SIZE_THREE)
-                .doesNotContainKeys(newLoan);
-        verify(dataStore, atMost(INVOKED_TWICE)).getLoans();
+        assertThat(vhs.getItemStatus()).isEqualTo(Status.AVAILABLE);
+        verify(dataStore, times(INVOKED_ONCE)).removeLoan(7);
+    }
+
+    @Test
+    public void cannotReturnItemThatIsNotLoaned() {
+        //Given
+        LibraryItem vhs =
+                new LibraryItem.LibraryItemBuilder(7, 2, ItemType.VHS, "WarGames").build();
+
+        //When
+        boolean isReturnSuccess = libraryCsvDataService.returnLoanedItem(vhs);
+
+        //Then
+        assertThat(isReturnSuccess).isFalse();
+        assertThat(vhs.getItemStatus()).isEqualTo(Status.AVAILABLE);
+        verify(dataStore, times(INVOKED_ONCE)).removeLoan(7);
+    }
+
+    @Test
+    public void canCheckItemIsBorrowed() {
+        //Given
+        List<Loan> loans = getLoans();
+        when(dataStore.isOnLoan(1)).thenReturn(true);
+
+        //When
+        boolean isBorrowed = libraryCsvDataService.isBorrowed(loans.get(0).getItem());
+        boolean isNotBorrowed = libraryCsvDataService.isBorrowed(getLibraryItemMap().get(5));
+
+        //Then
+        assertThat(isBorrowed).isTrue();
+        assertThat(isNotBorrowed).isFalse();
+    }
+
+    @Test
+    public void canRefreshDataStoreKeepingLoans() {
+        //Given
+        CSVLibraryDataStore csvLibraryDataStore = new CSVLibraryDataStore();
+        CSVDataService dataService = new CSVDataService(csvLibraryDataStore, csvDataLoader, null);
+        getLibraryItemMap().values().forEach(csvLibraryDataStore::putLibraryItem);
+        Person customer = new Customer(1, "Customer 1", "Custmer 1 Last Name");
+        csvLibraryDataStore.putCustomer(customer);
+
+        LibraryItem unchanged = csvLibraryDataStore.getLibraryItem(1);
+        LibraryItem retitled = csvLibraryDataStore.getLibraryItem(4);
+        dataService.addLoan(customer, unchanged, LocalDate.now(), LocalDate.now().plusDays(SEVEN_DAYS));
+        dataService.addLoan(customer, retitled, LocalDate.now(), LocalDate.now().plusDays(SEVEN_DAYS));
+
+        doAnswer(invocation -> {
+            Consumer<LibraryItem> consumer = invocation.getArgument(0);
+            consumer.accept(new LibraryItem.LibraryItemBuilder(1, 1, ItemType.BOOK, "Introduction to Algorithms").build());
+            consumer.accept(new LibraryItem.LibraryItemBuilder(4, 2, ItemType.DVD, "Pi (Remastered)").build());
+            consumer.accept(new LibraryItem.LibraryItemBuilder(6, 4, ItemType.VHS, "WarGames").build());
+            return true;
+        }).when(csvDataLoader).loadLibraryItems(any());
+        doAnswer(invocation -> {
+            Consumer<Person> consumer = invocation.getArgument(0);
+            consumer.accept(new Customer(1, "Customer 1", "Custmer 1 Last Name"));
+            return true;
+        }).when(csvDataLoader).loadCustomers(any());
+
+        //When
+        dataService.refreshDataStore();
+
+        //Then
+        assertThat(csvLibraryDataStore.getLibraryItems())
+                .extracting(LibraryItem::getLibraryId)
+                .containsExactlyInAnyOrder(1, 4, 6);
+        assertThat(csvLibraryDataStore.getLibraryItem(1)).isSameAs(unchanged);
+        assertThat(csvLibraryDataStore.getLibraryItem(4).getTitle()).isEqualTo("Pi (Remastered)");
+        assertThat(csvLibraryDataStore.getLibraryItem(4).getItemStatus()).isEqualTo(Status.LOANED);
+        assertThat(csvLibraryDataStore.getLibraryItem(6).getItemStatus()).isEqualTo(Status.AVAILABLE);
+        assertThat(csvLibraryDataStore.getCustomer(1)).isSameAs(customer);
+        assertThat(csvLibraryDataStore.getLoan(1).getItem()).isSameAs(unchanged);
+        assertThat(csvLibraryDataStore.getLoan(4).getItem()).isSameAs(csvLibraryDataStore.getLibraryItem(4));
+        assertThat(csvLibraryDataStore.getLoans()).hasSize(SIZE_TWO);
+        assertThat(dataService.getAvailability(2)).extracting(Availability::getTotal, Availability::getLoaned).containsExactly(1, 1);
+        assertThat(dataService.getAvailability(4)).extracting(Availability::getTotal, Availability::getAvailable).containsExactly(1, 1);
+        assertThat(dataService.getAvailability(SIZE_THREE)).isNull();
+    }
+
+    @Test
+    public void canRefreshFromAPartialLoadWithoutRetiring() {
+        //Given
+        CSVLibraryDataStore csvLibraryDataStore = new CSVLibraryDataStore();
+        CSVDataService dataService = new CSVDataService(csvLibraryDataStore, csvDataLoader, null);
+        getLibraryItemMap().values().forEach(csvLibraryDataStore::putLibraryItem);
+        Person customer = new Customer(1, "Customer 1", "Custmer 1 Last Name");
+        csvLibraryDataStore.putCustomer(customer);
+        csvLibraryDataStore.putCustomer(new Customer(SIZE_TWO, "Customer 2", "Custmer 2 Last Name"));
+        LibraryItem loaned = csvLibraryDataStore.getLibraryItem(SIZE_THREE);
+        dataService.addLoan(customer, loaned, LocalDate.now(), LocalDate.now().plusDays(SEVEN_DAYS));
+
+        // the file breaks off after its first record, the customer file is missing
+        doAnswer(invocation -> {
+            Consumer<LibraryItem> consumer = invocation.getArgument(0);
+            consumer.accept(new LibraryItem.LibraryItemBuilder(1, 1, ItemType.BOOK, "Introduction to Algorithms").build());
+            return false;
+        }).when(csvDataLoader).loadLibraryItems(any());
+        when(csvDataLoader.loadCustomers(any())).thenReturn(false);
+
+        //When
+        dataService.refreshDataStore();
+
+        //Then
+        assertThat(csvLibraryDataStore.getLibraryItems()).hasSize(SIZE_FIVE);
+        assertThat(csvLibraryDataStore.getLibraryItem(SIZE_THREE)).isSameAs(loaned);
+        assertThat(csvLibraryDataStore.getLoan(SIZE_THREE).getItem()).isSameAs(loaned);
+        assertThat(csvLibraryDataStore.getCustomers()).hasSize(SIZE_TWO);
+    }
+
+    @Test
+    public void canKeepTheCatalogWhenAReloadFails() {
+        //Given
+        CSVLibraryDataStore csvLibraryDataStore = new CSVLibraryDataStore();
+        CSVDataService dataService = new CSVDataService(csvLibraryDataStore, csvDataLoader, null);
+        getLibraryItemMap().values().forEach(csvLibraryDataStore::putLibraryItem);
+        Person customer = new Customer(1, "Customer 1", "Custmer 1 Last Name");
+        csvLibraryDataStore.putCustomer(customer);
+        long version = csvLibraryDataStore.getVersion();
+
+        doAnswer(invocation -> {
+            Consumer<LibraryItem> consumer = invocation.getArgument(0);
+            consumer.accept(new LibraryItem.LibraryItemBuilder(1, 1, ItemType.BOOK, "Introduction to Algorithms").build());
+            return false;
+        }).when(csvDataLoader).loadLibraryItems(any());
+        when(csvDataLoader.loadCustomers(any())).thenReturn(true);
+
+        //When
+        assertThatExceptionOfType(IllegalStateException.class).isThrownBy(dataService::reloadDataStore);
+
+        //Then
+        assertThat(csvLibraryDataStore.getVersion()).isEqualTo(version);
+        assertThat(csvLibraryDataStore.getLibraryItems()).hasSize(SIZE_FIVE);
+        assertThat(csvLibraryDataStore.getCustomer(1)).isSameAs(customer);
+
+        doReturn(true).when(csvDataLoader).loadLibraryItems(any());
+        dataService.reloadDataStore();
+        assertThat(csvLibraryDataStore.getVersion()).isEqualTo(version + 1);
+        assertThat(csvLibraryDataStore.getLibraryItems()).isEmpty();
+    }
+
+    @Test
+    public void canKeepCopyCountsPerTitle() {
+        //Given
+        CSVLibraryDataStore csvLibraryDataStore = new CSVLibraryDataStore();
+        CSVDataService dataService = new CSVDataService(csvLibraryDataStore, csvDataLoader, null);
+        getLibraryItemMap().values().forEach(csvLibraryDataStore::putLibraryItem);
+        Person customer = new Customer(1, "Customer 1", "Customer Last Name");
+        LocalDate today = LocalDate.now();
+        LibraryItem first = csvLibraryDataStore.getLibraryItem(1);
+
+        //When
+        dataService.addLoan(customer, first, today, today.plusDays(SEVEN_DAYS));
+        dataService.addLoan(customer, first, today, today.plusDays(SEVEN_DAYS));
+        dataService.addLoans(customer, List.of(csvLibraryDataStore.getLibraryItem(SIZE_TWO), csvLibraryDataStore.getLibraryItem(SIZE_FIVE)),
+                today, today.plusDays(SEVEN_DAYS));
+        Availability whileBorrowed = dataService.getAvailability(1);
+        dataService.returnLoanedItem(first);
+        dataService.removeLibraryItem(csvLibraryDataStore.getLibraryItem(SIZE_TWO));
+        dataService.addLibraryItem(new LibraryItem.LibraryItemBuilder(SIZE_TWELVE, 1, ItemType.BOOK, "Introduction to Algorithms").build());
+
+        //Then
+        assertThat(whileBorrowed).extracting(Availability::getTotal, Availability::getAvailable, Availability::getLoaned)
+                .containsExactly(SIZE_THREE, 1, SIZE_TWO);
+        assertThat(dataService.getAvailability(1)).extracting(Availability::getTotal, Availability::getAvailable, Availability::getLoaned)
+                .containsExactly(SIZE_THREE, SIZE_THREE, 0);
+        assertThat(dataService.getAvailability(SIZE_THREE)).extracting(Availability::getAvailable, Availability::getLoaned)
+                .containsExactly(0, 1);
+        assertThat(dataService.getAvailability(SIZE_FIVE)).isNull();
+    }
+
+    @Test
+    public void canLendDistinctCopiesOfAHotTitle() throws InterruptedException {
+        //Given
+        CSVLibraryDataStore csvLibraryDataStore = new CSVLibraryDataStore();
+        CSVDataService dataService = new CSVDataService(csvLibraryDataStore, csvDataLoader, null);
+        int copies = 8;
+        for (int libraryId = 1; libraryId <= copies; libraryId++)
+            csvLibraryDataStore.putLibraryItem(new LibraryItem.LibraryItemBuilder(libraryId, SEVEN_DAYS, ItemType.DVD, "WarGames").build());
+        LocalDate today = LocalDate.now();
+        dataService.addLoan(new Customer(0, "Customer 0", "Customer Last Name"), csvLibraryDataStore.getLibraryItem(SIZE_THREE), today, today);
+        int borrowers = copies * SIZE_TWO;
+        Set<LibraryItem> lent = ConcurrentHashMap.newKeySet();
+        AtomicInteger refused = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(borrowers);
+
+        //When
+        for (int i = 1; i <= borrowers; i++) {
+            Person customer = new Customer(i, "Customer " + i, "Customer Last Name");
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    LibraryItem copy = dataService.addLoanOfAnyCopy(customer, SEVEN_DAYS, today, today.plusDays(SEVEN_DAYS));
+                    if (copy == null)
+                        refused.incrementAndGet();
+                    else
+                        lent.add(copy);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        LibraryItem returned = lent.iterator().next();
+        dataService.returnLoanedItem(returned);
+
+        //Then
+        assertThat(lent).hasSize(copies - 1).doesNotContain(csvLibraryDataStore.getLibraryItem(SIZE_THREE));
+        assertThat(refused.get()).isEqualTo(borrowers - copies + 1);
+        assertThat(csvLibraryDataStore.getLoans()).hasSize(copies - 1);
+        assertThat(dataService.addLoanOfAnyCopy(new Customer(1, "Customer 1", "Customer Last Name"), SEVEN_DAYS, today, today))
+                .isSameAs(returned);
+        assertThat(dataService.addLoanOfAnyCopy(new Customer(1, "Customer 1", "Customer Last Name"), SEVEN_DAYS, today, today)).isNull();
+        assertThat(dataService.addLoanOfAnyCopy(new Customer(1, "Customer 1", "Customer Last Name"), SIZE_TWELVE, today, today)).isNull();
+    }
+
+    @Test
+    public void canHoldReturnedCopiesForReservationsInOrder() throws ExecutionException, InterruptedException {
+        //Given
+        CSVLibraryDataStore csvLibraryDataStore = new CSVLibraryDataStore();
+        CSVDataService dataService = new CSVDataService(csvLibraryDataStore, csvDataLoader, null);
+        csvLibraryDataStore.putLibraryItem(new LibraryItem.LibraryItemBuilder(1, SEVEN_DAYS, ItemType.DVD, "WarGames").build());
+        csvLibraryDataStore.putLibraryItem(new LibraryItem.LibraryItemBuilder(2, SEVEN_DAYS, ItemType.DVD, "WarGames").build());
+        LocalDate today = LocalDate.now();
+        Person borrower = new Customer(0, "Customer 0", "Customer Last Name");
+        Person first = new Customer(1, "Customer 1", "Customer Last Name");
+        Person second = new Customer(SIZE_TWO, "Customer 2", "Customer Last Name");
+        Person third = new Customer(SIZE_THREE, "Customer 3", "Customer Last Name");
+        LibraryItem copy = csvLibraryDataStore.getLibraryItem(1);
+        LibraryItem other = csvLibraryDataStore.getLibraryItem(SIZE_TWO);
+        dataService.addLoan(borrower, copy, today, today);
+        dataService.addLoan(borrower, other, today, today);
+
+        //When
+        Reservation firstReservation = dataService.reserve(first, SEVEN_DAYS);
+        Reservation secondReservation = dataService.reserve(second, SEVEN_DAYS);
+        Reservation thirdReservation = dataService.reserve(third, SEVEN_DAYS);
+        dataService.returnLoanedItem(copy);
+
+        //Then
+        assertThat(firstReservation.getStatus()).isEqualTo(ReservationStatus.HELD);
+        assertThat(firstReservation.getReady().get()).isSameAs(copy);
+        assertThat(secondReservation.getReady()).isNotDone();
+        assertThat(copy.getItemStatus()).isEqualTo(Status.HELD);
+        assertThat(dataService.getAvailability(SEVEN_DAYS).getHeld()).isEqualTo(1);
+        assertThat(dataService.getAvailability(SEVEN_DAYS).getAvailable()).isZero();
+        assertThat(dataService.getCurrentLoanableInventory()).isEmpty();
+        assertThat(dataService.addLoan(second, copy, today, today)).isFalse();
+        assertThat(dataService.addLoanOfAnyCopy(second, SEVEN_DAYS, today, today)).isNull();
+        assertThat(dataService.addLoanOfHeldItem(second, firstReservation, today, today)).isNull();
+
+        assertThat(dataService.addLoanOfHeldItem(first, firstReservation, today, today)).isSameAs(copy);
+        assertThat(firstReservation.getStatus()).isEqualTo(ReservationStatus.COLLECTED);
+        assertThat(copy.getItemStatus()).isEqualTo(Status.LOANED);
+        assertThat(dataService.addLoanOfHeldItem(first, firstReservation, today, today)).isNull();
+
+        assertThat(dataService.cancelReservation(secondReservation)).isTrue();
+        assertThat(secondReservation.getReady()).isCompletedExceptionally();
+        dataService.returnLoanedItem(other);
+        assertThat(thirdReservation.getStatus()).isEqualTo(ReservationStatus.HELD);
+        assertThat(thirdReservation.getLibraryId()).isEqualTo(SIZE_TWO);
+        assertThat(secondReservation.getStatus()).isEqualTo(ReservationStatus.CANCELLED);
+        assertThat(secondReservation.getLibraryId()).isEqualTo(-1);
+        assertThat(secondReservation.getHeldUntil()).isNull();
+
+        assertThat(dataService.cancelReservation(thirdReservation)).isTrue();
+        assertThat(other.getItemStatus()).isEqualTo(Status.AVAILABLE);
+        assertThat(dataService.getAvailability(SEVEN_DAYS).getAvailable()).isEqualTo(1);
+        assertThat(dataService.reserve(second, SEVEN_DAYS).getLibraryId()).isEqualTo(SIZE_TWO);
+    }
+
+    @Test
+    public void canCollectAHeldCopyFromAnotherThreadInTheReadyCallback() throws ExecutionException, InterruptedException {
+        //Given
+        CSVLibraryDataStore csvLibraryDataStore = new CSVLibraryDataStore();
+        CSVDataService dataService = new CSVDataService(csvLibraryDataStore, csvDataLoader, null);
+        csvLibraryDataStore.putLibraryItem(new LibraryItem.LibraryItemBuilder(1, SEVEN_DAYS, ItemType.DVD, "WarGames").build());
+        LocalDate today = LocalDate.now();
+        Person borrower = new Customer(0, "Customer 0", "Customer Last Name");
+        Person patron = new Customer(1, "Customer 1", "Customer Last Name");
+        LibraryItem copy = csvLibraryDataStore.getLibraryItem(1);
+        dataService.addLoan(borrower, copy, today, today);
+        Reservation reservation = dataService.reserve(patron, SEVEN_DAYS);
+        ExecutorService collector = Executors.newSingleThreadExecutor();
+
+        // a callback that waits on another thread would deadlock if it ran under the hold lock
+        CompletableFuture<LibraryItem> collected = reservation.getReady().thenApply(held -> {
+            try {
+                return collector.submit(() -> dataService.addLoanOfHeldItem(patron, reservation, today, today))
+                        .get(SIZE_FIVE, TimeUnit.SECONDS);
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+
+        //When
+        dataService.returnLoanedItem(copy);
+        collector.shutdown();
+
+        //Then
+        assertThat(collected.get()).isSameAs(copy);
+        assertThat(reservation.getStatus()).isEqualTo(ReservationStatus.COLLECTED);
+        assertThat(copy.getItemStatus()).isEqualTo(Status.LOANED);
+    }
+
+    @Test
+    public void canPassAnExpiredHoldToTheNextReservation() {
+        //Given
+        CSVLibraryDataStore csvLibraryDataStore = new CSVLibraryDataStore();
+        MovableClock clock = new MovableClock();
+        CSVDataService dataService = new CSVDataService(csvLibraryDataStore, csvDataLoader, null, clock);
+        csvLibraryDataStore.putLibraryItem(new LibraryItem.LibraryItemBuilder(1, SEVEN_DAYS, ItemType.DVD, "WarGames").build());
+        LocalDate today = LocalDate.now();
+        LibraryItem copy = csvLibraryDataStore.getLibraryItem(1);
+        Person first = new Customer(1, "Customer 1", "Customer Last Name");
+        Person second = new Customer(SIZE_TWO, "Customer 2", "Customer Last Name");
+        dataService.addLoan(new Customer(0, "Customer 0", "Customer Last Name"), copy, today, today);
+        Reservation firstReservation = dataService.reserve(first, SEVEN_DAYS);
+        Reservation secondReservation = dataService.reserve(second, SEVEN_DAYS);
+        dataService.returnLoanedItem(copy);
+
+        //When
+        int expiredEarly = dataService.expireHolds();
+        clock.advance(Duration.ofDays(SIZE_FIVE));
+        int expired = dataService.expireHolds();
+
+        //Then
+        assertThat(expiredEarly).isZero();
+        assertThat(expired).isEqualTo(1);
+        assertThat(firstReservation.getStatus()).isEqualTo(ReservationStatus.EXPIRED);
+        assertThat(secondReservation.getStatus()).isEqualTo(ReservationStatus.HELD);
+        assertThat(secondReservation.getLibraryId()).isEqualTo(1);
+        assertThat(secondReservation.getHeldUntil()).isAfter(clock.instant());
+        assertThat(dataService.addLoanOfHeldItem(first, firstReservation, today, today)).isNull();
+
+        clock.advance(Duration.ofDays(SIZE_FIVE));
+        assertThat(dataService.addLoanOfHeldItem(second, secondReservation, today, today)).isNull();
+        assertThat(secondReservation.getStatus()).isEqualTo(ReservationStatus.EXPIRED);
+        assertThat(copy.getItemStatus()).isEqualTo(Status.AVAILABLE);
+        assertThat(dataService.getAvailability(SEVEN_DAYS).getAvailable()).isEqualTo(1);
+    }
+
+    @Test
+    public void canHoldCopiesForManyConcurrentReservations() throws InterruptedException {
+        //Given
+        CSVLibraryDataStore csvLibraryDataStore = new CSVLibraryDataStore();
+        CSVDataService dataService = new CSVDataService(csvLibraryDataStore, csvDataLoader, null);
+        int copies = 8;
+        List<LibraryItem> lent = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        for (int libraryId = 1; libraryId <= copies; libraryId++) {
+            csvLibraryDataStore.putLibraryItem(new LibraryItem.LibraryItemBuilder(libraryId, SEVEN_DAYS, ItemType.DVD, "WarGames").build());
+            lent.add(csvLibraryDataStore.getLibraryItem(libraryId));
+            dataService.addLoan(new Customer(0, "Customer 0", "Customer Last Name"), lent.get(libraryId - 1), today, today);
+        }
+        int waiters = 1_000;
+        List<Reservation> reservations = new CopyOnWriteArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(copies * SIZE_TWO);
+
+        //When
+        for (int i = 1; i <= waiters; i++) {
+            Person customer = new Customer(i, "Customer " + i, "Customer Last Name");
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    reservations.add(dataService.reserve(customer, SEVEN_DAYS));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        for (LibraryItem copy : lent)
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    dataService.returnLoanedItem(copy);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        //Then
+        List<Reservation> held = reservations.stream()
+                .filter(reservation -> reservation.getStatus() == ReservationStatus.HELD)
+                .collect(Collectors.toList());
+        assertThat(reservations).hasSize(waiters);
+        assertThat(held).hasSize(copies);
+        assertThat(held.stream().map(Reservation::getLibraryId).collect(Collectors.toSet())).hasSize(copies);
+        assertThat(held).allMatch(reservation -> reservation.getReady().isDone());
+        assertThat(dataService.getAvailability(SEVEN_DAYS).getHeld()).isEqualTo(copies);
+        assertThat(csvLibraryDataStore.getLoans()).isEmpty();
+
+        held.forEach(dataService::cancelReservation);
+        assertThat(reservations.stream().filter(reservation -> reservation.getStatus() == ReservationStatus.HELD)).hasSize(copies);
+        assertThat(reservations.stream().filter(reservation -> reservation.getStatus() == ReservationStatus.WAITING))
+                .hasSize(waiters - copies * SIZE_TWO);
+    }
+
+    // a clock the test moves forward by hand
+    private static final class MovableClock extends Clock {
+        private final AtomicReference<Instant> now = new AtomicReference<>(Instant.now());
+
+        void advance(final Duration duration) {
+            now.updateAndGet(instant -> instant.plus(duration));
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now.get();
+        }
     }
 
     private ConcurrentMap<Integer, LibraryItem> getLibraryItemMap() {
@@ -252,18 +951,15 @@ public class CSVDataServiceTest {
         return libItems;
     }
 
-    private ConcurrentMap<Loan, Object> getLoanMap() {
+    private List<Loan> getLoans() {
 
-        final ConcurrentMap<Loan, Object> loanItems = new ConcurrentHashMap<>();
         final Person customer1 = new Customer(1, "Customer 1", "Custmer 1 Last Name");
         final Person customer2 = new Customer(2, "Customer 2", "Custmer 2 Last Name");
 
-        loanItems.putAll(
-                Map.of(
-                        new Loan(customer1, getLibraryItemMap().get(1), LocalDate.now(), LocalDate.now().plusDays(SEVEN_DAYS)), PRESENT,
-                        new Loan(customer1, getLibraryItemMap().get(2), LocalDate.now(), LocalDate.now().plusDays(SEVEN_DAYS)), PRESENT,
-                        new Loan(customer2, getLibraryItemMap().get(3), LocalDate.now(), LocalDate.now().plusDays(SEVEN_DAYS)), PRESENT
-                ));
-        return loanItems;
+        return List.of(
+                new Loan(customer1, getLibraryItemMap().get(1), LocalDate.now(), LocalDate.now().plusDays(SEVEN_DAYS)),
+                new Loan(customer1, getLibraryItemMap().get(2), LocalDate.now(), LocalDate.now().plusDays(SEVEN_DAYS)),
+                new Loan(customer2, getLibraryItemMap().get(3), LocalDate.now(), LocalDate.now().plusDays(SEVEN_DAYS))
+        );
     }
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+package com.citylibrary.service;
+
+import com.citylibrary.db.CSVLibraryDataStore;
+import com.citylibrary.db.DataStore;
+import com.citylibrary.db.OffHeapLibraryDataStore;
+import com.citylibrary.enums.ItemType;
+import com.citylibrary.enums.Status;
+import com.citylibrary.model.actor.Customer;
+import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.ItemQuery;
+import com.citylibrary.model.item.LibraryItem;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.citylibrary.constant.TestConstants.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ItemQueryPlannerTest {
+
+    private static final ItemType[] TYPES = {ItemType.BOOK, ItemType.DVD, ItemType.VHS};
+
+    private final Person customer = new Customer(1, "Customer-1", "Customer-1-LastName");
+
+    @Test
+    public void canPickMostSelectiveAccessPath() {
+
+        //Given
+        DataStore dataStore = fill(new CSVLibraryDataStore(), ItemQueryPlanner.PARALLEL_THRESHOLD * SIZE_TWO);
+        ItemQueryPlanner planner = new ItemQueryPlanner(dataStore);
+        ItemQuery byTitleAndType = new ItemQuery.ItemQueryBuilder().withTitle("work 12", true).withType(ItemType.BOOK).build();
+        ItemQuery loanedOnShelf = new ItemQuery.ItemQueryBuilder().withStatus(Status.LOANED).withShelfId(SIZE_THREE).build();
+        ItemQuery oneCopy = new ItemQuery.ItemQueryBuilder().withLibraryId(SIZE_FIVE).withStatus(Status.AVAILABLE).build();
+        ItemQuery copiesOfWork = new ItemQuery.ItemQueryBuilder().withItemId(SIZE_TWELVE).build();
+
+        //When
+        ItemQueryPlanner.Plan titlePlan = planner.plan(byTitleAndType);
+        ItemQueryPlanner.Plan bitmapPlan = planner.plan(loanedOnShelf);
+        ItemQueryPlanner.Plan libraryIdPlan = planner.plan(oneCopy);
+        ItemQueryPlanner.Plan scanPlan = planner.plan(copiesOfWork);
+
+        //Then
+        assertThat(titlePlan.getAccess()).isEqualTo(ItemQueryPlanner.Access.TITLE_INDEX);
+        assertThat(titlePlan.isParallel()).isFalse();
+        assertThat(bitmapPlan.getAccess()).isEqualTo(ItemQueryPlanner.Access.BITMAP);
+        assertThat(bitmapPlan.getEstimate()).isEqualTo(scan(dataStore, loanedOnShelf).size());
+        assertThat(libraryIdPlan.getAccess()).isEqualTo(ItemQueryPlanner.Access.LIBRARY_ID);
+        assertThat(scanPlan.getAccess()).isEqualTo(ItemQueryPlanner.Access.SCAN);
+        assertThat(scanPlan.isParallel()).isTrue();
+        for (ItemQuery query : List.of(byTitleAndType, loanedOnShelf, oneCopy, copiesOfWork))
+            assertThat(planner.execute(query, planner.plan(query))).isNotEmpty().containsExactlyElementsOf(scan(dataStore, query));
+    }
+
+    @Test
+    public void canScanSmallOrUnindexedStoresSequentially() {
+
+        //Given
+        DataStore small = fill(new CSVLibraryDataStore(), SIZE_TWELVE);
+        DataStore offHeap = fill(new OffHeapLibraryDataStore(), SIZE_TWELVE * SIZE_TWELVE);
+        ItemQuery byTitle = new ItemQuery.ItemQueryBuilder().withTitle("Title of work 1", false).build();
+
+        //When
+        ItemQueryPlanner.Plan smallPlan = new ItemQueryPlanner(small).plan(new ItemQuery.ItemQueryBuilder().withItemId(1).build());
+        ItemQueryPlanner offHeapPlanner = new ItemQueryPlanner(offHeap);
+        ItemQueryPlanner.Plan offHeapPlan = offHeapPlanner.plan(byTitle);
+
+        //Then
+        assertThat(smallPlan.getAccess()).isEqualTo(ItemQueryPlanner.Access.SCAN);
+        assertThat(smallPlan.isParallel()).isFalse();
+        assertThat(offHeapPlan.getAccess()).isEqualTo(ItemQueryPlanner.Access.SCAN);
+        assertThat(offHeapPlanner.execute(byTitle, offHeapPlan)).containsExactlyElementsOf(scan(offHeap, byTitle));
+    }
+
+    @Test
+    public void canAnswerTypeShelfAndStatusFromBitmapsOnBothStores() {
+
+        //Given
+        int count = ItemQueryPlanner.PARALLEL_THRESHOLD * SIZE_TWO;
+        ItemQuery availableDvdsOnShelf = new ItemQuery.ItemQueryBuilder()
+                .withType(ItemType.DVD).withStatus(Status.AVAILABLE).withShelfId(SIZE_FIVE).build();
+        ItemQuery available = new ItemQuery.ItemQueryBuilder().withStatus(Status.AVAILABLE).build();
+
+        for (DataStore dataStore : List.of(fill(new CSVLibraryDataStore(), count), fill(new OffHeapLibraryDataStore(), count))) {
+            ItemQueryPlanner planner = new ItemQueryPlanner(dataStore);
+
+            //When
+            dataStore.getLibraryItem(SIZE_FIVE).setItemStatus(Status.LOANED);
+            dataStore.syncItemStatus(SIZE_FIVE);
+            dataStore.removeLibraryItem(SIZE_TWELVE + SIZE_FIVE);
+            ItemQueryPlanner.Plan plan = planner.plan(availableDvdsOnShelf);
+            ItemQueryPlanner.Plan availablePlan = planner.plan(available);
+
+            //Then
+            assertThat(plan.getAccess()).isEqualTo(ItemQueryPlanner.Access.BITMAP);
+            assertThat(planner.execute(availableDvdsOnShelf, plan)).isNotEmpty().containsExactlyElementsOf(scan(dataStore, availableDvdsOnShelf));
+            assertThat(availablePlan.getAccess()).isEqualTo(ItemQueryPlanner.Access.BITMAP);
+            assertThat(availablePlan.isParallel()).isTrue();
+            assertThat(planner.execute(available, availablePlan)).containsExactlyElementsOf(scan(dataStore, available));
+            assertThat(planner.count(available)).isEqualTo(count - count / SEVEN_DAYS - SIZE_TWO);
+        }
+    }
+
+    // copies of works in runs of eight on twelve shelves, every seventh copy on loan
+    private DataStore fill(final DataStore dataStore, final int count) {
+        for (int libraryId = 1; libraryId <= count; libraryId++) {
+            int itemId = (libraryId - 1) / 8 + 1;
+            dataStore.putLibraryItem(new LibraryItem.LibraryItemBuilder(libraryId, itemId, TYPES[itemId % TYPES.length], "Title of work " + itemId)
+                    .withShelftId(libraryId % SIZE_TWELVE)
+                    .build());
+            if (libraryId % SEVEN_DAYS == 0) {
+                LibraryItem item = dataStore.getLibraryItem(libraryId);
+                item.setItemStatus(Status.LOANED);
+                dataStore.syncItemStatus(libraryId);
+                dataStore.addLoan(customer, item, LocalDate.now(), LocalDate.now());
+            }
+        }
+        return dataStore;
+    }
+
+    private static List<LibraryItem> scan(final DataStore dataStore, final ItemQuery query) {
+        return dataStore.getLibraryItems().stream().filter(query::matches).collect(Collectors.toList());
+    }
+}
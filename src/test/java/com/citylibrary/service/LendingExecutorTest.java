@@ -0,0 +1,62 @@
+package com.citylibrary.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.citylibrary.constant.TestConstants.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class LendingExecutorTest {
+
+    private LendingExecutor lendingExecutor;
+
+    @AfterEach
+    public void tearDown() {
+        if (lendingExecutor != null)
+            lendingExecutor.shutdown();
+    }
+
+    @Test
+    public void canKeepParallelScansOffTheCommonPool() {
+
+        //Given
+        lendingExecutor = new LendingExecutor(LendingExecutor.PLATFORM, SIZE_TWO);
+
+        //When
+        List<ForkJoinPool> pools = lendingExecutor.submit(() -> IntStream.range(0, 10_000).parallel()
+                .mapToObj(i -> Thread.currentThread() instanceof ForkJoinWorkerThread
+                        ? ((ForkJoinWorkerThread) Thread.currentThread()).getPool()
+                        : ForkJoinPool.commonPool())
+                .distinct()
+                .collect(Collectors.toList()))
+                .join();
+
+        //Then
+        assertThat(lendingExecutor.getKind()).isEqualTo(LendingExecutor.PLATFORM);
+        assertThat(pools).hasSize(1).doesNotContain(ForkJoinPool.commonPool());
+        assertThat(pools.get(0).getParallelism()).isEqualTo(SIZE_TWO);
+    }
+
+    @Test
+    public void canRunOnVirtualThreadsWhenSupported() {
+
+        //Given
+        lendingExecutor = new LendingExecutor(LendingExecutor.VIRTUAL, 0);
+        boolean supported = Runtime.version().feature() >= 21;
+
+        //When
+        boolean ranOnPoolThread = lendingExecutor.submit(() -> Thread.currentThread() instanceof ForkJoinWorkerThread).join();
+
+        //Then
+        assertThat(lendingExecutor.getKind()).isEqualTo(supported ? LendingExecutor.VIRTUAL : LendingExecutor.PLATFORM);
+        assertThat(ranOnPoolThread).isEqualTo(!supported);
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> new LendingExecutor("green", 0));
+    }
+}
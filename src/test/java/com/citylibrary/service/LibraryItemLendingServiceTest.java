@@ -1,18 +1,24 @@
 package com.citylibrary.service;
 
+import com.citylibrary.businessexception.LibraryItemNotFoundException;
+import com.citylibrary.businessexception.LibraryItemNotLoanableException;
 import com.citylibrary.businessexception.LibraryOperationException;
 import com.citylibrary.enums.ItemType;
+import com.citylibrary.enums.LendingOutcome;
 import com.citylibrary.enums.Status;
 import com.citylibrary.model.actor.Customer;
+import com.citylibrary.model.actor.Person;
+import com.citylibrary.model.item.Availability;
 import com.citylibrary.model.item.LibraryItem;
-import com.citylibrary.model.item.Loan;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.mockito.Mockito.*;
@@ -90,6 +96,22 @@ public class LibraryItemLendingServiceTest {
                 .addLoan(null, null, null, null);
     }
 
+    @Test
+    public void cannotBorrowItemClaimedByAnotherBorrower() {
+
+        LibraryItem book = new LibraryItem.LibraryItemBuilder(1, 1, ItemType.BOOK, "Test Book").build();
+        Person customer = new Customer(1, "Customer-1", "Customer Last name");
+        LocalDate today = LocalDate.now();
+
+        when(csvDataService.getItemsByLibraryId(1)).thenReturn(book);
+        when(csvDataService.addLoan(customer, book, today, today.plusDays(7))).thenReturn(false);
+
+        Assertions.assertThatExceptionOfType(LibraryItemNotLoanableException.class)
+                .isThrownBy(() -> librarayItemLendingService.borrowItem(customer, book, today, today.plusDays(7)));
+
+        verify(csvDataService, times(1)).addLoan(customer, book, today, today.plusDays(7));
+    }
+
     @Test
     public void canReturnItemBorrowedItem() throws LibraryOperationException {
 
@@ -97,11 +119,9 @@ public class LibraryItemLendingServiceTest {
         //LibrarayItemLendingService librarayItemLendingService = new LibrarayItemLendingService(mockCSVDataService);
 
         LibraryItem book = new LibraryItem.LibraryItemBuilder(1, 1, ItemType.BOOK, "Test Book").build();
-        Customer c = new Customer(1, "Test", "Test");
         book.setItemStatus(Status.LOANED);
-        List<Loan> l = List.of(new Loan(c, book, LocalDate.now(), LocalDate.now().plusDays(7)));
 
-        when(csvDataService.getLoan()).thenReturn(l);
+        when(csvDataService.isBorrowed(book)).thenReturn(true);
         when(csvDataService.returnLoanedItem(book)).thenReturn(true);
 
         Assertions.assertThat(librarayItemLendingService.returnItem(book))
@@ -139,4 +159,150 @@ public class LibraryItemLendingServiceTest {
 
         verify(csvDataService, never()).returnLoanedItem(null);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void canBorrowItemsWithOutcomePerItem() {
+
+        //Given
+        LibraryItem book = new LibraryItem.LibraryItemBuilder(1, 1, ItemType.BOOK, "Test Book").build();
+        LibraryItem dvd = new LibraryItem.LibraryItemBuilder(2, 2, ItemType.DVD, "Pi").build();
+        LibraryItem loanedVhs = new LibraryItem.LibraryItemBuilder(3, 4, ItemType.VHS, "WarGames").build();
+        LibraryItem unknown = new LibraryItem.LibraryItemBuilder(100, 200, ItemType.BOOK, "Fake Item").build();
+        loanedVhs.setItemStatus(Status.LOANED);
+        Person customer = new Customer(1, "Customer-1", "Customer Last name");
+        LocalDate today = LocalDate.now();
+        LocalDate dueDate = today.plusDays(7);
+
+        when(csvDataService.getItemsByLibraryIds(new int[]{1, 2, 3, 100, -1}))
+                .thenReturn(Arrays.asList(book, dvd, loanedVhs, null, null));
+        when(csvDataService.addLoan(customer, book, today, dueDate)).thenReturn(true);
+        when(csvDataService.addLoan(customer, dvd, today, dueDate)).thenReturn(false);
+
+        //When
+        List<LendingOutcome> outcomes = librarayItemLendingService
+                .borrowItems(customer, Arrays.asList(book, dvd, loanedVhs, unknown, null), today, dueDate);
+
+        //Then
+        Assertions.assertThat(outcomes).containsExactly(LendingOutcome.BORROWED, LendingOutcome.NOT_LOANABLE,
+                LendingOutcome.NOT_LOANABLE, LendingOutcome.NOT_FOUND, LendingOutcome.NOT_FOUND);
+        verify(csvDataService, times(1)).getItemsByLibraryIds(any());
+        verify(csvDataService, never()).getItemsByLibraryId(anyInt());
+        verify(csvDataService, never()).addLoan(customer, loanedVhs, today, dueDate);
+    }
+
+    @Test
+    public void canReturnItemsWithOutcomePerItem() {
+
+        //Given
+        LibraryItem book = new LibraryItem.LibraryItemBuilder(1, 1, ItemType.BOOK, "Test Book").build();
+        LibraryItem dvd = new LibraryItem.LibraryItemBuilder(2, 2, ItemType.DVD, "Pi").build();
+        when(csvDataService.returnLoanedItem(book)).thenReturn(true);
+        when(csvDataService.returnLoanedItem(dvd)).thenReturn(false);
+
+        //When
+        List<LendingOutcome> outcomes = librarayItemLendingService.returnItems(Arrays.asList(book, dvd, null));
+
+        //Then
+        Assertions.assertThat(outcomes)
+                .containsExactly(LendingOutcome.RETURNED, LendingOutcome.NOT_LOANED, LendingOutcome.NOT_FOUND);
+        verify(csvDataService, never()).isBorrowed(any());
+        Assertions.assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> librarayItemLendingService.returnItems(null));
+    }
+
+    @Test
+    public void canCheckoutAllItemsOrNone() throws LibraryItemNotLoanableException, LibraryItemNotFoundException {
+
+        //Given
+        LibraryItem volumeOne = new LibraryItem.LibraryItemBuilder(1, 1, ItemType.BOOK, "The Art Of Computer Programming Volume 1").build();
+        LibraryItem volumeTwo = new LibraryItem.LibraryItemBuilder(2, 2, ItemType.BOOK, "The Art Of Computer Programming Volume 2").build();
+        List<LibraryItem> volumes = List.of(volumeOne, volumeTwo);
+        Person customer = new Customer(1, "Customer-1", "Customer Last name");
+        Person other = new Customer(2, "Customer-2", "Customer Last name");
+        LocalDate today = LocalDate.now();
+
+        when(csvDataService.getItemsByLibraryIds(new int[]{1, 2})).thenReturn(volumes);
+        when(csvDataService.addLoans(customer, volumes, today, today.plusDays(7))).thenReturn(true);
+        when(csvDataService.addLoans(other, volumes, today, today.plusDays(7))).thenReturn(false);
+
+        //When
+        boolean checkout = librarayItemLendingService.checkoutItems(customer, volumes, today, today.plusDays(7));
+
+        //Then
+        Assertions.assertThat(checkout).isTrue();
+        Assertions.assertThatExceptionOfType(LibraryItemNotLoanableException.class)
+                .isThrownBy(() -> librarayItemLendingService.checkoutItems(other, volumes, today, today.plusDays(7)));
+        verify(csvDataService, never()).addLoan(any(), any(), any(), any());
+    }
+
+    @Test
+    public void cannotCheckoutItemsNotInInventory() {
+
+        //Given
+        LibraryItem volumeOne = new LibraryItem.LibraryItemBuilder(1, 1, ItemType.BOOK, "The Art Of Computer Programming Volume 1").build();
+        LibraryItem unknown = new LibraryItem.LibraryItemBuilder(100, 200, ItemType.BOOK, "Fake Item").build();
+        Person customer = new Customer(1, "Customer-1", "Customer Last name");
+        LocalDate today = LocalDate.now();
+
+        when(csvDataService.getItemsByLibraryIds(new int[]{1, 100})).thenReturn(Arrays.asList(volumeOne, null));
+
+        //When, Then
+        Assertions.assertThatExceptionOfType(LibraryItemNotFoundException.class)
+                .isThrownBy(() -> librarayItemLendingService.checkoutItems(customer, List.of(volumeOne, unknown), today, today.plusDays(7)));
+        Assertions.assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> librarayItemLendingService.checkoutItems(customer, List.of(), today, today.plusDays(7)));
+        verify(csvDataService, never()).addLoans(any(), any(), any(), any());
+    }
+
+    @Test
+    public void canBorrowAnyCopyOfATitle() throws LibraryItemNotLoanableException, LibraryItemNotFoundException {
+
+        //Given
+        LibraryItem copy = new LibraryItem.LibraryItemBuilder(2, 1, ItemType.BOOK, "The Art Of Computer Programming Volume 1").build();
+        Person customer = new Customer(1, "Customer-1", "Customer Last name");
+        LocalDate today = LocalDate.now();
+
+        when(csvDataService.getAvailability(1)).thenReturn(new Availability(1, 2, 1, 0));
+        when(csvDataService.getAvailability(2)).thenReturn(new Availability(2, 1, 1, 0));
+        when(csvDataService.addLoanOfAnyCopy(customer, 1, today, today.plusDays(7))).thenReturn(copy);
+
+        //When
+        LibraryItem borrowed = librarayItemLendingService.borrowAnyCopy(customer, 1, today, today.plusDays(7));
+
+        //Then
+        Assertions.assertThat(borrowed).isSameAs(copy);
+        Assertions.assertThatExceptionOfType(LibraryItemNotLoanableException.class)
+                .isThrownBy(() -> librarayItemLendingService.borrowAnyCopy(customer, 2, today, today.plusDays(7)));
+        Assertions.assertThatExceptionOfType(LibraryItemNotFoundException.class)
+                .isThrownBy(() -> librarayItemLendingService.borrowAnyCopy(customer, 200, today, today.plusDays(7)));
+        verify(csvDataService, never()).addLoanOfAnyCopy(customer, 200, today, today.plusDays(7));
+    }
+
+    @Test
+    public void canReserveAndCollectATitle() throws LibraryItemNotLoanableException, LibraryItemNotFoundException {
+
+        //Given
+        LibraryItem copy = new LibraryItem.LibraryItemBuilder(2, 1, ItemType.BOOK, "The Art Of Computer Programming Volume 1").build();
+        Person customer = new Customer(1, "Customer-1", "Customer Last name");
+        Reservation reservation = new Reservation(customer, 1, Instant.now());
+        Reservation expired = new Reservation(customer, 1, Instant.now());
+        LocalDate today = LocalDate.now();
+
+        when(csvDataService.getAvailability(1)).thenReturn(new Availability(1, 2, 2, 0));
+        when(csvDataService.reserve(customer, 1)).thenReturn(reservation);
+        when(csvDataService.addLoanOfHeldItem(customer, reservation, today, today.plusDays(7))).thenReturn(copy);
+
+        //When
+        Reservation placed = librarayItemLendingService.reserveTitle(customer, 1);
+        LibraryItem collected = librarayItemLendingService.collectHold(customer, placed, today, today.plusDays(7));
+
+        //Then
+        Assertions.assertThat(placed).isSameAs(reservation);
+        Assertions.assertThat(collected).isSameAs(copy);
+        Assertions.assertThatExceptionOfType(LibraryItemNotLoanableException.class)
+                .isThrownBy(() -> librarayItemLendingService.collectHold(customer, expired, today, today.plusDays(7)));
+        Assertions.assertThatExceptionOfType(LibraryItemNotFoundException.class)
+                .isThrownBy(() -> librarayItemLendingService.reserveTitle(customer, 200));
+        verify(csvDataService, never()).reserve(customer, 200);
+    }
+}